@@ -0,0 +1,132 @@
+package com.simplebank.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 応答時間に合わせて変わる同時実行数の上限（AIMD）。
+ * 応答時間が目標を超えたら上限を0.9倍にし（1回の混雑で何度も下げないよう、下げるのは目標時間に1回まで）、
+ * 目標以内に終わる間は、上限の半分以上を使っていれば1件ごとに1/上限ずつ上げる（上限件数が終わるごとに+1）。
+ * 受付は実行中の件数のCASだけで、上限の更新だけをモニターで直列化する。
+ * 応答時間が元から長い一括処理・明細のダウンロード用には、応答時間で変わらない固定の上限（fixed）も作れる。
+ */
+final class AdaptiveLimit {
+    
+    private static final double BACKOFF_RATIO = 0.9;
+    
+    private final long targetNanos;
+    private final int minLimit;
+    private final int maxLimit;
+    // falseなら応答時間で上限を変えない
+    private final boolean adaptive;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejections = new LongAdder();
+    
+    // 以下2つはthisで保護する
+    private double limit;
+    private long lastBackOffNanos;
+    // 受付で読む上限（limitの整数部）
+    private volatile int admitted;
+    
+    AdaptiveLimit(long targetLatencyMillis, int initialLimit, int minLimit, int maxLimit) {
+        this(true, TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis), initialLimit, minLimit, maxLimit);
+    }
+    
+    private AdaptiveLimit(boolean adaptive, long targetNanos, int initialLimit, int minLimit, int maxLimit) {
+        this.adaptive = adaptive;
+        this.targetNanos = targetNanos;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.admitted = (int) limit;
+        this.lastBackOffNanos = System.nanoTime() - targetNanos;
+    }
+    
+    /**
+     * 応答時間で変わらない同時実行数の上限。releaseは常にfalseを返し、backOffでも下げない。
+     */
+    static AdaptiveLimit fixed(int limit) {
+        return new AdaptiveLimit(false, 0, limit, limit, limit);
+    }
+    
+    /**
+     * 上限に空きがあれば1件受け付ける。なければ断った数を数えてfalse。
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= admitted) {
+                rejections.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * 受け付けた1件が終わった。応答時間が目標を超えていればtrue。
+     */
+    boolean release(long latencyNanos) {
+        int before = inFlight.getAndDecrement();
+        if (!adaptive) {
+            return false;
+        }
+        boolean slow = latencyNanos > targetNanos;
+        synchronized (this) {
+            if (slow) {
+                backOff(System.nanoTime());
+            } else if (before * 2 >= limit && limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+                admitted = (int) limit;
+            }
+        }
+        return slow;
+    }
+    
+    /**
+     * 優先する種類が混んでいるときに、この種類の上限を下げる。
+     */
+    synchronized void backOff() {
+        if (adaptive) {
+            backOff(System.nanoTime());
+        }
+    }
+    
+    /**
+     * 断ったものとして数える（優先する種類に譲ったとき）。
+     */
+    void reject() {
+        rejections.increment();
+    }
+    
+    /**
+     * 上限まで実行中（新しいリクエストを受け付けない）。
+     */
+    boolean saturated() {
+        return inFlight.get() >= admitted;
+    }
+    
+    int limit() {
+        return admitted;
+    }
+    
+    int inFlight() {
+        return inFlight.get();
+    }
+    
+    long rejections() {
+        return rejections.sum();
+    }
+    
+    private void backOff(long now) {
+        if (now - lastBackOffNanos < targetNanos) {
+            return;
+        }
+        lastBackOffNanos = now;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        admitted = (int) limit;
+    }
+}
@@ -0,0 +1,44 @@
+package com.simplebank.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 管理APIの認証。X-Admin-Tokenヘッダーが管理用トークン（simplebank.admin.token）と一致しなければ401で打ち切る。
+ * 管理用トークンが未設定なら管理APIは無効で、常に403を返す（口座のセッショントークンでは呼べない）。
+ */
+@Component
+public class AdminTokenInterceptor implements HandlerInterceptor {
+    
+    public static final String HEADER = "X-Admin-Token";
+    
+    private final byte[] token;
+    
+    public AdminTokenInterceptor(@Value("${simplebank.admin.token:}") String token) {
+        this.token = token.isBlank() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        if (token == null) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return false;
+        }
+        String presented = request.getHeader(HEADER);
+        if (presented == null || !MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8))) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+package com.simplebank.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 口座APIの受付制御。エンドポイントの種類ごとに同時実行数の上限（AdaptiveLimit）を持ち、
+ * 上限を超えたリクエストはTomcatのスレッドやDB接続の空きを待たせずに503（Retry-After付き）で断る。
+ * 混雑で安い残高照会まで高い取引履歴・振込と一緒に待たされ、まとめてタイムアウトするのを防ぐ。
+ * <p>
+ * 残高が動く書き込み（WRITE）を取引履歴などの重い読み取り（HISTORY）より優先する。書き込みが上限まで実行中の間は
+ * 履歴の読み取りを受け付けず、書き込みが目標時間を超えた・断られたときは履歴の読み取りの上限も下げる。
+ * <p>
+ * 一括処理と取引明細のダウンロード（BULK）は件数・期間に比例して元から時間がかかるので、応答時間を上限の調整に使わず、
+ * 固定の同時実行数だけで制限する（1件の一括処理で書き込みと履歴の上限が下がり、他のリクエストまで断らないように）。
+ * 書き込みが上限まで実行中の間は、BULKも履歴と同じく受け付けない。
+ */
+@Component
+public class AdmissionControl implements MeterBinder {
+    
+    static final String STARTED_ATTRIBUTE = AdmissionControl.class.getName() + ".started";
+    
+    /**
+     * エンドポイントの種類。どのパスがどれに当たるかはWebConfigで決める。
+     */
+    public enum EndpointClass {
+        // 入金・出金・振込
+        WRITE,
+        // 口座情報
+        READ,
+        // 取引履歴・残高推移
+        HISTORY,
+        // 一括処理・取引明細のダウンロード（上限は固定）
+        BULK
+    }
+    
+    private final boolean enabled;
+    private final String retryAfterSeconds;
+    private final Map<EndpointClass, AdaptiveLimit> limits = new EnumMap<>(EndpointClass.class);
+    
+    public AdmissionControl(@Value("${simplebank.admission.enabled:true}") boolean enabled,
+                            @Value("${simplebank.admission.initial-limit:20}") int initialLimit,
+                            @Value("${simplebank.admission.min-limit:2}") int minLimit,
+                            @Value("${simplebank.admission.max-limit:200}") int maxLimit,
+                            @Value("${simplebank.admission.retry-after-seconds:1}") int retryAfterSeconds,
+                            @Value("${simplebank.admission.write.target-latency-ms:200}") long writeTargetMillis,
+                            @Value("${simplebank.admission.read.target-latency-ms:100}") long readTargetMillis,
+                            @Value("${simplebank.admission.history.target-latency-ms:500}") long historyTargetMillis,
+                            @Value("${simplebank.admission.bulk.limit:4}") int bulkLimit) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = Integer.toString(Math.max(1, retryAfterSeconds));
+        limits.put(EndpointClass.WRITE, new AdaptiveLimit(writeTargetMillis, initialLimit, minLimit, maxLimit));
+        limits.put(EndpointClass.READ, new AdaptiveLimit(readTargetMillis, initialLimit, minLimit, maxLimit));
+        limits.put(EndpointClass.HISTORY, new AdaptiveLimit(historyTargetMillis, initialLimit, minLimit, maxLimit));
+        limits.put(EndpointClass.BULK, AdaptiveLimit.fixed(bulkLimit));
+    }
+    
+    /**
+     * endpointClassのパスに登録する受付制御のインターセプター。
+     */
+    public HandlerInterceptor interceptor(EndpointClass endpointClass) {
+        return new Interceptor(endpointClass);
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limits.forEach((endpointClass, limit) -> {
+            String tag = endpointClass.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("http.admission.limit", limit, AdaptiveLimit::limit)
+                .description("口座APIの同時実行数の上限（bulk以外は応答時間に合わせて変わる）")
+                .tag("class", tag).register(registry);
+            Gauge.builder("http.admission.inflight", limit, AdaptiveLimit::inFlight)
+                .description("口座APIの実行中のリクエスト数")
+                .tag("class", tag).register(registry);
+            FunctionCounter.builder("http.admission.rejections", limit, AdaptiveLimit::rejections)
+                .description("口座APIの同時実行数の上限を超えて503で断ったリクエスト数")
+                .tag("class", tag).register(registry);
+        });
+    }
+    
+    private boolean tryAcquire(EndpointClass endpointClass) {
+        AdaptiveLimit limit = limits.get(endpointClass);
+        AdaptiveLimit write = limits.get(EndpointClass.WRITE);
+        if ((endpointClass == EndpointClass.HISTORY || endpointClass == EndpointClass.BULK) && write.saturated()) {
+            limit.reject();
+            return false;
+        }
+        if (limit.tryAcquire()) {
+            return true;
+        }
+        if (endpointClass == EndpointClass.WRITE) {
+            limits.get(EndpointClass.HISTORY).backOff();
+        }
+        return false;
+    }
+    
+    private void release(EndpointClass endpointClass, long latencyNanos) {
+        boolean slow = limits.get(endpointClass).release(latencyNanos);
+        if (slow && endpointClass == EndpointClass.WRITE) {
+            limits.get(EndpointClass.HISTORY).backOff();
+        }
+    }
+    
+    private final class Interceptor implements HandlerInterceptor {
+        private final EndpointClass endpointClass;
+        
+        Interceptor(EndpointClass endpointClass) {
+            this.endpointClass = endpointClass;
+        }
+        
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (!enabled || CorsUtils.isPreFlightRequest(request)) {
+                return true;
+            }
+            if (!tryAcquire(endpointClass)) {
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+                return false;
+            }
+            request.setAttribute(STARTED_ATTRIBUTE, System.nanoTime());
+            return true;
+        }
+        
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                    Exception ex) {
+            Object started = request.getAttribute(STARTED_ATTRIBUTE);
+            if (started != null) {
+                request.removeAttribute(STARTED_ATTRIBUTE);
+                release(endpointClass, System.nanoTime() - (Long) started);
+            }
+        }
+    }
+}
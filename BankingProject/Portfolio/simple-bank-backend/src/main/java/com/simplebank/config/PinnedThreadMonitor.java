@@ -0,0 +1,75 @@
+package com.simplebank.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 仮想スレッドモードで、synchronized区間などでキャリアスレッドに固定（pinning）された
+ * 仮想スレッドをJFRのjdk.VirtualThreadPinnedイベントで検出し、スタックの先頭をログに出す。
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class PinnedThreadMonitor implements MeterBinder {
+    
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int STACK_DEPTH = 8;
+    
+    private final Duration threshold;
+    private final LongAdder pinnedEvents = new LongAdder();
+    private RecordingStream stream;
+    
+    public PinnedThreadMonitor(@Value("${simplebank.virtual-threads.pinned-threshold-ms:20}") long thresholdMillis) {
+        this.threshold = Duration.ofMillis(thresholdMillis);
+    }
+    
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+    }
+    
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+    
+    public long pinnedEvents() {
+        return pinnedEvents.sum();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jvm.threads.virtual.pinned", pinnedEvents, LongAdder::sum)
+            .description("しきい値以上キャリアスレッドに固定された仮想スレッドの数").register(registry);
+    }
+    
+    private void onPinned(RecordedEvent event) {
+        pinnedEvents.increment();
+        String frames = event.getStackTrace() == null ? "(スタックなし)" : event.getStackTrace().getFrames().stream()
+            .limit(STACK_DEPTH)
+            .map(this::format)
+            .collect(Collectors.joining("\n\tat "));
+        log.warn("仮想スレッドが{}msキャリアスレッドに固定されました\n\tat {}", event.getDuration().toMillis(), frames);
+    }
+    
+    private String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
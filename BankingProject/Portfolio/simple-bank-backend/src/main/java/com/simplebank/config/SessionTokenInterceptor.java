@@ -0,0 +1,51 @@
+package com.simplebank.config;
+
+import com.simplebank.service.SessionTokens;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Authorization: Bearer のセッショントークンを検証し、ログイン中の口座番号をリクエスト属性に入れる。
+ * トークンがない・無効なら401で打ち切る。どの口座を操作できるかはコントローラーで判定する。
+ * SSEの購読（.../stream）に限り、tokenパラメーターでも受け付ける（EventSourceはヘッダーを付けられないため）。
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionTokenInterceptor implements HandlerInterceptor {
+    
+    public static final String ACCOUNT_ATTRIBUTE = "simplebank.sessionAccount";
+    
+    private static final String BEARER = "Bearer ";
+    private static final String STREAM_SUFFIX = "/stream";
+    private static final String TOKEN_PARAMETER = "token";
+    
+    private final SessionTokens sessionTokens;
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        String token = null;
+        if (header != null && header.startsWith(BEARER)) {
+            token = header.substring(BEARER.length()).trim();
+        } else if (request.getRequestURI().endsWith(STREAM_SUFFIX)) {
+            token = request.getParameter(TOKEN_PARAMETER);
+        }
+        String accountNumber = sessionTokens.verify(token);
+        if (accountNumber == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            return false;
+        }
+        request.setAttribute(ACCOUNT_ATTRIBUTE, accountNumber);
+        return true;
+    }
+}
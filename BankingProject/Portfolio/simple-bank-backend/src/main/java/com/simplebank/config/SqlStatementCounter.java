@@ -0,0 +1,36 @@
+package com.simplebank.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernateが発行するSQLを、計測中のスレッドについてだけ数える。
+ * JDBCバッチは準備した文ごとに1回と数える。
+ */
+@Component
+public class SqlStatementCounter implements StatementInspector {
+    
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+    
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+    
+    public void start() {
+        COUNT.set(new int[1]);
+    }
+    
+    /**
+     * start()以降に発行されたSQLの数を返し、計測を終了する。
+     */
+    public int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+}
@@ -0,0 +1,53 @@
+package com.simplebank.config;
+
+import com.simplebank.config.AdmissionControl.EndpointClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 口座APIはログイン・口座開設を除き、セッショントークンを必須にする。
+ * その前に、エンドポイントの種類ごとの受付制御で混雑時のリクエストを断る（トークンの検証もしない）。
+ * 一括処理と取引明細のダウンロードは応答時間が元から長いので、上限が固定のBULKに分ける。
+ * ログインはパスワード照合の待ち行列、SSEの購読は接続が長く続くので、受付制御の対象にしない。
+ * 管理API（/api/admin/**）はすべて管理用トークン（AdminTokenInterceptor）を必須にする。
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+    
+    private static final String[] WRITE_PATHS = {
+        "/api/account/deposit", "/api/account/withdraw", "/api/account/transfer"
+    };
+    
+    private static final String[] BULK_PATHS = {
+        "/api/account/batch", "/api/account/*/statement"
+    };
+    
+    private final SessionTokenInterceptor sessionTokenInterceptor;
+    private final AdminTokenInterceptor adminTokenInterceptor;
+    private final AdmissionControl admissionControl;
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControl.interceptor(EndpointClass.WRITE))
+            .addPathPatterns(WRITE_PATHS);
+        registry.addInterceptor(admissionControl.interceptor(EndpointClass.READ))
+            .addPathPatterns("/api/account/*")
+            .excludePathPatterns(WRITE_PATHS)
+            .excludePathPatterns(BULK_PATHS)
+            .excludePathPatterns("/api/account/login", "/api/account/create");
+        registry.addInterceptor(admissionControl.interceptor(EndpointClass.HISTORY))
+            .addPathPatterns("/api/account/*/transactions", "/api/account/*/balance-series");
+        registry.addInterceptor(admissionControl.interceptor(EndpointClass.BULK))
+            .addPathPatterns(BULK_PATHS);
+        
+        registry.addInterceptor(sessionTokenInterceptor)
+            .addPathPatterns("/api/account/**")
+            .excludePathPatterns("/api/account/login", "/api/account/create");
+        
+        registry.addInterceptor(adminTokenInterceptor)
+            .addPathPatterns("/api/admin/**");
+    }
+}
@@ -1,56 +1,127 @@
 package com.simplebank.controller;
 
+import com.simplebank.config.SessionTokenInterceptor;
 import com.simplebank.entity.Account;
 import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.repository.TransactionView;
 import com.simplebank.service.AccountService;
+import com.simplebank.service.AccountSnapshot;
+import com.simplebank.service.AuthenticationBusyException;
+import com.simplebank.service.BalanceResolution;
+import com.simplebank.service.BalanceSeries;
+import com.simplebank.service.BalanceSeriesService;
+import com.simplebank.service.BatchLedgerService;
+import com.simplebank.service.BatchOperation;
+import com.simplebank.service.BatchResult;
+import com.simplebank.service.HistoryPage;
+import com.simplebank.service.SessionTokens;
+import com.simplebank.service.StatementExport;
+import com.simplebank.service.StatementExportService;
+import com.simplebank.service.StatementFormat;
+import com.simplebank.service.VelocityLimitExceededException;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.math.BigDecimal;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/account")
 @RequiredArgsConstructor
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = {AccountController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 public class AccountController {
     
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // ETagで検証してから使わせる（口座ごとの内容なので共有キャッシュには置かせない）
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+    
     private final AccountService accountService;
+    private final BatchLedgerService batchLedgerService;
+    private final BalanceSeriesService balanceSeriesService;
+    private final StatementExportService statementExportService;
+    private final SessionTokens sessionTokens;
+    private final AccountEventHub accountEventHub;
     
+    /**
+     * 口座開設。パスワードのハッシュ化の待ち行列が一杯のときはログインと同じく503（Retry-After付き）。
+     */
     @PostMapping("/create")
     public ResponseEntity<AccountResponse> createAccount(@RequestBody CreateAccountRequest request) {
-        Account account = accountService.createAccount(
-            request.getAccountNumber(),
-            request.getOwnerName(),
-            request.getPassword()
-        );
+        Account account;
+        try {
+            account = accountService.createAccount(
+                request.getAccountNumber(),
+                request.getOwnerName(),
+                request.getPassword()
+            );
+        } catch (AuthenticationBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+        }
         return ResponseEntity.ok(new AccountResponse(account));
     }
     
+    /**
+     * ログイン。成功したら以降の口座APIで使うセッショントークン（Authorization: Bearer）を返す。
+     * パスワード照合の待ち行列が一杯のときは503（Retry-After付き）。
+     */
     @PostMapping("/login")
     public ResponseEntity<LoginResponse> login(@RequestBody LoginRequest request) {
-        boolean authenticated = accountService.authenticate(
-            request.getAccountNumber(),
-            request.getPassword()
-        );
+        boolean authenticated;
+        try {
+            authenticated = accountService.authenticate(
+                request.getAccountNumber(),
+                request.getPassword()
+            );
+        } catch (AuthenticationBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+        }
         
         if (authenticated) {
-            Account account = accountService.getAccount(request.getAccountNumber());
-            return ResponseEntity.ok(new LoginResponse(true, new AccountResponse(account)));
+            AccountSnapshot account = accountService.getAccount(request.getAccountNumber());
+            String token = sessionTokens.issue(account.accountNumber());
+            return ResponseEntity.ok(new LoginResponse(true, new AccountResponse(account), token));
         } else {
-            return ResponseEntity.ok(new LoginResponse(false, null));
+            return ResponseEntity.ok(new LoginResponse(false, null, null));
         }
     }
     
+    /**
+     * 口座情報。ETagは台帳バージョンで、If-None-Matchが一致すれば304を返す。
+     */
     @GetMapping("/{accountNumber}")
-    public ResponseEntity<AccountResponse> getAccount(@PathVariable String accountNumber) {
-        Account account = accountService.getAccount(accountNumber);
-        return ResponseEntity.ok(new AccountResponse(account));
+    public ResponseEntity<AccountResponse> getAccount(@PathVariable String accountNumber,
+                                                      @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount,
+                                                      WebRequest request) {
+        requireOwner(sessionAccount, accountNumber);
+        AccountSnapshot account = accountService.getAccount(accountNumber);
+        if (request.checkNotModified(etag(account))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(new AccountResponse(account));
     }
     
     @PostMapping("/deposit")
-    public ResponseEntity<TransactionResponse> deposit(@RequestBody TransactionRequest request) {
+    public ResponseEntity<TransactionResponse> deposit(@RequestBody TransactionRequest request,
+                                                       @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount) {
+        requireOwner(sessionAccount, request.getAccountNumber());
         Transaction transaction = accountService.deposit(
             request.getAccountNumber(),
             request.getAmount()
@@ -58,33 +129,148 @@ public class AccountController {
         return ResponseEntity.ok(new TransactionResponse(transaction));
     }
     
+    /**
+     * 出金。出金・振込の上限を超えるときは429。
+     */
     @PostMapping("/withdraw")
-    public ResponseEntity<TransactionResponse> withdraw(@RequestBody TransactionRequest request) {
-        Transaction transaction = accountService.withdraw(
-            request.getAccountNumber(),
-            request.getAmount()
-        );
+    public ResponseEntity<TransactionResponse> withdraw(@RequestBody TransactionRequest request,
+                                                        @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount) {
+        requireOwner(sessionAccount, request.getAccountNumber());
+        Transaction transaction;
+        try {
+            transaction = accountService.withdraw(
+                request.getAccountNumber(),
+                request.getAmount()
+            );
+        } catch (VelocityLimitExceededException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
         return ResponseEntity.ok(new TransactionResponse(transaction));
     }
     
+    /**
+     * 取引履歴（新しい順）。次ページのカーソルはX-Next-Cursorヘッダーで返す。
+     * ETagは口座情報と同じ台帳バージョンで、一致すれば取引を読まずに304を返す
+     * （台帳バージョンは読み取りモデルかキャッシュから読むので、取引表には触れない）。
+     */
     @GetMapping("/{accountNumber}/transactions")
-    public ResponseEntity<List<TransactionResponse>> getTransactionHistory(@PathVariable String accountNumber) {
-        List<Transaction> transactions = accountService.getTransactionHistory(accountNumber);
-        List<TransactionResponse> responses = transactions.stream()
+    public ResponseEntity<List<TransactionResponse>> getTransactionHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String before,
+            @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount,
+            WebRequest request) {
+        requireOwner(sessionAccount, accountNumber);
+        // 履歴より先に読む。読んでいる間に取引が増えても、ETagが古いだけなので次回は200になる
+        if (request.checkNotModified(etag(accountService.getAccount(accountNumber)))) {
+            return null;
+        }
+        HistoryPage page = accountService.getTransactionHistory(accountNumber, limit, before);
+        List<TransactionResponse> responses = page.items().stream()
             .map(TransactionResponse::new)
             .toList();
-        return ResponseEntity.ok(responses);
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(REVALIDATE);
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(responses);
+    }
+    
+    /**
+     * 残高推移（グラフ用）。resolutionはHOUR / DAY / MONTH、from・toは日付（yyyy-MM-dd、両端を含む）。
+     */
+    @GetMapping("/{accountNumber}/balance-series")
+    public ResponseEntity<BalanceSeries> getBalanceSeries(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) BalanceResolution resolution,
+            @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount) {
+        requireOwner(sessionAccount, accountNumber);
+        return ResponseEntity.ok(balanceSeriesService.getSeries(accountNumber, from, to, resolution));
     }
     
+    /**
+     * 取引明細のダウンロード。from・toは日付（yyyy-MM-dd、両端を含む。省略時は直近30日）、formatはCSV / NDJSON。
+     * DBから読みながら書き出すので、件数が多くてもメモリに溜めない。非同期処理にしないのは、件数が多いと非同期の応答期限を超えるため。
+     */
+    @GetMapping("/{accountNumber}/statement")
+    public void exportStatement(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "CSV") StatementFormat format,
+            @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount,
+            HttpServletResponse response) throws IOException {
+        requireOwner(sessionAccount, accountNumber);
+        // 口座・期間の誤りは書き出しを始める前にエラーとして返す
+        StatementExport export = statementExportService.prepare(accountNumber, from, to, format);
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(export.filename()).build().toString());
+        statementExportService.write(export, response.getOutputStream());
+    }
+    
+    /**
+     * 口座の更新通知（Server-Sent Events）。コミットされた取引ごとに、新しい残高と取引1件を"transaction"イベントで送る。
+     * EventSourceはヘッダーを付けられないため、トークンはtokenパラメーターでも受け付ける。
+     */
+    @GetMapping(path = "/{accountNumber}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable String accountNumber,
+                             @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount) {
+        requireOwner(sessionAccount, accountNumber);
+        return accountEventHub.subscribe(accountNumber);
+    }
+    
+    /**
+     * 振込。出金・振込の上限を超えるときは429。
+     */
     @PostMapping("/transfer")
-    public ResponseEntity<TransactionResponse> transfer(@RequestBody TransferRequest request) {
-        Transaction transaction = accountService.transfer(
-            request.getFromAccountNumber(),
-            request.getToAccountNumber(),
-            request.getAmount()
-        );
+    public ResponseEntity<TransactionResponse> transfer(@RequestBody TransferRequest request,
+                                                        @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount) {
+        requireOwner(sessionAccount, request.getFromAccountNumber());
+        Transaction transaction;
+        try {
+            transaction = accountService.transfer(
+                request.getFromAccountNumber(),
+                request.getToAccountNumber(),
+                request.getAmount()
+            );
+        } catch (VelocityLimitExceededException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
         return ResponseEntity.ok(new TransactionResponse(transaction));
     }
+    
+    /**
+     * 入金・出金・振込の一括処理。操作ごとの成否を返す。
+     * 引き落とす操作（出金と振込の送金元）はログイン中の口座でなければならない。入金は他の口座にもできる（給与の一括入金など）。
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResult> batch(@RequestBody BatchRequest request,
+                                             @RequestAttribute(SessionTokenInterceptor.ACCOUNT_ATTRIBUTE) String sessionAccount) {
+        List<BatchOperation> operations = request.getOperations() == null ? List.of() : request.getOperations();
+        operations.stream()
+            .filter(operation -> operation.type() != BatchOperation.Type.DEPOSIT)
+            .forEach(operation -> requireOwner(sessionAccount, operation.accountNumber()));
+        return ResponseEntity.ok(batchLedgerService.apply(operations));
+    }
+    
+    /**
+     * トークンの口座以外は操作させない（403）。
+     */
+    private static void requireOwner(String sessionAccount, String accountNumber) {
+        if (!sessionAccount.equals(accountNumber)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "この口座は操作できません");
+        }
+    }
+    
+    // 強いETag（"台帳バージョン"）
+    private static String etag(AccountSnapshot account) {
+        return "\"" + account.ledgerVersion() + "\"";
+    }
 }
 
 @Data
@@ -104,24 +290,31 @@ class LoginRequest {
 class LoginResponse {
     private boolean success;
     private AccountResponse account;
+    private String token;
     
-    public LoginResponse(boolean success, AccountResponse account) {
+    public LoginResponse(boolean success, AccountResponse account, String token) {
         this.success = success;
         this.account = account;
+        this.token = token;
     }
 }
 
 @Data
 class TransactionRequest {
     private String accountNumber;
-    private BigDecimal amount;
+    private Money amount;
 }
 
 @Data
 class TransferRequest {
     private String fromAccountNumber;
     private String toAccountNumber;
-    private BigDecimal amount;
+    private Money amount;
+}
+
+@Data
+class BatchRequest {
+    private List<BatchOperation> operations;
 }
 
 @Data
@@ -129,7 +322,7 @@ class AccountResponse {
     private Long id;
     private String accountNumber;
     private String ownerName;
-    private BigDecimal balance;
+    private Money balance;
     
     public AccountResponse(Account account) {
         this.id = account.getId();
@@ -137,14 +330,37 @@ class AccountResponse {
         this.ownerName = account.getOwnerName();
         this.balance = account.getBalance();
     }
+    
+    public AccountResponse(AccountSnapshot account) {
+        this.id = account.id();
+        this.accountNumber = account.accountNumber();
+        this.ownerName = account.ownerName();
+        this.balance = account.balance();
+    }
+}
+
+/**
+ * SSEで送る口座の更新（取引後の残高と、その取引）。
+ */
+@Data
+class AccountUpdate {
+    private String accountNumber;
+    private Money balance;
+    private TransactionResponse transaction;
+    
+    public AccountUpdate(String accountNumber, TransactionResponse transaction) {
+        this.accountNumber = accountNumber;
+        this.balance = transaction.getBalanceAfter();
+        this.transaction = transaction;
+    }
 }
 
 @Data
 class TransactionResponse {
     private Long id;
     private String type;
-    private BigDecimal amount;
-    private BigDecimal balanceAfter;
+    private Money amount;
+    private Money balanceAfter;
     private String createdAt;
     private String description;
     
@@ -156,4 +372,13 @@ class TransactionResponse {
         this.createdAt = transaction.getCreatedAt().toString();
         this.description = transaction.getDescription();
     }
+    
+    public TransactionResponse(TransactionView view) {
+        this.id = view.getId();
+        this.type = view.getType().toString();
+        this.amount = view.getAmount();
+        this.balanceAfter = view.getBalanceAfter();
+        this.createdAt = view.getCreatedAt().toString();
+        this.description = view.getDescription();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.simplebank.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simplebank.entity.Transaction;
+import com.simplebank.service.LedgerCommittedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 口座ごとのSSE購読者に、コミット済みの取引（新しい残高と取引1件）を配信する。
+ * <p>
+ * 接続は非同期リクエスト（SseEmitter）なので、待機中の接続はスレッドを占有しない。
+ * コミット通知は口座ロックを保持したスレッドで届くため、そこでは購読者の有無を確認して取引をDTOに詰めるだけにし、
+ * JSON化とイベントの組み立ては配信用の1スレッドで行う（1スレッドなので同じ口座の取引は順序どおりに並ぶ）。
+ * 配信用スレッドは送信せず、接続ごとの送信待ち行列に積むだけにする。送信（書き込みが詰まると待たされる）は
+ * 送信用のプールが接続ごとに1タスクずつ行うので、接続内の順序は保たれ、遅い接続が他の接続を待たせない。
+ * keep-aliveも同じ待ち行列を通す。
+ * <p>
+ * 配信待ちが上限を超えた分は捨て、その口座の接続を閉じる（取引を取りこぼしたまま接続を続けさせない）。
+ * 送信待ちの先頭が上限の時間を超えて送れていない接続（一括処理などで一度に多数のイベントが積まれても、
+ * 送れているなら閉じない）と、送信待ちの件数が上限を超えた接続も、追いつけない接続として閉じる。
+ * いずれもEventSourceが再接続し、クライアントは再接続時に口座情報と履歴を取り直して追いつく。
+ */
+@Slf4j
+@Component
+class AccountEventHub implements MeterBinder {
+    
+    static final String EVENT_NAME = "transaction";
+    
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final int maxPending;
+    private final int maxQueued;
+    private final long maxLagNanos;
+    
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder slowClosed = new LongAdder();
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService senders;
+    
+    AccountEventHub(ObjectMapper objectMapper,
+                    @Value("${simplebank.stream.timeout-minutes:30}") long timeoutMinutes,
+                    @Value("${simplebank.stream.heartbeat-seconds:25}") long heartbeatSeconds,
+                    @Value("${simplebank.stream.max-pending:10000}") int maxPending,
+                    @Value("${simplebank.stream.max-lag-seconds:10}") long maxLagSeconds,
+                    @Value("${simplebank.stream.max-queued-per-connection:10000}") int maxQueued,
+                    @Value("${simplebank.stream.sender-threads:4}") int senderThreads) {
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = Duration.ofMinutes(timeoutMinutes).toMillis();
+        this.maxPending = maxPending;
+        this.maxQueued = maxQueued;
+        this.maxLagNanos = TimeUnit.SECONDS.toNanos(maxLagSeconds);
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "account-event-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger sequence = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "account-event-sender-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 中継するプロキシに切断されないよう、またクライアントが切断済みの接続を見つけるために定期的にコメントを送る
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+    
+    SseEmitter subscribe(String accountNumber) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(accountNumber, emitter);
+        // 最後の購読者が外れたときの削除と競合しないよう、追加もcomputeの中で行う
+        subscribers.compute(accountNumber, (key, current) -> {
+            Set<Subscriber> target = current == null ? ConcurrentHashMap.newKeySet() : current;
+            target.add(subscriber);
+            return target;
+        });
+        connections.incrementAndGet();
+        Runnable remove = () -> unsubscribe(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+    
+    @EventListener
+    public void onLedgerCommitted(LedgerCommittedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        List<AccountUpdate> updates = null;
+        for (Transaction transaction : event.transactions()) {
+            String accountNumber = transaction.getAccount().getAccountNumber();
+            if (!subscribers.containsKey(accountNumber)) {
+                continue;
+            }
+            if (updates == null) {
+                updates = new ArrayList<>();
+            }
+            updates.add(new AccountUpdate(accountNumber, new TransactionResponse(transaction)));
+        }
+        if (updates == null) {
+            return;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            dropped.add(updates.size());
+            // 取りこぼした口座の接続は閉じて、再接続で取り直させる
+            updates.stream().map(AccountUpdate::getAccountNumber).distinct().forEach(this::closeAll);
+            return;
+        }
+        List<AccountUpdate> batch = updates;
+        dispatcher.execute(() -> {
+            pending.decrementAndGet();
+            batch.forEach(this::deliver);
+        });
+    }
+    
+    private void deliver(AccountUpdate update) {
+        Set<Subscriber> targets = subscribers.get(update.getAccountNumber());
+        if (targets == null) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(update);
+        } catch (JsonProcessingException e) {
+            log.error("口座イベントのJSON化に失敗しました", e);
+            return;
+        }
+        // 購読者が何人いてもJSON化・イベントの組み立ては1回だけ
+        Set<ResponseBodyEmitter.DataWithMediaType> event = SseEmitter.event()
+            .id(String.valueOf(update.getTransaction().getId()))
+            .name(EVENT_NAME)
+            .data(json, MediaType.APPLICATION_JSON)
+            .build();
+        for (Subscriber subscriber : targets) {
+            subscriber.enqueue(event, true);
+        }
+    }
+    
+    private void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> comment = SseEmitter.event().comment("keep-alive").build();
+        for (Set<Subscriber> targets : subscribers.values()) {
+            for (Subscriber subscriber : targets) {
+                subscriber.enqueue(comment, false);
+            }
+        }
+    }
+    
+    private void closeAll(String accountNumber) {
+        Set<Subscriber> targets = subscribers.get(accountNumber);
+        if (targets != null) {
+            targets.forEach(Subscriber::close);
+        }
+    }
+    
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.accountNumber, (key, current) -> {
+            if (current.remove(subscriber)) {
+                connections.decrementAndGet();
+            }
+            return current.isEmpty() ? null : current;
+        });
+    }
+    
+    /**
+     * 1接続の送信待ち行列。送信中のタスクは接続ごとに高々1つ（scheduled）なので、送信の順序は積んだ順になる。
+     */
+    private class Subscriber {
+        private final String accountNumber;
+        private final SseEmitter emitter;
+        private final Queue<Outgoing> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+        
+        Subscriber(String accountNumber, SseEmitter emitter) {
+            this.accountNumber = accountNumber;
+            this.emitter = emitter;
+        }
+        
+        /**
+         * 送信待ちに積む。先頭が積まれてから上限の時間を超えているか、件数が上限を超えたら、追いつけない接続として
+         * 購読者から外し、送信用のタスクに閉じさせる（送信が詰まっている最中なら、その送信が終わってから閉じる）。
+         * keep-aliveは件数に数えないが、詰まった接続は積まれたkeep-aliveが古くなることで見つかる。
+         */
+        void enqueue(Set<ResponseBodyEmitter.DataWithMediaType> event, boolean counted) {
+            if (closed) {
+                return;
+            }
+            long now = System.nanoTime();
+            Outgoing head = queue.peek();
+            if ((head != null && now - head.enqueuedAt() > maxLagNanos)
+                || (counted && queued.incrementAndGet() > maxQueued)) {
+                slowClosed.increment();
+                close();
+                return;
+            }
+            queue.add(new Outgoing(event, counted, now));
+            schedule();
+        }
+        
+        /**
+         * 購読者から外し、送信用のタスクに閉じさせる。
+         */
+        void close() {
+            closed = true;
+            unsubscribe(this);
+            schedule();
+        }
+        
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // 停止中
+                    scheduled.set(false);
+                }
+            }
+        }
+        
+        private void drain() {
+            try {
+                Outgoing outgoing;
+                while (!closed && (outgoing = queue.poll()) != null) {
+                    try {
+                        emitter.send(outgoing.data());
+                    } catch (IOException | IllegalStateException e) {
+                        // 切断済み。completeWithErrorでonErrorが呼ばれ、購読者から外れる
+                        closed = true;
+                        queue.clear();
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                    if (outgoing.counted()) {
+                        queued.decrementAndGet();
+                        sent.increment();
+                    }
+                }
+                if (closed) {
+                    // 追いつけない接続、または取りこぼした口座の接続として外した
+                    queue.clear();
+                    emitter.complete();
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // 送信を終えてから外れるまでの間に積まれた分
+            if (!closed && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+    
+    private record Outgoing(Set<ResponseBodyEmitter.DataWithMediaType> data, boolean counted, long enqueuedAt) {
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ledger.stream.connections", connections, AtomicInteger::get)
+            .description("口座イベントのSSE接続数").register(registry);
+        FunctionCounter.builder("ledger.stream.events.sent", sent, LongAdder::sum)
+            .description("SSEで送信した口座イベント数（接続ごと）").register(registry);
+        FunctionCounter.builder("ledger.stream.events.dropped", dropped, LongAdder::sum)
+            .description("配信待ちが上限を超えて捨てた口座イベント数（その口座の接続は閉じる）").register(registry);
+        FunctionCounter.builder("ledger.stream.slow.closed", slowClosed, LongAdder::sum)
+            .description("送信が追いつかず閉じたSSE接続数").register(registry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        subscribers.values().forEach(targets -> targets.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+}
@@ -0,0 +1,180 @@
+package com.simplebank.controller;
+
+import com.simplebank.service.AccountCache;
+import com.simplebank.service.AccountImportFormat;
+import com.simplebank.service.AccountImportService;
+import com.simplebank.service.AccountCacheStats;
+import com.simplebank.service.AccountLockManager;
+import com.simplebank.service.AccountReadModel;
+import com.simplebank.service.AccountService;
+import com.simplebank.service.BalanceBucketStatus;
+import com.simplebank.service.InterestAccrualResult;
+import com.simplebank.service.InterestAccrualService;
+import com.simplebank.service.JournalStats;
+import com.simplebank.service.LedgerJournal;
+import com.simplebank.service.LedgerOutbox;
+import com.simplebank.service.LedgerReconciliationService;
+import com.simplebank.service.LockStats;
+import com.simplebank.service.OptimisticRetryExecutor;
+import com.simplebank.service.OutboxStats;
+import com.simplebank.service.ReadModelStats;
+import com.simplebank.service.ReconciliationMode;
+import com.simplebank.service.ReconciliationResult;
+import com.simplebank.service.RetryStats;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+
+/**
+ * 運用向けの統計・管理API。
+ */
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+    
+    static final String CSV = "text/csv";
+    static final String NDJSON = "application/x-ndjson";
+    
+    private final AccountLockManager accountLockManager;
+    private final OptimisticRetryExecutor optimisticRetryExecutor;
+    private final AccountCache accountCache;
+    private final LedgerOutbox ledgerOutbox;
+    private final AccountReadModel accountReadModel;
+    private final AccountImportService accountImportService;
+    private final AccountService accountService;
+    private final InterestAccrualService interestAccrualService;
+    private final LedgerReconciliationService ledgerReconciliationService;
+    // simplebank.journal.enabled=false のときは存在しない
+    private final ObjectProvider<LedgerJournal> ledgerJournal;
+    
+    @GetMapping("/locks")
+    public ResponseEntity<LockStats> lockStats() {
+        return ResponseEntity.ok(accountLockManager.stats());
+    }
+    
+    @GetMapping("/concurrency")
+    public ResponseEntity<RetryStats> concurrencyStats() {
+        return ResponseEntity.ok(optimisticRetryExecutor.stats());
+    }
+    
+    @GetMapping("/cache")
+    public ResponseEntity<AccountCacheStats> cacheStats() {
+        return ResponseEntity.ok(accountCache.stats());
+    }
+    
+    @GetMapping("/outbox")
+    public ResponseEntity<OutboxStats> outboxStats() {
+        return ResponseEntity.ok(ledgerOutbox.stats());
+    }
+    
+    @GetMapping("/read-model")
+    public ResponseEntity<ReadModelStats> readModelStats() {
+        return ResponseEntity.ok(accountReadModel.stats());
+    }
+    
+    /**
+     * 読み取りモデルをDBから作り直す。作り直している間の読み取りはDBから返す。
+     */
+    @PostMapping("/read-model/rebuild")
+    public ResponseEntity<ReadModelStats> rebuildReadModel() {
+        return ResponseEntity.ok(accountReadModel.rebuild());
+    }
+    
+    @GetMapping("/journal")
+    public ResponseEntity<JournalStats> journalStats() {
+        LedgerJournal journal = ledgerJournal.getIfAvailable();
+        if (journal == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(journal.stats());
+    }
+    
+    @PostMapping("/journal/snapshot")
+    public ResponseEntity<JournalStats> journalSnapshot() {
+        LedgerJournal journal = ledgerJournal.getIfAvailable();
+        if (journal == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(journal.snapshot());
+    }
+    
+    @GetMapping("/accounts/{accountNumber}/balance-buckets")
+    public ResponseEntity<BalanceBucketStatus> balanceBuckets(@PathVariable String accountNumber) {
+        return ResponseEntity.ok(accountService.getBalanceBucketStatus(accountNumber));
+    }
+    
+    /**
+     * 入金が集中する口座の残高を、count個のバケットに分散する（0で通常の口座に戻す）。
+     */
+    @PutMapping("/accounts/{accountNumber}/balance-buckets")
+    public ResponseEntity<BalanceBucketStatus> configureBalanceBuckets(@PathVariable String accountNumber,
+                                                                       @RequestParam int count) {
+        return ResponseEntity.ok(accountService.configureBalanceBuckets(accountNumber, count));
+    }
+    
+    /**
+     * 月末の利息計算の途中経過（実行中でなければ最後の実行の結果）。
+     */
+    @GetMapping("/interest")
+    public ResponseEntity<InterestAccrualResult> interestAccrualStatus() {
+        InterestAccrualResult status = interestAccrualService.status();
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+    
+    /**
+     * month（yyyy-MM、省略時は前月）の利息を全口座に付ける。終わるまで待って結果を返す。
+     * 同じ月で再実行すると、まだ利息を付けていない口座だけを処理する。
+     */
+    @PostMapping("/interest/accrue")
+    public ResponseEntity<InterestAccrualResult> accrueInterest(@RequestParam(required = false) YearMonth month) {
+        return ResponseEntity.ok(interestAccrualService.accrue(month));
+    }
+    
+    /**
+     * 台帳の照合の途中経過（実行中でなければ最後の実行の結果と、見つかった不一致）。
+     */
+    @GetMapping("/reconciliation")
+    public ResponseEntity<ReconciliationResult> reconciliationStatus() {
+        ReconciliationResult status = ledgerReconciliationService.status();
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+    
+    /**
+     * 台帳を照合する（mode=INCREMENTAL|FULL、省略時は前回から変わった口座だけのINCREMENTAL）。終わるまで待って結果を返す。
+     */
+    @PostMapping("/reconciliation/run")
+    public ResponseEntity<ReconciliationResult> reconcile(@RequestParam(required = false) ReconciliationMode mode) {
+        return ResponseEntity.ok(ledgerReconciliationService.reconcile(mode));
+    }
+    
+    /**
+     * 口座の一括登録。CSV（text/csv）またはNDJSON（application/x-ndjson）のアップロードを読みながら登録し、
+     * 行ごとのエラーと進捗をNDJSONで逐次返す。非同期処理にしないのは、件数が多いと非同期の応答期限を超えるため。
+     */
+    @PostMapping(path = "/accounts/import", consumes = {CSV, NDJSON})
+    public void importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                               InputStream body,
+                               HttpServletResponse response) throws IOException {
+        AccountImportFormat format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(NDJSON))
+            ? AccountImportFormat.NDJSON
+            : AccountImportFormat.CSV;
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        accountImportService.importAccounts(body, format, response.getOutputStream());
+    }
+}
@@ -0,0 +1,74 @@
+package com.simplebank.controller;
+
+import com.simplebank.service.LoanPortfolioResult;
+import com.simplebank.service.LoanQuote;
+import com.simplebank.service.LoanService;
+import com.simplebank.service.LoanTerms;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * ローン試算API（元利均等返済、金額は円単位の整数）。
+ */
+@RestController
+@RequestMapping("/api/loans")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class LoanController {
+    
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    
+    private final LoanService loanService;
+    
+    @PostMapping("/quote")
+    public ResponseEntity<LoanQuote> quote(@RequestBody LoanRequest request) {
+        return ResponseEntity.ok(loanService.quote(request.toTerms()));
+    }
+    
+    /**
+     * 複数ローンの一括試算。rateShiftを指定すると全ローンの金利に加算して計算する。
+     */
+    @PostMapping("/quotes")
+    public ResponseEntity<LoanPortfolioResult> quotes(@RequestBody LoanBatchRequest request) {
+        List<LoanTerms> loans = request.getLoans() == null ? List.of()
+            : request.getLoans().stream().map(LoanRequest::toTerms).toList();
+        return ResponseEntity.ok(loanService.quoteAll(loans, request.getRateShift()));
+    }
+    
+    /**
+     * 返済スケジュール全体をNDJSONで返す。計算しながら書き出すので、35年分でもメモリに溜めない。
+     */
+    @GetMapping("/schedule")
+    public ResponseEntity<StreamingResponseBody> schedule(@RequestParam long principal,
+                                                          @RequestParam BigDecimal annualRate,
+                                                          @RequestParam int months) {
+        LoanTerms terms = new LoanTerms(principal, annualRate, months);
+        // 条件の誤りはストリーム開始前にエラーとして返す
+        loanService.quote(terms);
+        StreamingResponseBody body = out -> loanService.writeSchedule(terms, out);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
+
+@Data
+class LoanRequest {
+    private Long principal;
+    private BigDecimal annualRate;
+    private Integer months;
+    
+    LoanTerms toTerms() {
+        return new LoanTerms(principal == null ? 0 : principal, annualRate, months == null ? 0 : months);
+    }
+}
+
+@Data
+class LoanBatchRequest {
+    private List<LoanRequest> loans;
+    private BigDecimal rateShift;
+}
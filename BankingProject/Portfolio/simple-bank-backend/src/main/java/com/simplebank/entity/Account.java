@@ -1,10 +1,11 @@
 package com.simplebank.entity;
 
+import com.simplebank.money.Money;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
-import java.math.BigDecimal;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,8 +17,10 @@ import java.util.List;
 @AllArgsConstructor
 public class Account {
     
+    // IDENTITYだとINSERTをバッチ化できないため、プール型シーケンスで採番する
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_seq", allocationSize = 50)
     private Long id;
     
     @Column(unique = true, nullable = false)
@@ -30,11 +33,24 @@ public class Account {
     private String password;
     
     @Column(nullable = false, precision = 15, scale = 2)
-    private BigDecimal balance = BigDecimal.ZERO;
+    private Money balance = Money.ZERO;
+    
+    // 1以上なら入金をこの数の残高バケット（BalanceBucket）に分散する。0は通常の口座
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int balanceBuckets;
+    
+    // 利息を最後に付けた月（yyyy-MM）。月末の利息計算を再実行したときに、付け済みの口座を飛ばす
+    @Column(length = 7)
+    private String interestAccruedMonth;
     
     @Column(nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
     
+    // 楽観ロック用。複数インスタンスからの同時更新を検出する
+    @Version
+    private Long version;
+    
     @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Transaction> transactions = new ArrayList<>();
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.simplebank.entity;
+
+import com.simplebank.money.Money;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * 口座ごとの照合の状態（LedgerReconciliationService）。照合済みの最後の取引（ウォーターマーク）までの件数・金額の合計・
+ * チェックサムを持ち、次回はウォーターマークより後の取引だけを読んで続きから照合する。
+ * 取引の順序は取引履歴と同じ（created_at, id）。
+ */
+@Entity
+@Table(name = "account_reconciliations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountReconciliation {
+
+    // 口座のID
+    @Id
+    private Long accountId;
+
+    // ウォーターマーク（照合済みの最後の取引）。取引がなければnull
+    private LocalDateTime lastCreatedAt;
+
+    private Long lastTransactionId;
+
+    // ウォーターマークまでの取引の件数、入出金の合計（入金は正・出金は負）、最後の取引後残高
+    @Column(nullable = false)
+    private long transactionCount;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money balanceSum;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money lastBalanceAfter;
+
+    // ウォーターマークまでの取引（ID・種類・金額・取引後残高）を順に畳み込んだ値。全件モードで履歴の改変を検出する
+    @Column(nullable = false)
+    private long checksum;
+
+    // 照合したときの口座のバージョン。変わっていなければ差分モードでは照合しない
+    private Long accountVersion;
+
+    @Column(nullable = false)
+    private LocalDateTime verifiedAt;
+}
@@ -0,0 +1,41 @@
+package com.simplebank.entity;
+
+import com.simplebank.money.Money;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 残高を分散する口座（Account.balanceBuckets > 0）の、まだ本体の残高に寄せていない入金額。
+ * 入金はbucket番号ごとの行に加算するので、同じ口座への入金同士が1行の更新で直列化されない。
+ * 口座の残高は accounts.balance と全バケットの合計。出金・振込の前に合計を本体に寄せて0に戻す（BalanceBuckets.settle）。
+ */
+@Entity
+@Table(name = "account_balance_buckets", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_account_balance_buckets_account_bucket", columnNames = {"account_id", "bucket"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceBucket {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_balance_buckets_seq")
+    @SequenceGenerator(name = "account_balance_buckets_seq", sequenceName = "account_balance_buckets_seq", allocationSize = 50)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+    
+    @Column(nullable = false)
+    private int bucket;
+    
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money balance;
+    
+    // 前回寄せてからの入金件数（日次残高集計の取引件数に加える）
+    @Column(nullable = false)
+    private long credits;
+}
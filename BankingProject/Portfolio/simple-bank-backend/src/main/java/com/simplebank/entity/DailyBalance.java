@@ -0,0 +1,50 @@
+package com.simplebank.entity;
+
+import com.simplebank.money.Money;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDate;
+
+/**
+ * 口座ごと・日ごとの残高集計。取引を登録したトランザクション内で更新する。
+ * 残高推移グラフはこの表から作るので、取引件数ではなく期間の日数に比例した読み込みで済む。
+ * min/maxにはその日の最初の取引の直前の残高（openBalance）も含む。
+ */
+@Entity
+@Table(name = "daily_balances", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_daily_balances_account_date", columnNames = {"account_id", "balance_date"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBalance {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "daily_balances_seq")
+    @SequenceGenerator(name = "daily_balances_seq", sequenceName = "daily_balances_seq", allocationSize = 50)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+    
+    @Column(name = "balance_date", nullable = false)
+    private LocalDate balanceDate;
+    
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money openBalance;
+    
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money minBalance;
+    
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money maxBalance;
+    
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money closeBalance;
+    
+    @Column(nullable = false)
+    private long transactionCount;
+}
@@ -0,0 +1,50 @@
+package com.simplebank.entity;
+
+import com.simplebank.money.Money;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * パイプラインモードで、残高更新と同じトランザクションに書く取引の控え（1操作1行）。
+ * 振込も1行で、送金元・送金先の2件の取引をまとめて持つ。説明文は持たず、取引表へ書き出すときに口座名から作る。
+ * IDは取引のIDそのもの（transactions_seqから採番済み）なので、書き出し後も応答・通知で返したIDと一致する。
+ */
+@Entity
+@Table(name = "ledger_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerOutboxEntry {
+    
+    // 取引のID（振込なら送金元の取引のID）
+    @Id
+    private Long id;
+    
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Transaction.TransactionType type;
+    
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money amount;
+    
+    @Column(nullable = false, precision = 15, scale = 2)
+    private Money balanceAfter;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    // 以下は振込のときだけ。送金先の口座・取引ID・取引後残高
+    @Column(name = "counterparty_account_id")
+    private Long counterpartyAccountId;
+    
+    private Long counterpartyTransactionId;
+    
+    @Column(precision = 15, scale = 2)
+    private Money counterpartyBalanceAfter;
+}
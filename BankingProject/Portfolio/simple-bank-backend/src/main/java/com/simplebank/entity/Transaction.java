@@ -1,21 +1,29 @@
 package com.simplebank.entity;
 
+import com.simplebank.money.Money;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    // 取引履歴のキーセットページング用
+    @Index(name = "idx_transactions_account_created", columnList = "account_id, created_at, id"),
+    // 起動時に直近1日分の出金・振込を読む（VelocityLimiter）ときの範囲検索用
+    @Index(name = "idx_transactions_created", columnList = "created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
     
+    // IDENTITYだとINSERTをバッチ化できないため、プール型シーケンスで採番する
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -27,13 +35,15 @@ public class Transaction {
     private TransactionType type;
     
     @Column(nullable = false, precision = 15, scale = 2)
-    private BigDecimal amount;
+    private Money amount;
     
     @Column(nullable = false, precision = 15, scale = 2)
-    private BigDecimal balanceAfter;
+    private Money balanceAfter;
     
+    // 列の精度（マイクロ秒）に揃えておく。コミット通知・読み取りモデルの値がDBから読んだ値と一致し、
+    // どちらから作った履歴のカーソルでも続きのページを同じように読める
     @Column(nullable = false)
-    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     
     @Column(length = 255)
     private String description;
@@ -42,6 +52,8 @@ public class Transaction {
         DEPOSIT,
         WITHDRAW,
         TRANSFER_IN,
-        TRANSFER_OUT
+        TRANSFER_OUT,
+        // 月末の利息（InterestAccrualService）
+        INTEREST
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package com.simplebank.money;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 金額（円）。1/100円単位のlongで保持する不変の値型。
+ * 残高計算を基本型の演算で行い、BigDecimalの生成を避ける。演算は桁あふれを検出して例外にする。
+ * DBの列はDECIMAL(15,2)のまま（MoneyConverter）、JSONでは小数点以下2桁の数値として扱う。
+ */
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public final class Money implements Comparable<Money> {
+    
+    public static final int SCALE = 2;
+    private static final long MINOR_PER_MAJOR = 100;
+    
+    public static final Money ZERO = new Money(0);
+    
+    private final long minorUnits;
+    
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+    
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+    
+    public static Money ofMajor(long yen) {
+        return ofMinor(multiply(yen, MINOR_PER_MAJOR));
+    }
+    
+    /**
+     * 小数点以下2桁までのBigDecimalから変換する。3桁目以降があれば例外。
+     */
+    public static Money of(BigDecimal amount) {
+        try {
+            return ofMinor(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("金額は小数点以下" + SCALE + "桁まで、" + Long.MAX_VALUE / MINOR_PER_MAJOR + "円以下で指定してください");
+        }
+    }
+    
+    // 高速経路で読む整数部の最大桁数。この桁数なら1/100円単位にしてもlongを超えない
+    private static final int FAST_PATH_DIGITS = 16;
+    
+    /**
+     * "1234"、"-12.5"、"0.05" のような10進表記を解析する。指数表記や桁数の多い値はBigDecimal経由で変換し、
+     * 範囲と小数点以下の桁数はof(BigDecimal)と同じく検査する。数字はASCIIの0〜9だけを受け付ける
+     * （全角数字などはBigDecimalなら受け付けてしまうので、その前に例外にする）。
+     */
+    public static Money parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long major = 0;
+        int digits = 0;
+        for (; i < length && isDigit(text.charAt(i)) && digits < FAST_PATH_DIGITS; i++, digits++) {
+            major = major * 10 + (text.charAt(i) - '0');
+        }
+        long minor = 0;
+        int fraction = 0;
+        if (i < length && text.charAt(i) == '.') {
+            for (i++; i < length && isDigit(text.charAt(i)) && fraction < SCALE; i++, fraction++) {
+                minor = minor * 10 + (text.charAt(i) - '0');
+            }
+            digits += fraction;
+        }
+        if (i != length || digits == 0) {
+            return parseDecimal(text);
+        }
+        for (; fraction < SCALE; fraction++) {
+            minor *= 10;
+        }
+        long value = major * MINOR_PER_MAJOR + minor;
+        return ofMinor(negative ? -value : value);
+    }
+    
+    private static Money parseDecimal(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                throw new NumberFormatException("金額は半角の数字で指定してください");
+            }
+        }
+        return of(new BigDecimal(text.toString()));
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    public long minorUnits() {
+        return minorUnits;
+    }
+    
+    public Money plus(Money other) {
+        return ofMinor(add(minorUnits, other.minorUnits));
+    }
+    
+    public Money minus(Money other) {
+        try {
+            return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException e) {
+            throw overflow();
+        }
+    }
+    
+    public Money negate() {
+        try {
+            return ofMinor(Math.negateExact(minorUnits));
+        } catch (ArithmeticException e) {
+            throw overflow();
+        }
+    }
+    
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+    
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+    
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+    
+    public Money min(Money other) {
+        return minorUnits <= other.minorUnits ? this : other;
+    }
+    
+    public Money max(Money other) {
+        return minorUnits >= other.minorUnits ? this : other;
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money money && money.minorUnits == minorUnits;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+    
+    /**
+     * 小数点以下2桁の10進表記（例: "1234.50"、"-0.05"）。
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(24);
+        long major = minorUnits / MINOR_PER_MAJOR;
+        long minor = Math.abs(minorUnits % MINOR_PER_MAJOR);
+        if (minorUnits < 0 && major == 0) {
+            text.append('-');
+        }
+        text.append(major).append('.');
+        if (minor < 10) {
+            text.append('0');
+        }
+        text.append(minor);
+        return text.toString();
+    }
+    
+    private static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            throw overflow();
+        }
+    }
+    
+    private static long multiply(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            throw overflow();
+        }
+    }
+    
+    private static ArithmeticException overflow() {
+        return new ArithmeticException("金額が扱える範囲を超えました");
+    }
+}
@@ -0,0 +1,37 @@
+package com.simplebank.money;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+
+/**
+ * 数値（100、1234.5）または文字列（"1234.50"）をMoneyに変換する。BigDecimalを経由しない。
+ */
+public class MoneyJsonDeserializer extends StdDeserializer<Money> {
+    
+    public MoneyJsonDeserializer() {
+        super(Money.class);
+    }
+    
+    @Override
+    public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+        try {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                JsonParser.NumberType type = parser.getNumberType();
+                if (type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG) {
+                    return Money.ofMajor(parser.getLongValue());
+                }
+                return Money.parse(parser.getText());
+            }
+            if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_STRING) {
+                return Money.parse(parser.getText().trim());
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            return (Money) context.handleWeirdStringValue(Money.class, parser.getText(), e.getMessage());
+        }
+        return (Money) context.handleUnexpectedToken(Money.class, parser);
+    }
+}
@@ -0,0 +1,21 @@
+package com.simplebank.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+
+/**
+ * Moneyを小数点以下2桁の数値（例: 1234.50）として書き出す。
+ */
+public class MoneyJsonSerializer extends StdSerializer<Money> {
+    
+    public MoneyJsonSerializer() {
+        super(Money.class);
+    }
+    
+    @Override
+    public void serialize(Money money, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeNumber(money.toString());
+    }
+}
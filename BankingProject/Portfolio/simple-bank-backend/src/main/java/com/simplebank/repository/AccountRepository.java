@@ -2,11 +2,46 @@ package com.simplebank.repository;
 
 import com.simplebank.entity.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByAccountNumber(String accountNumber);
     boolean existsByAccountNumber(String accountNumber);
-}
\ No newline at end of file
+    List<Account> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    @Query("SELECT a.id FROM Account a WHERE a.accountNumber = :accountNumber")
+    Optional<Long> findIdByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    // 一括登録の重複確認（チャンク内の口座番号を1クエリで確認する）
+    @Query("SELECT a.accountNumber FROM Account a WHERE a.accountNumber IN :accountNumbers")
+    List<String> findExistingAccountNumbers(@Param("accountNumbers") Collection<String> accountNumbers);
+
+    // パスワードをハッシュ化していない口座（ハッシュ化の導入前に作成された口座）の一覧（[口座番号, 平文のパスワード]）
+    @Query("SELECT a.accountNumber, a.password FROM Account a WHERE a.password NOT LIKE 'pbkdf2-sha256$%'")
+    List<Object[]> findLegacyPasswords();
+
+    // 残高を分散する口座の一覧（[口座番号, バケット数]）
+    @Query("SELECT a.accountNumber, a.balanceBuckets FROM Account a WHERE a.balanceBuckets > 0")
+    List<Object[]> findBucketedAccounts();
+
+    // 月末の利息計算の分割範囲
+    @Query("SELECT MIN(a.id) FROM Account a")
+    Optional<Long> findMinId();
+
+    @Query("SELECT MAX(a.id) FROM Account a")
+    Optional<Long> findMaxId();
+
+    // ID範囲内で、monthの利息をまだ付けていない口座（monthの翌月初めより前に開設したもの）。月は"yyyy-MM"なので文字列で比較できる
+    @Query("SELECT a.accountNumber FROM Account a WHERE a.id BETWEEN :fromId AND :toId AND a.createdAt < :openedBefore "
+        + "AND (a.interestAccruedMonth IS NULL OR a.interestAccruedMonth < :month)")
+    List<String> findInterestDueAccountNumbers(@Param("fromId") long fromId, @Param("toId") long toId,
+                                               @Param("openedBefore") LocalDateTime openedBefore,
+                                               @Param("month") String month);
+}
@@ -0,0 +1,36 @@
+package com.simplebank.repository;
+
+import com.simplebank.entity.BalanceBucket;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface BalanceBucketRepository extends JpaRepository<BalanceBucket, Long> {
+
+    // 入金。行を読まずに加算する（同じバケットへの入金だけが行ロックで直列化される）。バケットがなければ0を返す
+    @Modifying
+    @Query(value = "UPDATE account_balance_buckets SET balance = balance + :amount, credits = credits + 1 " +
+                   "WHERE account_id = :accountId AND bucket = :bucket", nativeQuery = true)
+    int credit(@Param("accountId") Long accountId, @Param("bucket") int bucket, @Param("amount") BigDecimal amount);
+
+    @Query(value = "SELECT COALESCE(SUM(balance), 0) FROM account_balance_buckets WHERE account_id = :accountId",
+           nativeQuery = true)
+    BigDecimal sumBalance(@Param("accountId") Long accountId);
+
+    // 本体に寄せる前に全バケットを行ロックする（寄せている間の入金は待たされる）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BalanceBucket b WHERE b.account.id = :accountId ORDER BY b.bucket")
+    List<BalanceBucket> findForUpdate(@Param("accountId") Long accountId);
+
+    // 口座の残高（本体 + 全バケット）。寄せる処理と競合しても1文で読むので合計は崩れない
+    @Query(value = "SELECT a.balance + COALESCE((SELECT SUM(b.balance) FROM account_balance_buckets b " +
+                   "WHERE b.account_id = a.id), 0) FROM accounts a WHERE a.id = :accountId", nativeQuery = true)
+    BigDecimal totalBalance(@Param("accountId") Long accountId);
+}
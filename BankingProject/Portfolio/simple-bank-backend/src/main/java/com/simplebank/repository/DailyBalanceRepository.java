@@ -0,0 +1,29 @@
+package com.simplebank.repository;
+
+import com.simplebank.entity.DailyBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DailyBalanceRepository extends JpaRepository<DailyBalance, Long> {
+
+    // 集計の更新対象（1トランザクションで登録した取引の口座×日付）をまとめて取得
+    @Query("SELECT d FROM DailyBalance d WHERE d.account.id IN :accountIds AND d.balanceDate IN :dates")
+    List<DailyBalance> findByAccountIdsAndDates(@Param("accountIds") Collection<Long> accountIds,
+                                                @Param("dates") Collection<LocalDate> dates);
+
+    @Query("SELECT d FROM DailyBalance d WHERE d.account.id = :accountId " +
+           "AND d.balanceDate BETWEEN :from AND :to ORDER BY d.balanceDate")
+    List<DailyBalance> findRange(@Param("accountId") Long accountId,
+                                 @Param("from") LocalDate from,
+                                 @Param("to") LocalDate to);
+
+    // 期間より前の最後の集計（期間開始時点の残高）
+    Optional<DailyBalance> findFirstByAccountIdAndBalanceDateLessThanOrderByBalanceDateDesc(Long accountId, LocalDate date);
+}
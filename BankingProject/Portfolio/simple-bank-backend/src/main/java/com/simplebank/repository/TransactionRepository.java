@@ -1,11 +1,50 @@
 package com.simplebank.repository;
 
 import com.simplebank.entity.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    List<Transaction> findByAccountIdOrderByCreatedAtDesc(Long accountId);
-}
\ No newline at end of file
+
+    // 最新ページ（カーソルなし）
+    @Query("SELECT t.id AS id, t.type AS type, t.amount AS amount, t.balanceAfter AS balanceAfter, " +
+           "t.createdAt AS createdAt, t.description AS description " +
+           "FROM Transaction t WHERE t.account.id = :accountId " +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionView> findHistoryPage(@Param("accountId") Long accountId, Pageable pageable);
+
+    // (createdAt, id) がカーソルより古い行だけを取得するキーセットページング
+    @Query("SELECT t.id AS id, t.type AS type, t.amount AS amount, t.balanceAfter AS balanceAfter, " +
+           "t.createdAt AS createdAt, t.description AS description " +
+           "FROM Transaction t WHERE t.account.id = :accountId " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id)) " +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionView> findHistoryPageBefore(@Param("accountId") Long accountId,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Long id,
+                                                Pageable pageable);
+
+    // 期間内の取引を1時間ごとに集計する（時間単位の残高推移用）。取引の行は返さず、取引のあった時間だけを古い順に
+    // [区間の開始, 最小残高, 最大残高, 区間末の残高（区間内の最後の取引の残高）] で返す
+    @Query(value = "SELECT h, MIN(balance_after), MAX(balance_after), MAX(CASE WHEN rn = 1 THEN balance_after END) " +
+                   "FROM (SELECT DATE_TRUNC('HOUR', created_at) AS h, balance_after, " +
+                   "ROW_NUMBER() OVER (PARTITION BY DATE_TRUNC('HOUR', created_at) " +
+                   "ORDER BY created_at DESC, id DESC) AS rn " +
+                   "FROM transactions WHERE account_id = :accountId " +
+                   "AND created_at >= :from AND created_at < :to) x " +
+                   "GROUP BY h ORDER BY h", nativeQuery = true)
+    List<Object[]> aggregateHourly(@Param("accountId") Long accountId,
+                                   @Param("from") LocalDateTime from,
+                                   @Param("to") LocalDateTime to);
+
+    // 指定した時刻以降に取引のあった口座（利息計算で月末の残高を取引から求める口座を選ぶ）
+    @Query("SELECT DISTINCT t.account.id FROM Transaction t WHERE t.account.id IN :accountIds AND t.createdAt >= :since")
+    List<Long> findAccountIdsPostedSince(@Param("accountIds") List<Long> accountIds,
+                                         @Param("since") LocalDateTime since);
+}
@@ -0,0 +1,18 @@
+package com.simplebank.repository;
+
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import java.time.LocalDateTime;
+
+/**
+ * 取引履歴表示用のプロジェクション。
+ * Accountの関連をロードせず、必要な列だけを取得する。
+ */
+public interface TransactionView {
+    Long getId();
+    Transaction.TransactionType getType();
+    Money getAmount();
+    Money getBalanceAfter();
+    LocalDateTime getCreatedAt();
+    String getDescription();
+}
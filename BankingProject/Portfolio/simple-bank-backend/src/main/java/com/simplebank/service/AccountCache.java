@@ -0,0 +1,77 @@
+package com.simplebank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * 口座番号→口座スナップショットの読み取りキャッシュ（件数上限とTTLで追い出し）。
+ * 残高更新のコミット後に新しいスナップショットで上書きする。
+ * 読み込みと更新が競合しても、バージョンの新しい方だけが残る。
+ */
+@Component
+public class AccountCache implements MeterBinder {
+    
+    private final Cache<String, AccountSnapshot> cache;
+    
+    public AccountCache(@Value("${simplebank.cache.max-size:100000}") long maxSize,
+                        @Value("${simplebank.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+    }
+    
+    public AccountSnapshot get(String accountNumber, Function<String, AccountSnapshot> loader) {
+        AccountSnapshot cached = cache.getIfPresent(accountNumber);
+        if (cached != null) {
+            return cached;
+        }
+        // DB読み込みはcompute（内部でsynchronized）の外で行う。
+        // 中で行うと仮想スレッドがキャリアスレッドに固定（pinning）される
+        AccountSnapshot loaded = loader.apply(accountNumber);
+        return update(loaded);
+    }
+    
+    /**
+     * バージョンが新しい場合だけ置き換え、キャッシュに残った方を返す。
+     * コミット前に読み込んだ古い値が、コミット後の値を上書きすることはない。
+     */
+    public AccountSnapshot update(AccountSnapshot snapshot) {
+        return cache.asMap().compute(snapshot.accountNumber(),
+            (key, current) -> current == null || snapshot.isNewerThan(current) ? snapshot : current);
+    }
+    
+    public void invalidate(String accountNumber) {
+        cache.invalidate(accountNumber);
+    }
+    
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    @EventListener
+    public void onLedgerCommitted(LedgerCommittedEvent event) {
+        event.accounts().forEach(this::update);
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "accounts");
+    }
+    
+    public AccountCacheStats stats() {
+        CacheStats stats = cache.stats();
+        return new AccountCacheStats(cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+            stats.hitRate(), stats.evictionCount());
+    }
+}
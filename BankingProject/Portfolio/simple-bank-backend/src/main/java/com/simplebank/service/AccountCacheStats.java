@@ -0,0 +1,7 @@
+package com.simplebank.service;
+
+/**
+ * 口座キャッシュの統計スナップショット。
+ */
+public record AccountCacheStats(long size, long hits, long misses, double hitRate, long evictions) {
+}
@@ -0,0 +1,132 @@
+package com.simplebank.service;
+
+import com.simplebank.repository.AccountRepository;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 全口座をID範囲でchunk-size件ずつのチャンクに分け、専用のForkJoinPoolで並列に処理する（利息計算・台帳の照合）。
+ * ID範囲はチャンクの境界で半分ずつに分けていき、チャンク1つ分になったらChunkProcessorに渡す。
+ * 失敗したチャンクは数えるだけで、他のチャンクは続ける。
+ */
+final class AccountChunkExecutor {
+    
+    private final AccountRepository accountRepository;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    
+    AccountChunkExecutor(AccountRepository accountRepository, int chunkSize, int parallelism) {
+        this.accountRepository = accountRepository;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * 現在の口座のID範囲とチャンク数を決める。返した進捗をexecuteに渡す。
+     */
+    Progress plan() {
+        Optional<Long> minId = accountRepository.findMinId();
+        Optional<Long> maxId = accountRepository.findMaxId();
+        if (minId.isEmpty()) {
+            return new Progress(0, -1, 0);
+        }
+        return new Progress(minId.get(), maxId.get(), chunkCount(minId.get(), maxId.get()));
+    }
+    
+    /**
+     * すべてのチャンクを処理し、終わるまで待つ。
+     */
+    void execute(Progress progress, ChunkProcessor processor) {
+        if (progress.chunks > 0) {
+            pool.invoke(new RangeTask(progress, processor, progress.fromId, progress.toId));
+        }
+        progress.finishNanos = System.nanoTime();
+    }
+    
+    void shutdown() {
+        pool.shutdown();
+    }
+    
+    private long chunkCount(long fromId, long toId) {
+        return (toId - fromId + chunkSize) / chunkSize;
+    }
+    
+    /**
+     * 1チャンク分（口座ID fromId〜toId、両端を含む）を処理し、成功したかを返す。失敗は呼び出し側で記録する。
+     */
+    @FunctionalInterface
+    interface ChunkProcessor {
+        boolean process(long fromId, long toId);
+    }
+    
+    /**
+     * 1回の実行のチャンク数と進捗。チャンクは並列に終わるので、件数はLongAdderで数える。
+     */
+    static final class Progress {
+        private final long fromId;
+        private final long toId;
+        private final long chunks;
+        private final long startNanos = System.nanoTime();
+        private volatile long finishNanos;
+        private final LongAdder completedChunks = new LongAdder();
+        private final LongAdder failedChunks = new LongAdder();
+        
+        private Progress(long fromId, long toId, long chunks) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.chunks = chunks;
+        }
+        
+        long chunks() {
+            return chunks;
+        }
+        
+        long completedChunks() {
+            return completedChunks.sum();
+        }
+        
+        long failedChunks() {
+            return failedChunks.sum();
+        }
+        
+        boolean inProgress() {
+            return finishNanos == 0;
+        }
+        
+        /**
+         * 開始からの経過時間。終わっていれば終了までの時間。
+         */
+        long elapsedNanos() {
+            long finished = finishNanos;
+            return (finished == 0 ? System.nanoTime() : finished) - startNanos;
+        }
+    }
+    
+    private final class RangeTask extends RecursiveAction {
+        private final Progress progress;
+        private final ChunkProcessor processor;
+        private final long fromId;
+        private final long toId;
+        
+        RangeTask(Progress progress, ChunkProcessor processor, long fromId, long toId) {
+            this.progress = progress;
+            this.processor = processor;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+        
+        @Override
+        protected void compute() {
+            long chunks = chunkCount(fromId, toId);
+            if (chunks <= 1) {
+                (processor.process(fromId, toId) ? progress.completedChunks : progress.failedChunks).increment();
+                return;
+            }
+            long middle = fromId + chunks / 2 * chunkSize;
+            invokeAll(new RangeTask(progress, processor, fromId, middle - 1),
+                new RangeTask(progress, processor, middle, toId));
+        }
+    }
+}
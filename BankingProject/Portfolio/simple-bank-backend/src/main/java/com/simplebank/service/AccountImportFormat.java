@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+/**
+ * 口座一括登録の入力形式。
+ * CSV: accountNumber,ownerName,password[,initialBalance]（1行目が列名なら読み飛ばす。値は"..."で囲める）
+ * NDJSON: 1行に1口座の {"accountNumber":...,"ownerName":...,"password":...,"initialBalance":...}
+ */
+public enum AccountImportFormat {
+    CSV,
+    NDJSON
+}
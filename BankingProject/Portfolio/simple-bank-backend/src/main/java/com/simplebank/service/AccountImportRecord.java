@@ -0,0 +1,10 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+
+/**
+ * 口座一括登録の1口座分。passwordはハッシュ化済み（PasswordHasherの形式）ならそのまま保存する。
+ * initialBalanceは省略可。0より大きければ開設と同じトランザクションで入金する。
+ */
+public record AccountImportRecord(String accountNumber, String ownerName, String password, Money initialBalance) {
+}
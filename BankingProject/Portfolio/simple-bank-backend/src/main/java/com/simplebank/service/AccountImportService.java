@@ -0,0 +1,341 @@
+package com.simplebank.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.simplebank.entity.Account;
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.repository.AccountRepository;
+import com.simplebank.repository.TransactionRepository;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 口座の一括登録（支店移行など）。アップロードを1行ずつ読み、chunk-size件ごとに1トランザクションで登録する。
+ * <p>
+ * メモリに持つのは1チャンク分だけで、件数によらず一定。重複確認はチャンク内の口座番号をまとめて1クエリで行い、
+ * 口座と初期残高の入金はJDBCバッチでINSERTする。口座ロックと台帳イベントは口座開設と同じものを使うので、
+ * ジャーナル・キャッシュ・日次残高集計にもそのまま反映される。
+ * <p>
+ * 結果はNDJSONで書き出す。行ごとのエラー（type=error）はその場で、チャンクのコミットごとに進捗（type=progress）、
+ * 最後に集計（type=completed）。パスワードがハッシュ化済みでない行は登録前にハッシュ化するため、その分遅くなる
+ * （チャンク分をまとめて並行にハッシュ化する）。ハッシュ化済みの行は形式と反復回数を確認してそのまま保存する。
+ */
+@Service
+@RequiredArgsConstructor
+@Observed(name = "ledger.service")
+public class AccountImportService {
+    
+    private static final String CSV_HEADER = "accountNumber";
+    
+    private final AccountService accountService;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerEventRecorder ledgerEventRecorder;
+    private final PasswordHasher passwordHasher;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${simplebank.import.chunk-size:1000}")
+    private int chunkSize;
+    
+    public void importAccounts(InputStream in, AccountImportFormat format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        ObjectReader recordReader = objectMapper.readerFor(AccountImportRecord.class);
+        Progress progress = new Progress(objectMapper.getFactory().createGenerator(out));
+        
+        // 行番号 → 1口座分（チャンク内の順序を保つ）
+        Map<Long, AccountImportRecord> chunk = new LinkedHashMap<>();
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == AccountImportFormat.CSV && lineNumber == 1 && line.startsWith(CSV_HEADER)) {
+                continue;
+            }
+            progress.lines++;
+            try {
+                chunk.put(lineNumber, validate(format == AccountImportFormat.CSV
+                    ? parseCsv(line)
+                    : parseJson(recordReader, line)));
+            } catch (RuntimeException e) {
+                progress.failed(lineNumber, null, e.getMessage());
+                continue;
+            }
+            if (chunk.size() >= chunkSize) {
+                importChunk(chunk, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, progress);
+        }
+        progress.completed(System.nanoTime() - start);
+    }
+    
+    /**
+     * 1チャンク分を1トランザクションで登録する。既存・チャンク内で重複した口座番号の行はその行だけを失敗にし、
+     * コミット自体が失敗した場合はチャンク内の全行を失敗扱いにする。
+     */
+    private void importChunk(Map<Long, AccountImportRecord> chunk, Progress progress) throws IOException {
+        // ファイル内の重複（前のチャンクとの重複は、コミット済みなのでDBの確認で見つかる）
+        Map<String, Long> lineByAccount = new HashMap<>();
+        for (Map.Entry<Long, AccountImportRecord> entry : chunk.entrySet()) {
+            String accountNumber = entry.getValue().accountNumber();
+            if (lineByAccount.putIfAbsent(accountNumber, entry.getKey()) != null) {
+                progress.failed(entry.getKey(), accountNumber, "ファイル内で口座番号が重複しています");
+            }
+        }
+        
+        // ハッシュ化は時間がかかるため、ロックを取る前に済ませる。ハッシュ化済みの値は形式と反復回数だけを確認し、
+        // 平文はチャンク分をまとめてPasswordHasherのプールに入れる（同時に入れる件数はログインの分を残して制限される）
+        Map<String, String> passwords = new HashMap<>();
+        List<String> plainAccounts = new ArrayList<>();
+        List<String> plainPasswords = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = lineByAccount.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            String password = chunk.get(entry.getValue()).password();
+            if (!PasswordHasher.isEncoded(password)) {
+                plainAccounts.add(entry.getKey());
+                plainPasswords.add(password);
+                continue;
+            }
+            try {
+                passwordHasher.checkEncoded(password);
+                passwords.put(entry.getKey(), password);
+            } catch (RuntimeException e) {
+                progress.failed(entry.getValue(), entry.getKey(), e.getMessage());
+                iterator.remove();
+            }
+        }
+        List<Future<String>> hashes = passwordHasher.hashAll(plainPasswords);
+        for (int i = 0; i < hashes.size(); i++) {
+            String accountNumber = plainAccounts.get(i);
+            try {
+                passwords.put(accountNumber, hashes.get(i).get());
+            } catch (ExecutionException e) {
+                progress.failed(lineByAccount.remove(accountNumber), accountNumber, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("一括登録が中断されました", e);
+            }
+        }
+        if (lineByAccount.isEmpty()) {
+            progress.chunk();
+            return;
+        }
+        
+        Set<String> accountNumbers = lineByAccount.keySet();
+        Set<String> existing = new HashSet<>();
+        int created;
+        try {
+            Integer inserted = accountService.executeLedger(accountNumbers, status -> {
+                existing.clear();
+                existing.addAll(accountRepository.findExistingAccountNumbers(accountNumbers));
+                List<Account> accounts = new ArrayList<>(accountNumbers.size());
+                List<Transaction> deposits = new ArrayList<>();
+                for (Map.Entry<String, Long> entry : lineByAccount.entrySet()) {
+                    if (existing.contains(entry.getKey())) {
+                        continue;
+                    }
+                    AccountImportRecord record = chunk.get(entry.getValue());
+                    Account account = new Account();
+                    account.setAccountNumber(record.accountNumber());
+                    account.setOwnerName(record.ownerName());
+                    account.setPassword(passwords.get(record.accountNumber()));
+                    account.setBalance(Money.ZERO);
+                    accounts.add(account);
+                }
+                
+                accountRepository.saveAll(accounts);
+                for (Account account : accounts) {
+                    ledgerEventRecorder.recordOpened(account);
+                    Money initialBalance = chunk.get(lineByAccount.get(account.getAccountNumber())).initialBalance();
+                    if (initialBalance != null && initialBalance.isPositive()) {
+                        deposits.add(accountService.postDeposit(account, initialBalance));
+                    }
+                }
+                transactionRepository.saveAll(deposits);
+                accountRepository.flush();
+                return accounts.size();
+            });
+            created = inserted == null ? 0 : inserted;
+        } catch (RuntimeException e) {
+            for (Map.Entry<String, Long> entry : lineByAccount.entrySet()) {
+                progress.failed(entry.getValue(), entry.getKey(), "チャンクの登録に失敗しました: " + e.getMessage());
+            }
+            progress.flush();
+            return;
+        }
+        
+        for (String accountNumber : existing) {
+            progress.failed(lineByAccount.get(accountNumber), accountNumber, "口座番号が既に存在します");
+        }
+        progress.created += created;
+        progress.chunk();
+    }
+    
+    private static AccountImportRecord validate(AccountImportRecord record) {
+        if (isBlank(record.accountNumber())) {
+            throw new RuntimeException("口座番号を入力してください");
+        }
+        if (isBlank(record.ownerName())) {
+            throw new RuntimeException("名義を入力してください");
+        }
+        if (record.password() == null || record.password().isEmpty()) {
+            throw new RuntimeException("パスワードを入力してください");
+        }
+        if (record.initialBalance() != null && record.initialBalance().isNegative()) {
+            throw new RuntimeException("初期残高は0円以上でなければなりません");
+        }
+        return record;
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
+    private static AccountImportRecord parseJson(ObjectReader recordReader, String line) {
+        try {
+            return recordReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSONの形式が正しくありません");
+        }
+    }
+    
+    private static AccountImportRecord parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 3 || fields.size() > 4) {
+            throw new RuntimeException("列数が正しくありません（accountNumber,ownerName,password[,initialBalance]）");
+        }
+        Money initialBalance = null;
+        if (fields.size() == 4 && !fields.get(3).isBlank()) {
+            try {
+                initialBalance = Money.parse(fields.get(3).trim());
+            } catch (RuntimeException e) {
+                throw new RuntimeException("初期残高の形式が正しくありません");
+            }
+        }
+        return new AccountImportRecord(fields.get(0).trim(), fields.get(1).trim(), fields.get(2), initialBalance);
+    }
+    
+    /**
+     * CSVの1行を列に分ける。"..."で囲んだ列はカンマを含められ、""は"1文字として読む。
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new RuntimeException("引用符が閉じられていません");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    /**
+     * 件数の集計とNDJSONの書き出し。進捗はチャンクごとにフラッシュして、呼び出し側に逐次届ける。
+     */
+    private static class Progress {
+        private final JsonGenerator generator;
+        private long lines;
+        private long created;
+        private long failed;
+        
+        Progress(JsonGenerator generator) {
+            // 行の区切りは自分で書くので、ルート値の間の既定の区切り（空白）は出さない
+            generator.setRootValueSeparator(null);
+            this.generator = generator;
+        }
+        
+        void failed(long lineNumber, String accountNumber, String message) throws IOException {
+            failed++;
+            generator.writeStartObject();
+            generator.writeStringField("type", "error");
+            generator.writeNumberField("line", lineNumber);
+            if (accountNumber != null) {
+                generator.writeStringField("accountNumber", accountNumber);
+            }
+            generator.writeStringField("message", message);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        
+        void chunk() throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "progress");
+            writeCounts();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            flush();
+        }
+        
+        void completed(long elapsedNanos) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "completed");
+            writeCounts();
+            generator.writeNumberField("elapsedMillis", elapsedNanos / 1_000_000);
+            generator.writeNumberField("accountsPerSecond", elapsedNanos == 0 ? 0 : created * 1_000_000_000.0 / elapsedNanos);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            flush();
+        }
+        
+        void flush() throws IOException {
+            generator.flush();
+        }
+        
+        private void writeCounts() throws IOException {
+            generator.writeNumberField("lines", lines);
+            generator.writeNumberField("created", created);
+            generator.writeNumberField("failed", failed);
+        }
+    }
+}
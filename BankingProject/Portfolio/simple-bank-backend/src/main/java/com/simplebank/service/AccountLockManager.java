@@ -0,0 +1,114 @@
+package com.simplebank.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 口座番号をキーにしたストライプロック。
+ * 同じ口座への操作は直列化し、無関係な口座は並行して処理できる。
+ * 複数口座を扱う場合はストライプ番号の昇順で取得するため、
+ * 逆方向の振込が同時に来てもデッドロックしない。
+ */
+@Component
+public class AccountLockManager implements MeterBinder {
+    
+    private final ReentrantLock[] stripes;
+    private final long timeoutNanos;
+    
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    
+    public AccountLockManager(@Value("${simplebank.lock.stripes:1024}") int stripeCount,
+                              @Value("${simplebank.lock.timeout-ms:2000}") long timeoutMillis) {
+        // インデックス計算をビット演算にするため2のべき乗に切り上げる
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+    
+    /**
+     * 指定した口座すべてのロックを取得してactionを実行する。
+     * タイムアウトまでに取得できなければ例外を投げる。
+     */
+    public <T> T withLocks(Collection<String> accountNumbers, Supplier<T> action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String accountNumber : accountNumbers) {
+            if (accountNumber != null) {
+                indexes.add(stripeIndex(accountNumber));
+            }
+        }
+        
+        int[] held = new int[indexes.size()];
+        int heldCount = 0;
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        try {
+            for (int index : indexes) {
+                if (!stripes[index].tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    timeouts.increment();
+                    throw new RuntimeException("口座が処理中です。しばらくしてから再度お試しください");
+                }
+                held[heldCount++] = index;
+            }
+            recordWait(System.nanoTime() - start);
+            return action.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("口座ロックの取得が中断されました");
+        } finally {
+            for (int i = heldCount - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+    }
+    
+    public LockStats stats() {
+        long count = acquisitions.sum();
+        return new LockStats(
+            stripes.length,
+            count,
+            timeouts.sum(),
+            count == 0 ? 0 : totalWaitNanos.sum() / 1000.0 / count,
+            maxWaitNanos.get() / 1000.0
+        );
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ledger.lock.acquisitions", acquisitions, LongAdder::sum)
+            .description("口座ロックの取得回数").register(registry);
+        FunctionCounter.builder("ledger.lock.timeouts", timeouts, LongAdder::sum)
+            .description("口座ロックの取得タイムアウト回数").register(registry);
+        FunctionCounter.builder("ledger.lock.wait", totalWaitNanos, adder -> adder.sum() / 1_000_000_000.0)
+            .description("口座ロックの累積待ち時間").baseUnit("seconds").register(registry);
+        Gauge.builder("ledger.lock.wait.max", maxWaitNanos, max -> max.get() / 1_000_000_000.0)
+            .description("口座ロックの最大待ち時間").baseUnit("seconds").register(registry);
+    }
+    
+    private int stripeIndex(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+    
+    private void recordWait(long waitNanos) {
+        acquisitions.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+}
@@ -0,0 +1,388 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.repository.TransactionView;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 口座情報・取引履歴の読み取りモデル（口座ごとの概要と直近の取引）。
+ * <p>
+ * 口座APIの読み取り（口座情報・取引履歴・ログイン時の照合）はここから返し、書き込み側のエンティティと表は読まない。
+ * 更新はコミット通知（LedgerCommittedEvent）を反映用の1スレッドで順に適用する。通知を受けた時点で口座ごとの
+ * 反映待ちの件数を数えておき、読む口座に反映待ちがあれば反映を待つので、自分の書き込みは必ず見える
+ * （max-wait-msを過ぎたらDBから読む）。起動時と再構築（rebuild）では、DBの口座表と口座ごとの直近の取引から作り直す。
+ * <p>
+ * 直近の取引は口座ごとにrecent-transactions件まで持つ。それより古いページや、読み取りモデルにない口座
+ * （再構築後にDBへ直接投入された口座など）はDBから読む。件数はプロセス内で数えるため、
+ * 複数インスタンス構成（cluster）では他インスタンスの更新が反映されない。
+ */
+@Slf4j
+@Component
+public class AccountReadModel implements SmartLifecycle, MeterBinder {
+    
+    private static final String ACCOUNTS_SQL =
+        "SELECT id, account_number, owner_name, password, balance, version FROM accounts";
+    // 口座ごとに新しい順でrecent-transactions + 1件（それより古い取引があるかの判定用）まで読む
+    private static final String RECENT_SQL =
+        "SELECT a.account_number, t.id, t.type, t.amount, t.balance_after, t.created_at, t.description FROM ("
+            + "SELECT id, account_id, type, amount, balance_after, created_at, description, "
+            + "ROW_NUMBER() OVER (PARTITION BY account_id ORDER BY created_at DESC, id DESC) AS position "
+            + "FROM transactions) t JOIN accounts a ON a.id = t.account_id "
+            + "WHERE t.position <= ? ORDER BY t.account_id, t.position";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerOutbox ledgerOutbox;
+    private final boolean enabled;
+    private final int capacity;
+    private final long maxWaitNanos;
+    
+    private volatile Map<String, AccountView> views = new ConcurrentHashMap<>();
+    // 口座番号ごとの反映待ちのコミット通知数（通知を受けたときに加算、反映後に減算。0になったら消す）
+    private final Map<String, Integer> pendingByAccount = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Update> queue = new LinkedBlockingQueue<>();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile Update applying;
+    private volatile long lastRebuildMillis;
+    
+    private Thread projector;
+    private volatile boolean accepting;
+    private volatile boolean running;
+    
+    public AccountReadModel(JdbcTemplate jdbcTemplate,
+                            LedgerOutbox ledgerOutbox,
+                            @Value("${simplebank.read-model.enabled:true}") boolean enabled,
+                            @Value("${simplebank.read-model.recent-transactions:50}") int capacity,
+                            @Value("${simplebank.read-model.max-wait-ms:200}") long maxWaitMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerOutbox = ledgerOutbox;
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+    
+    // ---- 読み取り ----
+    
+    /**
+     * 口座の概要。読み取りモデルから返せなければnull（呼び出し側がDBから読む）。
+     */
+    AccountSnapshot summary(String accountNumber) {
+        AccountView view = current(accountNumber);
+        if (view == null || view.summary() == null) {
+            fallbacks.increment();
+            return null;
+        }
+        reads.increment();
+        return view.summary();
+    }
+    
+    /**
+     * 取引履歴の1ページ（新しい順にpageSize件まで）。cursorがnullなら先頭から。
+     * 持っている直近の取引だけでページが埋まらず、より古い取引がある場合はnull（呼び出し側がDBから読む）。
+     */
+    List<TransactionView> history(String accountNumber, int pageSize, HistoryCursor cursor) {
+        AccountView view = current(accountNumber);
+        if (view == null) {
+            fallbacks.increment();
+            return null;
+        }
+        List<TransactionView> items = new ArrayList<>(Math.min(pageSize, view.recent().size()));
+        for (RecentTransaction transaction : view.recent()) {
+            if (cursor != null && !transaction.isOlderThan(cursor.createdAt(), cursor.id())) {
+                continue;
+            }
+            items.add(transaction);
+            if (items.size() == pageSize) {
+                break;
+            }
+        }
+        if (items.size() < pageSize && view.truncated()) {
+            fallbacks.increment();
+            return null;
+        }
+        reads.increment();
+        return items;
+    }
+    
+    /**
+     * 口座の反映待ちがなくなるまで待ってから、その口座のビューを返す。待ちきれなければnull。
+     */
+    private AccountView current(String accountNumber) {
+        if (!running) {
+            return null;
+        }
+        if (pendingByAccount.containsKey(accountNumber)) {
+            long deadline = System.nanoTime() + maxWaitNanos;
+            while (pendingByAccount.containsKey(accountNumber)) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(100_000);
+            }
+        }
+        return views.get(accountNumber);
+    }
+    
+    // ---- 更新 ----
+    
+    /**
+     * 口座ロックを保持したスレッドで呼ばれるので、反映待ちを数えてキューに入れるだけにする。
+     */
+    @EventListener
+    public void onLedgerCommitted(LedgerCommittedEvent event) {
+        if (!accepting) {
+            return;
+        }
+        Set<String> accountNumbers = new HashSet<>();
+        event.accounts().forEach(account -> accountNumbers.add(account.accountNumber()));
+        event.opened().forEach(account -> accountNumbers.add(account.accountNumber()));
+        event.transactions().forEach(transaction -> accountNumbers.add(transaction.getAccount().getAccountNumber()));
+        accountNumbers.forEach(accountNumber -> pendingByAccount.merge(accountNumber, 1, Integer::sum));
+        queue.add(new Update(event, accountNumbers, null, System.nanoTime()));
+    }
+    
+    /**
+     * DBから作り直す。反映用のスレッドで行うので、作り直している間に届いた通知はその後に反映される。
+     */
+    public ReadModelStats rebuild() {
+        if (!enabled) {
+            return stats();
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Update(null, Set.of(), done, System.nanoTime()));
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("読み取りモデルの再構築が中断されました");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("読み取りモデルの再構築に失敗しました: " + e.getCause().getMessage(), e.getCause());
+        }
+        return stats();
+    }
+    
+    private void project() {
+        while (running) {
+            Update update;
+            try {
+                update = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            applying = update;
+            RuntimeException failure = null;
+            try {
+                if (update.rebuilt() != null) {
+                    rebuildNow();
+                } else {
+                    apply(update.event());
+                    applied.increment();
+                }
+            } catch (RuntimeException e) {
+                // 反映できなかった口座は読み取りモデルから外し、DBから読ませる（次の再構築で戻る）
+                log.error("読み取りモデルへの反映に失敗しました", e);
+                update.accountNumbers().forEach(views::remove);
+                failure = e;
+            } finally {
+                applying = null;
+                update.accountNumbers().forEach(accountNumber ->
+                    pendingByAccount.computeIfPresent(accountNumber, (key, count) -> count <= 1 ? null : count - 1));
+            }
+            if (update.rebuilt() != null) {
+                if (failure == null) {
+                    update.rebuilt().complete(null);
+                } else {
+                    update.rebuilt().completeExceptionally(failure);
+                }
+            }
+        }
+    }
+    
+    private void apply(LedgerCommittedEvent event) {
+        for (AccountSnapshot opened : event.opened()) {
+            // 開設したばかりの口座には古い取引がない
+            views.putIfAbsent(opened.accountNumber(), new AccountView(opened, List.of(), false));
+        }
+        for (AccountSnapshot account : event.accounts()) {
+            AccountView view = views.get(account.accountNumber());
+            if (view == null) {
+                // 読み取りモデルを作った後にDBへ直接入った口座。それまでの取引は持っていない
+                views.put(account.accountNumber(), new AccountView(account, List.of(), true));
+            } else if (view.summary() == null || account.isNewerThan(view.summary())) {
+                views.put(account.accountNumber(), view.withSummary(account));
+            }
+        }
+        for (Transaction transaction : event.transactions()) {
+            String accountNumber = transaction.getAccount().getAccountNumber();
+            AccountView view = views.get(accountNumber);
+            if (view == null) {
+                // 口座の行を更新しない取引（残高バケットへの入金）で初めて見た口座
+                view = new AccountView(null, List.of(), true);
+            }
+            views.put(accountNumber, view.withTransaction(RecentTransaction.of(transaction), capacity));
+        }
+    }
+    
+    private void rebuildNow() {
+        long started = System.nanoTime();
+        // パイプラインモードで書き出し待ちの取引も取引表に入れてから読む
+        ledgerOutbox.flush();
+        Map<String, AccountView> rebuilt = new ConcurrentHashMap<>();
+        Map<String, List<RecentTransaction>> recent = new HashMap<>();
+        jdbcTemplate.query(RECENT_SQL, rs -> {
+            recent.computeIfAbsent(rs.getString(1), key -> new ArrayList<>()).add(new RecentTransaction(
+                rs.getLong(2),
+                Transaction.TransactionType.valueOf(rs.getString(3)),
+                Money.of(rs.getBigDecimal(4)),
+                Money.of(rs.getBigDecimal(5)),
+                rs.getTimestamp(6).toLocalDateTime(),
+                rs.getString(7)));
+        }, capacity + 1);
+        jdbcTemplate.query(ACCOUNTS_SQL, rs -> {
+            AccountSnapshot summary = new AccountSnapshot(rs.getLong(1), rs.getString(2), rs.getString(3),
+                rs.getString(4), Money.of(rs.getBigDecimal(5)), rs.getLong(6));
+            List<RecentTransaction> transactions = recent.getOrDefault(summary.accountNumber(), List.of());
+            boolean truncated = transactions.size() > capacity;
+            rebuilt.put(summary.accountNumber(), new AccountView(summary,
+                List.copyOf(truncated ? transactions.subList(0, capacity) : transactions), truncated));
+        });
+        views = rebuilt;
+        lastRebuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        rebuilds.increment();
+        log.info("読み取りモデルを再構築しました: 口座数={}, {}ms", rebuilt.size(), lastRebuildMillis);
+    }
+    
+    // ---- 統計 ----
+    
+    public ReadModelStats stats() {
+        return new ReadModelStats(enabled, views.size(), queue.size() + (applying == null ? 0 : 1),
+            lagMillis(), applied.sum(), reads.sum(), fallbacks.sum(), rebuilds.sum(), lastRebuildMillis);
+    }
+    
+    private double lagMillis() {
+        Update oldest = applying;
+        if (oldest == null) {
+            oldest = queue.peek();
+        }
+        return oldest == null ? 0 : (System.nanoTime() - oldest.receivedNanos()) / 1_000_000.0;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("ledger.readmodel.lag", this, model -> model.lagMillis() / 1000.0)
+            .description("反映を待っている最も古いコミット通知の経過時間").baseUnit("seconds").register(registry);
+        Gauge.builder("ledger.readmodel.pending", queue, LinkedBlockingQueue::size)
+            .description("反映を待っているコミット通知数").register(registry);
+        FunctionCounter.builder("ledger.readmodel.applied", applied, LongAdder::sum)
+            .description("読み取りモデルに反映したコミット通知数").register(registry);
+        FunctionCounter.builder("ledger.readmodel.reads", reads, LongAdder::sum)
+            .description("読み取りモデルから返した読み取り数").register(registry);
+        FunctionCounter.builder("ledger.readmodel.fallbacks", fallbacks, LongAdder::sum)
+            .description("読み取りモデルから返せずDBから読んだ数").register(registry);
+    }
+    
+    // ---- 起動と停止 ----
+    
+    /**
+     * ジャーナルの再生（フェーズ0）の後に、DBから作ってから読み取りに使い始める。
+     */
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+    
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        projector = new Thread(this::project, "account-read-model");
+        projector.setDaemon(true);
+        projector.start();
+        // 作り直しより後にコミットされた分を取りこぼさないよう、先に通知を受け付け始める
+        accepting = true;
+        rebuild();
+    }
+    
+    @Override
+    public void stop() {
+        accepting = false;
+        running = false;
+        if (projector != null) {
+            projector.interrupt();
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * 口座ごとのビュー（不変）。更新は反映用のスレッドだけが行い、新しいビューに置き換える。
+     * recentは新しい順。truncatedならrecentより古い取引がDBにある。
+     */
+    private record AccountView(AccountSnapshot summary, List<RecentTransaction> recent, boolean truncated) {
+        
+        AccountView withSummary(AccountSnapshot newSummary) {
+            return new AccountView(newSummary, recent, truncated);
+        }
+        
+        AccountView withTransaction(RecentTransaction transaction, int capacity) {
+            List<RecentTransaction> updated = new ArrayList<>(recent.size() + 1);
+            boolean inserted = false;
+            for (RecentTransaction existing : recent) {
+                if (existing.getId().equals(transaction.getId())) {
+                    // 再構築の読み込みに含まれていた取引
+                    return this;
+                }
+                if (!inserted && existing.isOlderThan(transaction.getCreatedAt(), transaction.getId())) {
+                    updated.add(transaction);
+                    inserted = true;
+                }
+                updated.add(existing);
+            }
+            if (!inserted) {
+                updated.add(transaction);
+            }
+            boolean dropped = updated.size() > capacity;
+            if (dropped) {
+                updated.remove(updated.size() - 1);
+            }
+            return new AccountView(summary, List.copyOf(updated), truncated || dropped);
+        }
+    }
+    
+    private record Update(LedgerCommittedEvent event, Set<String> accountNumbers, CompletableFuture<Void> rebuilt,
+                          long receivedNanos) {
+    }
+}
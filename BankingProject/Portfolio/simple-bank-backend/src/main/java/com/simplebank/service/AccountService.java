@@ -2,138 +2,389 @@ package com.simplebank.service;
 
 import com.simplebank.entity.Account;
 import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
 import com.simplebank.repository.AccountRepository;
 import com.simplebank.repository.TransactionRepository;
+import com.simplebank.repository.TransactionView;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import java.math.BigDecimal;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
+@Observed(name = "ledger.service")
 public class AccountService {
     
+    static final int DEFAULT_HISTORY_LIMIT = 50;
+    static final int MAX_HISTORY_LIMIT = 500;
+    
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final AccountLockManager accountLockManager;
+    private final OptimisticRetryExecutor optimisticRetryExecutor;
+    private final AccountCache accountCache;
+    private final LedgerEventRecorder ledgerEventRecorder;
+    private final LedgerMetrics ledgerMetrics;
+    private final LedgerWriteGate ledgerWriteGate;
+    private final PasswordHasher passwordHasher;
+    private final LedgerOutbox ledgerOutbox;
+    private final BalanceBuckets balanceBuckets;
+    private final AccountReadModel accountReadModel;
+    private final VelocityLimiter velocityLimiter;
+    private final TransactionTemplate transactionTemplate;
     
     public Account createAccount(String accountNumber, String ownerName, String password) {
-        if (accountRepository.existsByAccountNumber(accountNumber)) {
-            throw new RuntimeException("口座番号が既に存在します");
+        if (password == null || password.isEmpty()) {
+            throw new RuntimeException("パスワードを入力してください");
+        }
+        // ハッシュ化は時間がかかるため、ロックを取る前に済ませる
+        String passwordHash = passwordHasher.hash(password);
+        // 同じ口座番号の同時開設を防ぐため、残高更新と同じく口座ロックを取って実行する
+        return executeLedger(List.of(accountNumber), status -> {
+            if (accountRepository.existsByAccountNumber(accountNumber)) {
+                throw new RuntimeException("口座番号が既に存在します");
+            }
+            
+            Account account = new Account();
+            account.setAccountNumber(accountNumber);
+            account.setOwnerName(ownerName);
+            account.setPassword(passwordHash);
+            account.setBalance(Money.ZERO);
+            
+            Account saved = accountRepository.save(account);
+            ledgerEventRecorder.recordOpened(saved);
+            return saved;
+        });
+    }
+    
+    /**
+     * 口座情報を取得する（読み取り専用。読み取りモデル、なければキャッシュから返す）。
+     * 残高を分散する口座の残高は、本体と全バケットの合計を読む。
+     */
+    public AccountSnapshot getAccount(String accountNumber) {
+        AccountSnapshot account = accountReadModel.summary(accountNumber);
+        if (account == null) {
+            account = accountCache.get(accountNumber, key -> AccountSnapshot.of(loadAccount(key)));
+        }
+        if (balanceBuckets.bucketsOf(accountNumber) > 0) {
+            return account.withBalance(balanceBuckets.balance(account.id()));
+        }
+        return account;
+    }
+    
+    public Transaction deposit(String accountNumber, Money amount) {
+        int buckets = balanceBuckets.bucketsOf(accountNumber);
+        if (buckets > 0) {
+            Transaction credited = depositToBucket(accountNumber, buckets, amount);
+            if (credited != null) {
+                return credited;
+            }
+            // 待っている間にバケット数が変更された。口座のロックを取り直して通常の入金で行う
+        }
+        return executeLedger(List.of(accountNumber), status -> {
+            Account account = loadAccount(accountNumber);
+            return saveTransactions(List.of(postDeposit(account, amount)));
+        });
+    }
+    
+    /**
+     * 残高を分散する口座への入金。選んだバケットのロックだけを取り、バケットの行に加算する。
+     * 取引の残高（balanceAfter）は加算した時点の本体と全バケットの合計で、並行する入金の分も含むことがある。
+     * バケットがなくなっていればnullを返す。
+     */
+    private Transaction depositToBucket(String accountNumber, int buckets, Money amount) {
+        if (amount == null || !amount.isPositive()) {
+            throw new RuntimeException("入金額は0円より大きくなければなりません");
         }
+        int bucket = BalanceBuckets.chooseBucket(buckets);
+        return executeWithLocks(List.of(BalanceBuckets.lockKey(accountNumber, bucket)), status -> {
+            Transaction transaction = postBucketCredit(loadAccount(accountNumber), bucket, amount);
+            return transaction == null ? null : saveTransactions(List.of(transaction));
+        });
+    }
+    
+    /**
+     * 出金。出金・振込の上限（VelocityLimiter）を超えるならVelocityLimitExceededException。
+     */
+    public Transaction withdraw(String accountNumber, Money amount) {
+        return executeLedger(List.of(accountNumber), status -> {
+            Account account = loadAccount(accountNumber);
+            Transaction transaction = postWithdraw(account, amount);
+            velocityLimiter.acquire(accountNumber, amount);
+            return saveTransactions(List.of(transaction));
+        });
+    }
+    
+    /**
+     * 取引履歴を新しい順に最大limit件取得する。
+     * beforeに前ページのnextCursorを渡すと、その続きを返す。
+     * 読み取りモデルの直近の取引で足りればそこから返し、足りなければDBから読む。
+     * パイプラインモードでは、DBから読む前にこの口座の書き出し待ちの取引を書き出す。
+     */
+    public HistoryPage getTransactionHistory(String accountNumber, Integer limit, String before) {
+        int pageSize = limit == null ? DEFAULT_HISTORY_LIMIT : Math.min(Math.max(limit, 1), MAX_HISTORY_LIMIT);
+        HistoryCursor cursor = before == null || before.isBlank() ? null : HistoryCursor.parse(before);
         
-        Account account = new Account();
-        account.setAccountNumber(accountNumber);
-        account.setOwnerName(ownerName);
-        account.setPassword(password);
-        account.setBalance(BigDecimal.ZERO);
+        List<TransactionView> items = accountReadModel.history(accountNumber, pageSize, cursor);
+        if (items == null) {
+            items = loadHistory(accountNumber, pageSize, cursor);
+        }
         
-        return accountRepository.save(account);
+        String nextCursor = null;
+        if (items.size() == pageSize) {
+            TransactionView last = items.get(items.size() - 1);
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).toString();
+        }
+        return new HistoryPage(items, nextCursor);
     }
     
-    public Account getAccount(String accountNumber) {
-        return accountRepository.findByAccountNumber(accountNumber)
+    private List<TransactionView> loadHistory(String accountNumber, int pageSize, HistoryCursor cursor) {
+        Long accountId = accountRepository.findIdByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("口座が見つかりません"));
+        ledgerOutbox.awaitWritten(accountId);
+        
+        PageRequest page = PageRequest.of(0, pageSize);
+        if (cursor == null) {
+            return transactionRepository.findHistoryPage(accountId, page);
+        }
+        return transactionRepository.findHistoryPageBefore(accountId, cursor.createdAt(), cursor.id(), page);
+    }
+    
+    /**
+     * パスワードを照合する。照合はPasswordHasherのプールで行い、混み合っていればAuthenticationBusyException。
+     */
+    public boolean authenticate(String accountNumber, String password) {
+        AccountSnapshot account = getAccount(accountNumber);
+        return passwordHasher.matches(password, account.password());
+    }
+    
+    /**
+     * ハッシュ化の導入前に保存された平文のパスワードを、ハッシュ化した値に置き換える（LegacyPasswordMigration）。
+     * 読んでから置き換えるまでに変更されていれば（他のインスタンスが先に置き換えたなど）何もせずfalseを返す。
+     */
+    boolean upgradeLegacyPassword(String accountNumber, String legacyPassword, String passwordHash) {
+        return executeLedger(List.of(accountNumber), status -> {
+            Account account = loadAccount(accountNumber);
+            if (!legacyPassword.equals(account.getPassword())) {
+                return false;
+            }
+            account.setPassword(passwordHash);
+            ledgerEventRecorder.recordPasswordUpgraded(account);
+            return true;
+        });
+    }
+    
+    /**
+     * 振込。出金・振込の上限（VelocityLimiter）を超えるならVelocityLimitExceededException。
+     */
+    public Transaction transfer(String fromAccountNumber, String toAccountNumber, Money amount) {
+        return executeLedger(List.of(fromAccountNumber, toAccountNumber), status -> {
+            // 送金元口座
+            Account fromAccount = loadAccount(fromAccountNumber);
+            // 送金先口座
+            Account toAccount = loadAccount(toAccountNumber);
+            
+            List<Transaction> transactions = postTransfer(fromAccount, toAccount, amount);
+            velocityLimiter.acquire(fromAccountNumber, amount);
+            return saveTransactions(transactions);
+        });
+    }
+    
+    /**
+     * 口座の残高分散のバケット数を変更する（0で通常の口座に戻す）。バケットに残っている入金は口座の残高に寄せる。
+     */
+    public BalanceBucketStatus configureBalanceBuckets(String accountNumber, int buckets) {
+        return executeLedger(List.of(accountNumber), status -> {
+            Account account = loadAccount(accountNumber);
+            balanceBuckets.configure(account, buckets);
+            // バケットを寄せて本体の残高が変わるため、キャッシュ・読み取りモデルにも新しいスナップショットを渡す
+            ledgerEventRecorder.recordBucketsConfigured(account);
+            accountRepository.flush();
+            return balanceBuckets.status(account);
+        });
+    }
+    
+    public BalanceBucketStatus getBalanceBucketStatus(String accountNumber) {
+        return balanceBuckets.status(loadAccount(accountNumber));
+    }
+    
+    /**
+     * 残高を更新するトランザクションを同時実行制御付きで実行する。
+     * 口座ロックを取得してからトランザクションを開始し、コミット後に解放する
+     * （コミット前に解放すると、並行した読み取り→更新で更新が失われる）。
+     * OPTIMISTICモードではさらに、他インスタンスとのバージョン競合時にトランザクションごと再実行する。
+     * 再試行の待機中はロックを保持しない。
+     * ジャーナルのスナップショット取得中は、LedgerWriteGateで開始を待たされる。
+     * 残高を分散する口座は、バケットへの入金と並行しないよう全バケットのロックも取る。
+     */
+    <T> T executeLedger(Collection<String> accountNumbers, TransactionCallback<T> callback) {
+        return executeWithLocks(balanceBuckets.lockKeys(accountNumbers), callback);
+    }
+    
+    private <T> T executeWithLocks(Collection<String> lockKeys, TransactionCallback<T> callback) {
+        if (optimisticRetryExecutor.isEnabled()) {
+            return optimisticRetryExecutor.execute(() -> executeLocked(lockKeys, callback));
+        }
+        return executeLocked(lockKeys, callback);
+    }
+    
+    private <T> T executeLocked(Collection<String> lockKeys, TransactionCallback<T> callback) {
+        return ledgerWriteGate.shared(
+            () -> accountLockManager.withLocks(lockKeys, () -> transactionTemplate.execute(callback)));
     }
     
-    @Transactional
-    public Transaction deposit(String accountNumber, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    // ---- 以下は管理下のエンティティに対する残高更新。保存は呼び出し側のトランザクションで行う ----
+    
+    Transaction postDeposit(Account account, Money amount) {
+        if (amount == null || !amount.isPositive()) {
             throw new RuntimeException("入金額は0円より大きくなければなりません");
         }
         
-        Account account = getAccount(accountNumber);
-        BigDecimal newBalance = account.getBalance().add(amount);
+        Money newBalance = account.getBalance().plus(amount);
         account.setBalance(newBalance);
-        accountRepository.save(account);
-        
-        Transaction transaction = new Transaction();
-        transaction.setAccount(account);
-        transaction.setType(Transaction.TransactionType.DEPOSIT);
-        transaction.setAmount(amount);
-        transaction.setBalanceAfter(newBalance);
         
-        return transactionRepository.save(transaction);
+        return newTransaction(account, Transaction.TransactionType.DEPOSIT, amount, newBalance, null);
     }
     
-    @Transactional
-    public Transaction withdraw(String accountNumber, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    Transaction postWithdraw(Account account, Money amount) {
+        if (amount == null || !amount.isPositive()) {
             throw new RuntimeException("出金額は0円より大きくなければなりません");
         }
-        
-        Account account = getAccount(accountNumber);
-        
-        if (account.getBalance().compareTo(amount) < 0) {
+        // 残高を分散する口座は、バケットの入金を寄せてから残高を確認する
+        balanceBuckets.settle(account);
+        if (account.getBalance().isLessThan(amount)) {
+            ledgerMetrics.insufficientFunds();
             throw new RuntimeException("残高不足です");
         }
         
-        BigDecimal newBalance = account.getBalance().subtract(amount);
+        Money newBalance = account.getBalance().minus(amount);
         account.setBalance(newBalance);
-        accountRepository.save(account);
-        
-        Transaction transaction = new Transaction();
-        transaction.setAccount(account);
-        transaction.setType(Transaction.TransactionType.WITHDRAW);
-        transaction.setAmount(amount);
-        transaction.setBalanceAfter(newBalance);
         
-        return transactionRepository.save(transaction);
-    }
-    
-    public List<Transaction> getTransactionHistory(String accountNumber) {
-        Account account = getAccount(accountNumber);
-        return transactionRepository.findByAccountIdOrderByCreatedAtDesc(account.getId());
-    }
-    
-    public boolean authenticate(String accountNumber, String password) {
-        Account account = getAccount(accountNumber);
-        return account.getPassword().equals(password);
+        return newTransaction(account, Transaction.TransactionType.WITHDRAW, amount, newBalance, null);
     }
     
-    @Transactional
-    public Transaction transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    /**
+     * 振込。戻り値は [送金元の取引, 送金先の取引] の順。
+     */
+    List<Transaction> postTransfer(Account fromAccount, Account toAccount, Money amount) {
+        if (amount == null || !amount.isPositive()) {
             throw new RuntimeException("振込金額は0円より大きくなければなりません");
         }
-        
-        // 送金元口座
-        Account fromAccount = getAccount(fromAccountNumber);
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
+        balanceBuckets.settle(fromAccount);
+        if (fromAccount.getBalance().isLessThan(amount)) {
+            ledgerMetrics.insufficientFunds();
             throw new RuntimeException("残高不足です");
         }
         
-        // 送金先口座
-        Account toAccount = getAccount(toAccountNumber);
-        
         // 送金元から引き落とし
-        BigDecimal fromNewBalance = fromAccount.getBalance().subtract(amount);
+        Money fromNewBalance = fromAccount.getBalance().minus(amount);
         fromAccount.setBalance(fromNewBalance);
-        accountRepository.save(fromAccount);
         
         // 送金先に入金
-        BigDecimal toNewBalance = toAccount.getBalance().add(amount);
+        Money toNewBalance = toAccount.getBalance().plus(amount);
         toAccount.setBalance(toNewBalance);
-        accountRepository.save(toAccount);
         
-        // 送金元の取引記録
-        Transaction fromTransaction = new Transaction();
-        fromTransaction.setAccount(fromAccount);
-        fromTransaction.setType(Transaction.TransactionType.TRANSFER_OUT);
-        fromTransaction.setAmount(amount);
-        fromTransaction.setBalanceAfter(fromNewBalance);
-        fromTransaction.setDescription("振込先: " + toAccount.getOwnerName());
-        transactionRepository.save(fromTransaction);
+        Transaction outgoing = newTransaction(fromAccount, Transaction.TransactionType.TRANSFER_OUT, amount,
+            fromNewBalance, transferOutDescription(toAccount.getOwnerName()));
+        Transaction incoming = newTransaction(toAccount, Transaction.TransactionType.TRANSFER_IN, amount,
+            toNewBalance, transferInDescription(fromAccount.getOwnerName()));
+        // ジャーナルには1件のTRANSFERとして時刻を1つだけ記録するので、再生と同じく送金元と送金先を同じ時刻にする
+        incoming.setCreatedAt(outgoing.getCreatedAt());
+        return List.of(outgoing, incoming);
+    }
+    
+    /**
+     * 残高バケットへの入金。バケット数が変更されてバケットがなければnull（何も更新しない）。
+     * 取引の残高は加算した時点の本体と全バケットの合計。
+     */
+    Transaction postBucketCredit(Account account, int bucket, Money amount) {
+        if (!balanceBuckets.credit(account, bucket, amount)) {
+            return null;
+        }
+        return bucketCredit(account, bucket, amount, balanceBuckets.balance(account.getId()));
+    }
+    
+    /**
+     * ジャーナルの再生用の残高バケットへの入金。並行した入金の順序は再生で再現できないので、取引の残高は記録した値を使う。
+     */
+    Transaction postBucketCredit(Account account, int bucket, Money amount, Money balanceAfter) {
+        if (!balanceBuckets.creditLoaded(account, bucket, amount)) {
+            return null;
+        }
+        return bucketCredit(account, bucket, amount, balanceAfter);
+    }
+    
+    private Transaction bucketCredit(Account account, int bucket, Money amount, Money balanceAfter) {
+        Transaction transaction = transaction(account, Transaction.TransactionType.DEPOSIT, amount, balanceAfter, null);
+        ledgerEventRecorder.recordBucketCredit(transaction, bucket);
+        return transaction;
+    }
+    
+    /**
+     * 利息の入金。対象月を口座に記録し、同じ月の利息を二重に付けないようにする（InterestAccrualServiceの再実行用）。
+     * 残高を分散する口座は、バケットの入金を寄せてから入金する（取引後残高が全額を含むように）。
+     */
+    Transaction postInterest(Account account, Money interest, YearMonth period) {
+        if (interest == null || !interest.isPositive()) {
+            throw new RuntimeException("利息は0円より大きくなければなりません");
+        }
+        balanceBuckets.settle(account);
+        account.setInterestAccruedMonth(period.toString());
         
-        // 送金先の取引記録
-        Transaction toTransaction = new Transaction();
-        toTransaction.setAccount(toAccount);
-        toTransaction.setType(Transaction.TransactionType.TRANSFER_IN);
-        toTransaction.setAmount(amount);
-        toTransaction.setBalanceAfter(toNewBalance);
-        toTransaction.setDescription("振込元: " + fromAccount.getOwnerName());
-        transactionRepository.save(toTransaction);
+        Money newBalance = account.getBalance().plus(interest);
+        account.setBalance(newBalance);
         
-        return fromTransaction;
+        return newTransaction(account, Transaction.TransactionType.INTEREST, interest, newBalance, null);
+    }
+    
+    // 振込の説明文（パイプラインモードでは書き出し時にLedgerOutboxが同じ形で作る）
+    static String transferOutDescription(String toOwnerName) {
+        return "振込先: " + toOwnerName;
+    }
+    
+    static String transferInDescription(String fromOwnerName) {
+        return "振込元: " + fromOwnerName;
+    }
+    
+    /**
+     * 取引を保存し、先頭（振込なら送金元の取引）を返す。
+     * パイプラインモードでは取引表には書かず、控えを1行書く（取引表への書き出しはLedgerOutboxが後でまとめて行う）。
+     */
+    private Transaction saveTransactions(List<Transaction> transactions) {
+        if (ledgerOutbox.isEnabled()) {
+            ledgerOutbox.append(transactions);
+        } else {
+            transactionRepository.saveAll(transactions);
+        }
+        return transactions.get(0);
+    }
+    
+    private Account loadAccount(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber)
+            .orElseThrow(() -> new RuntimeException("口座が見つかりません"));
+    }
+    
+    private Transaction newTransaction(Account account, Transaction.TransactionType type,
+                                       Money amount, Money balanceAfter, String description) {
+        Transaction transaction = transaction(account, type, amount, balanceAfter, description);
+        ledgerEventRecorder.record(transaction);
+        return transaction;
+    }
+    
+    private static Transaction transaction(Account account, Transaction.TransactionType type,
+                                           Money amount, Money balanceAfter, String description) {
+        Transaction transaction = new Transaction();
+        transaction.setAccount(account);
+        transaction.setType(type);
+        transaction.setAmount(amount);
+        transaction.setBalanceAfter(balanceAfter);
+        transaction.setDescription(description);
+        return transaction;
     }
-}
\ No newline at end of file
+}
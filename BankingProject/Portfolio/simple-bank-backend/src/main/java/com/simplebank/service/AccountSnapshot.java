@@ -0,0 +1,44 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Account;
+import com.simplebank.money.Money;
+
+/**
+ * 口座の不変スナップショット。キャッシュやコミット通知で共有するため、エンティティは渡さない。
+ */
+public record AccountSnapshot(Long id, String accountNumber, String ownerName, String password,
+                              Money balance, Long version) {
+
+    public static AccountSnapshot of(Account account) {
+        return new AccountSnapshot(
+            account.getId(),
+            account.getAccountNumber(),
+            account.getOwnerName(),
+            account.getPassword(),
+            account.getBalance(),
+            account.getVersion()
+        );
+    }
+
+    AccountSnapshot withBalance(Money balance) {
+        return new AccountSnapshot(id, accountNumber, ownerName, password, balance, version);
+    }
+
+    /**
+     * 台帳バージョン（口座情報・取引履歴のETag用）。残高が変わる取引のたびに変わる。
+     * 行のバージョンは口座の行を更新するたびに増える。残高を分散する口座への入金は行を更新しないが、残高は必ず増える。
+     */
+    public String ledgerVersion() {
+        return version + "-" + balance.minorUnits();
+    }
+
+    /**
+     * otherより新しい（または同じ）状態ならtrue。
+     */
+    boolean isNewerThan(AccountSnapshot other) {
+        if (version == null || other.version == null) {
+            return true;
+        }
+        return version >= other.version;
+    }
+}
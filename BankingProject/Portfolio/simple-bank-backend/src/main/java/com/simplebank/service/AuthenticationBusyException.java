@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+/**
+ * パスワード照合の待ち行列が一杯、または待ち時間が上限を超えた。呼び出し側は503で返し、再試行を促す。
+ */
+public class AuthenticationBusyException extends RuntimeException {
+    
+    public AuthenticationBusyException() {
+        super("認証処理が混み合っています。しばらくしてから再度お試しください");
+    }
+}
@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+
+/**
+ * 口座の残高分散の状態。bucketsが0なら通常の口座。
+ * balanceは口座の残高（settledBalance + unsettledBalance）、unsettledBalanceはまだ本体に寄せていない入金額。
+ */
+public record BalanceBucketStatus(String accountNumber, int buckets, Money balance, Money settledBalance,
+                                  Money unsettledBalance) {
+}
@@ -0,0 +1,251 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Account;
+import com.simplebank.entity.BalanceBucket;
+import com.simplebank.money.Money;
+import com.simplebank.repository.AccountRepository;
+import com.simplebank.repository.BalanceBucketRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 入金が集中する口座（加盟店など）の残高分散。
+ * <p>
+ * 分散する口座への入金は、口座の行ではなくN個のバケット行（BalanceBucket）のどれかに加算する。
+ * バケットは呼び出したスレッドのハッシュで選び、ロックもその1バケット分（"口座番号#バケット番号"）だけを取るので、
+ * 同じ口座への入金がバケット数まで並行して進む。口座の残高は本体 + 全バケットの合計で、
+ * 出金・振込（送金元）では合計を本体に寄せてから残高不足を確認するため、確認は入金済みの全額に対して行われる。
+ * <p>
+ * 口座番号のロックを取る処理（出金・振込・一括処理・口座開設）は、分散する口座なら全バケットのロックも取る
+ * （AccountService.executeLedger）。寄せている間に入金が入り込まず、ジャーナルにもコミット順に記録される。
+ * <p>
+ * 分散する口座の一覧はプロセス内に持つため、複数インスタンス構成（cluster）では使わない。
+ */
+@Component
+@RequiredArgsConstructor
+public class BalanceBuckets implements SmartLifecycle, MeterBinder {
+    
+    static final int MAX_BUCKETS = 64;
+    
+    private final AccountRepository accountRepository;
+    private final BalanceBucketRepository balanceBucketRepository;
+    private final DailyBalanceAggregator dailyBalanceAggregator;
+    
+    // 口座番号 → バケット数（分散する口座だけ）
+    private final Map<String, Integer> bucketsByAccount = new ConcurrentHashMap<>();
+    private final LongAdder credits = new LongAdder();
+    private final LongAdder settlements = new LongAdder();
+    private volatile boolean running;
+    
+    int bucketsOf(String accountNumber) {
+        Integer buckets = bucketsByAccount.get(accountNumber);
+        return buckets == null ? 0 : buckets;
+    }
+    
+    /**
+     * 口座番号のロックキーに、分散する口座の全バケットのキーを加える。
+     */
+    Collection<String> lockKeys(Collection<String> accountNumbers) {
+        if (bucketsByAccount.isEmpty()) {
+            return accountNumbers;
+        }
+        List<String> keys = null;
+        for (String accountNumber : accountNumbers) {
+            int buckets = bucketsOf(accountNumber);
+            if (buckets == 0) {
+                continue;
+            }
+            if (keys == null) {
+                keys = new ArrayList<>(accountNumbers);
+            }
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                keys.add(lockKey(accountNumber, bucket));
+            }
+        }
+        return keys == null ? accountNumbers : keys;
+    }
+    
+    static String lockKey(String accountNumber, int bucket) {
+        return accountNumber + "#" + bucket;
+    }
+    
+    /**
+     * 入金先のバケット。同じスレッドは同じバケットを使い、並行する入金はスレッドごとに散らばる。
+     */
+    static int chooseBucket(int buckets) {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) buckets);
+    }
+    
+    /**
+     * バケットに入金する。バケット数が変更されてバケットがなければfalse（何も更新しない）。
+     */
+    boolean credit(Account account, int bucket, Money amount) {
+        if (balanceBucketRepository.credit(account.getId(), bucket, amount.toBigDecimal()) == 0) {
+            return false;
+        }
+        credits.increment();
+        return true;
+    }
+    
+    /**
+     * ジャーナルの再生用の入金。再生は多数のレコードを1つの永続化コンテキストで適用するため、行を読まずに加算するcreditでは
+     * 読み込み済みのバケット（寄せる処理が使う）と食い違う。バケットの行を読み込んでから加算する。バケットがなければfalse。
+     */
+    boolean creditLoaded(Account account, int bucket, Money amount) {
+        for (BalanceBucket row : balanceBucketRepository.findForUpdate(account.getId())) {
+            if (row.getBucket() == bucket) {
+                row.setBalance(row.getBalance().plus(amount));
+                row.setCredits(row.getCredits() + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 口座の残高（本体 + 全バケット）。
+     */
+    Money balance(Long accountId) {
+        return Money.of(balanceBucketRepository.totalBalance(accountId));
+    }
+    
+    /**
+     * まだ本体に寄せていない全バケットの残高の合計。
+     */
+    Money unsettled(Long accountId) {
+        return Money.of(balanceBucketRepository.sumBalance(accountId));
+    }
+    
+    /**
+     * 全バケットの残高を本体に寄せて0に戻す。口座とバケットのロックを取ったトランザクション内で呼ぶ。
+     * 入金は残高を増やすだけなので、寄せる前後の残高で日次残高集計の最高値・終値は正しく更新される
+     * （個々の入金が集計に入るのは寄せた日になる）。
+     */
+    void settle(Account account) {
+        if (account.getBalanceBuckets() == 0) {
+            return;
+        }
+        settle(account, balanceBucketRepository.findForUpdate(account.getId()));
+    }
+    
+    private void settle(Account account, List<BalanceBucket> rows) {
+        Money unsettled = Money.ZERO;
+        long creditCount = 0;
+        for (BalanceBucket row : rows) {
+            unsettled = unsettled.plus(row.getBalance());
+            creditCount += row.getCredits();
+            row.setBalance(Money.ZERO);
+            row.setCredits(0);
+        }
+        if (creditCount == 0 && !unsettled.isPositive()) {
+            return;
+        }
+        Money before = account.getBalance();
+        Money after = before.plus(unsettled);
+        account.setBalance(after);
+        dailyBalanceAggregator.applySettlement(account, before, after, creditCount);
+        settlements.increment();
+    }
+    
+    /**
+     * バケット数を変更する（0で分散をやめる）。残高を本体に寄せてから、増えた分のバケットを作り、減った分を消す。
+     * 口座とバケットのロックを取ったトランザクション内で呼ぶ。一覧への反映はコミット後（ロックの解放前）に行う。
+     */
+    void configure(Account account, int buckets) {
+        if (buckets < 0 || buckets > MAX_BUCKETS) {
+            throw new RuntimeException("バケット数は0以上" + MAX_BUCKETS + "以下で指定してください");
+        }
+        List<BalanceBucket> rows = balanceBucketRepository.findForUpdate(account.getId());
+        settle(account, rows);
+        
+        List<BalanceBucket> removed = new ArrayList<>();
+        boolean[] exists = new boolean[buckets];
+        for (BalanceBucket row : rows) {
+            if (row.getBucket() < buckets) {
+                exists[row.getBucket()] = true;
+            } else {
+                removed.add(row);
+            }
+        }
+        List<BalanceBucket> created = new ArrayList<>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (!exists[bucket]) {
+                created.add(new BalanceBucket(null, account, bucket, Money.ZERO, 0));
+            }
+        }
+        balanceBucketRepository.deleteAll(removed);
+        balanceBucketRepository.saveAll(created);
+        account.setBalanceBuckets(buckets);
+        
+        String accountNumber = account.getAccountNumber();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (buckets == 0) {
+                    bucketsByAccount.remove(accountNumber);
+                } else {
+                    bucketsByAccount.put(accountNumber, buckets);
+                }
+            }
+        });
+    }
+    
+    BalanceBucketStatus status(Account account) {
+        Money balance = balance(account.getId());
+        return new BalanceBucketStatus(account.getAccountNumber(), account.getBalanceBuckets(), balance,
+            account.getBalance(), balance.minus(account.getBalance()));
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ledger.buckets.accounts", bucketsByAccount, Map::size)
+            .description("残高を分散している口座数").register(registry);
+        FunctionCounter.builder("ledger.buckets.credits", credits, LongAdder::sum)
+            .description("残高バケットへの入金数").register(registry);
+        FunctionCounter.builder("ledger.buckets.settlements", settlements, LongAdder::sum)
+            .description("残高バケットを口座の残高に寄せた回数").register(registry);
+    }
+    
+    // ---- 起動と停止 ----
+    
+    /**
+     * ジャーナルの再生（フェーズ0）で復元した口座から一覧を作る。再生中の出金は口座の列を見て寄せるので一覧は使わない。
+     */
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+    
+    @Override
+    public void start() {
+        bucketsByAccount.clear();
+        for (Object[] row : accountRepository.findBucketedAccounts()) {
+            bucketsByAccount.put((String) row[0], (Integer) row[1]);
+        }
+        running = true;
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
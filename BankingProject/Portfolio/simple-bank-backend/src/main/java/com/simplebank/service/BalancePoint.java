@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+import java.time.LocalDateTime;
+
+/**
+ * 残高推移の1区間。startは区間の開始時刻、min/maxは区間中（開始時点を含む）の最小・最大残高、closeは区間末の残高。
+ * 取引のない区間は直前の残高がそのまま続く。
+ */
+public record BalancePoint(LocalDateTime start, Money min, Money max, Money close) {
+}
@@ -0,0 +1,20 @@
+package com.simplebank.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 残高推移の集計単位。
+ */
+public enum BalanceResolution {
+    HOUR,
+    DAY,
+    MONTH;
+    
+    LocalDateTime next(LocalDateTime start) {
+        return switch (this) {
+            case HOUR -> start.plusHours(1);
+            case DAY -> start.plusDays(1);
+            case MONTH -> start.plusMonths(1);
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 期間[from, to]の残高推移（区間の古い順）。
+ */
+public record BalanceSeries(String accountNumber, BalanceResolution resolution, LocalDate from, LocalDate to,
+                            List<BalancePoint> points) {
+}
@@ -0,0 +1,142 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.DailyBalance;
+import com.simplebank.money.Money;
+import com.simplebank.repository.AccountRepository;
+import com.simplebank.repository.DailyBalanceRepository;
+import com.simplebank.repository.TransactionRepository;
+import com.simplebank.repository.TransactionView;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import java.time.LocalDate;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 残高推移グラフ用の時系列を返す。
+ * 日・月単位は日次残高集計（DailyBalance）から作るので、読み込みは期間の日数分だけで取引件数に依存しない。
+ * 時間単位は期間内の取引をDBで1時間ごとに集計して読むので、読み込みは取引のあった時間の数だけになる。
+ * 残高を分散する口座の、まだ本体に寄せていないバケットの入金は今日の区間に加える（寄せたときと同じ集計になる）。
+ * 読み取りなので、バケットを寄せる（ロックを取って書き込む）ことはしない。
+ */
+@Service
+@RequiredArgsConstructor
+@Observed(name = "ledger.service")
+public class BalanceSeriesService {
+    
+    static final int DEFAULT_DAYS = 30;
+    static final int MAX_BUCKETS = 1000;
+    
+    private final AccountRepository accountRepository;
+    private final DailyBalanceRepository dailyBalanceRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerOutbox ledgerOutbox;
+    private final BalanceBuckets balanceBuckets;
+    
+    /**
+     * fromからtoまで（両端の日を含む）の残高推移。省略時は直近30日を日単位で返す。
+     */
+    public BalanceSeries getSeries(String accountNumber, LocalDate from, LocalDate to, BalanceResolution resolution) {
+        Long accountId = accountRepository.findIdByAccountNumber(accountNumber)
+            .orElseThrow(() -> new RuntimeException("口座が見つかりません"));
+        BalanceResolution unit = resolution == null ? BalanceResolution.DAY : resolution;
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_DAYS - 1) : from;
+        if (unit == BalanceResolution.MONTH) {
+            start = start.withDayOfMonth(1);
+        }
+        if (start.isAfter(end)) {
+            throw new RuntimeException("開始日は終了日以前を指定してください");
+        }
+        long buckets = switch (unit) {
+            case HOUR -> ChronoUnit.HOURS.between(start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+            case DAY -> ChronoUnit.DAYS.between(start, end) + 1;
+            case MONTH -> ChronoUnit.MONTHS.between(start, end.withDayOfMonth(1)) + 1;
+        };
+        if (buckets > MAX_BUCKETS) {
+            throw new RuntimeException("期間が長すぎます（最大" + MAX_BUCKETS + "区間）");
+        }
+        
+        List<BalancePoint> points = unit == BalanceResolution.HOUR
+            ? hourly(accountId, start, end)
+            : fromDailyBalances(accountId, start, end, unit, unsettled(accountNumber, accountId));
+        return new BalanceSeries(accountNumber, unit, start, end, points);
+    }
+    
+    /**
+     * 残高を分散する口座の、日次残高集計にまだ入っていないバケットの入金（寄せるときに今日の集計に入る分）。
+     */
+    private Money unsettled(String accountNumber, Long accountId) {
+        return balanceBuckets.bucketsOf(accountNumber) == 0 ? Money.ZERO : balanceBuckets.unsettled(accountId);
+    }
+    
+    private List<BalancePoint> fromDailyBalances(Long accountId, LocalDate start, LocalDate end, BalanceResolution unit,
+                                                 Money unsettled) {
+        Money close = dailyBalanceRepository
+            .findFirstByAccountIdAndBalanceDateLessThanOrderByBalanceDateDesc(accountId, start)
+            .map(DailyBalance::getCloseBalance)
+            .orElse(Money.ZERO);
+        List<DailyBalance> days = dailyBalanceRepository.findRange(accountId, start, end);
+        
+        List<BalancePoint> points = new ArrayList<>();
+        int index = 0;
+        LocalDate today = LocalDate.now();
+        LocalDateTime limit = end.plusDays(1).atStartOfDay();
+        for (LocalDateTime bucket = start.atStartOfDay(); bucket.isBefore(limit); bucket = unit.next(bucket)) {
+            LocalDate bucketEnd = unit.next(bucket).toLocalDate();
+            Money min = close;
+            Money max = close;
+            while (index < days.size() && days.get(index).getBalanceDate().isBefore(bucketEnd)) {
+                DailyBalance day = days.get(index++);
+                min = min.min(day.getMinBalance());
+                max = max.max(day.getMaxBalance());
+                close = day.getCloseBalance();
+            }
+            if (unsettled.isPositive() && bucketEnd.isAfter(today) && !bucket.toLocalDate().isAfter(today)) {
+                close = close.plus(unsettled);
+                max = max.max(close);
+            }
+            points.add(new BalancePoint(bucket, min, max, close));
+        }
+        return points;
+    }
+    
+    private List<BalancePoint> hourly(Long accountId, LocalDate start, LocalDate end) {
+        LocalDateTime from = start.atStartOfDay();
+        LocalDateTime to = end.plusDays(1).atStartOfDay();
+        // 日次残高集計は残高と同じトランザクションで更新されるが、取引表はパイプラインモードだと書き出しを待つ必要がある
+        ledgerOutbox.awaitWritten(accountId);
+        // 期間開始より前の最後の取引の残高（IDは正なので0を渡すとcreatedAt < fromだけが条件になる）
+        Money close = transactionRepository.findHistoryPageBefore(accountId, from, 0L, PageRequest.of(0, 1))
+            .stream()
+            .findFirst()
+            .map(TransactionView::getBalanceAfter)
+            .orElse(Money.ZERO);
+        List<Object[]> hours = transactionRepository.aggregateHourly(accountId, from, to);
+        
+        List<BalancePoint> points = new ArrayList<>();
+        int index = 0;
+        for (LocalDateTime bucket = from; bucket.isBefore(to); bucket = bucket.plusHours(1)) {
+            Money min = close;
+            Money max = close;
+            if (index < hours.size() && hourOf(hours.get(index)).equals(bucket)) {
+                Object[] hour = hours.get(index++);
+                min = min.min(Money.of((BigDecimal) hour[1]));
+                max = max.max(Money.of((BigDecimal) hour[2]));
+                close = Money.of((BigDecimal) hour[3]);
+            }
+            points.add(new BalancePoint(bucket, min, max, close));
+        }
+        return points;
+    }
+    
+    private static LocalDateTime hourOf(Object[] row) {
+        return row[0] instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) row[0];
+    }
+}
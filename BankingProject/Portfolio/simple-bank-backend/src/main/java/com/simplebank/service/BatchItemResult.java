@@ -0,0 +1,17 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+
+/**
+ * 一括処理の各操作の結果。indexはリクエスト内の位置。
+ */
+public record BatchItemResult(int index, boolean success, Long transactionId, Money balanceAfter, String error) {
+
+    static BatchItemResult succeeded(int index, Long transactionId, Money balanceAfter) {
+        return new BatchItemResult(index, true, transactionId, balanceAfter, null);
+    }
+
+    static BatchItemResult failed(int index, String error) {
+        return new BatchItemResult(index, false, null, null, error);
+    }
+}
@@ -0,0 +1,137 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Account;
+import com.simplebank.entity.Transaction;
+import com.simplebank.repository.AccountRepository;
+import com.simplebank.repository.TransactionRepository;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 入金・出金・振込の一括処理。
+ * chunk-size件ごとにチャンク内の全口座をロックして1トランザクションでまとめ、
+ * 口座は1クエリで読み込み、取引行はJDBCバッチでINSERTする。残高不足などの業務エラーはその操作だけを失敗にする。
+ * 出金・振込は上限（VelocityLimiter）に数えるが、上限では拒否しない。
+ */
+@Service
+@RequiredArgsConstructor
+@Observed(name = "ledger.service")
+public class BatchLedgerService {
+    
+    private final AccountService accountService;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final VelocityLimiter velocityLimiter;
+    
+    @Value("${simplebank.batch.chunk-size:500}")
+    private int chunkSize;
+    
+    public BatchResult apply(List<BatchOperation> operations) {
+        long start = System.nanoTime();
+        BatchItemResult[] results = new BatchItemResult[operations.size()];
+        int rows = 0;
+        
+        for (int from = 0; from < operations.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, operations.size());
+            rows += applyChunk(operations, from, to, results);
+        }
+        
+        long elapsedNanos = System.nanoTime() - start;
+        int succeeded = (int) Arrays.stream(results).filter(BatchItemResult::success).count();
+        double rowsPerSecond = elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        return new BatchResult(operations.size(), succeeded, operations.size() - succeeded,
+            elapsedNanos / 1_000_000, rowsPerSecond, Arrays.asList(results));
+    }
+    
+    /**
+     * 1チャンク分を1トランザクションで処理し、登録した取引行数を返す。
+     * コミット自体が失敗した場合はチャンク内の全操作を失敗扱いにする。
+     */
+    private int applyChunk(List<BatchOperation> operations, int from, int to, BatchItemResult[] results) {
+        try {
+            Set<String> accountNumbers = accountNumbers(operations.subList(from, to));
+            Integer inserted = accountService.executeLedger(accountNumbers, status -> {
+                Map<String, Account> accounts = accountRepository.findByAccountNumberIn(accountNumbers).stream()
+                    .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+                List<Transaction> rows = new ArrayList<>();
+                Transaction[] primary = new Transaction[to - from];
+                String[] errors = new String[to - from];
+                
+                for (int i = from; i < to; i++) {
+                    try {
+                        List<Transaction> posted = post(operations.get(i), accounts);
+                        rows.addAll(posted);
+                        primary[i - from] = posted.get(0);
+                    } catch (RuntimeException e) {
+                        errors[i - from] = e.getMessage();
+                    }
+                }
+                
+                transactionRepository.saveAll(rows);
+                transactionRepository.flush();
+                
+                for (int i = from; i < to; i++) {
+                    Transaction transaction = primary[i - from];
+                    results[i] = transaction != null
+                        ? BatchItemResult.succeeded(i, transaction.getId(), transaction.getBalanceAfter())
+                        : BatchItemResult.failed(i, errors[i - from]);
+                }
+                return rows.size();
+            });
+            return inserted == null ? 0 : inserted;
+        } catch (RuntimeException e) {
+            for (int i = from; i < to; i++) {
+                results[i] = BatchItemResult.failed(i, "チャンクの登録に失敗しました: " + e.getMessage());
+            }
+            return 0;
+        }
+    }
+    
+    private Set<String> accountNumbers(List<BatchOperation> chunk) {
+        Set<String> accountNumbers = new HashSet<>();
+        for (BatchOperation operation : chunk) {
+            if (operation.accountNumber() != null) {
+                accountNumbers.add(operation.accountNumber());
+            }
+            if (operation.toAccountNumber() != null) {
+                accountNumbers.add(operation.toAccountNumber());
+            }
+        }
+        return accountNumbers;
+    }
+    
+    private List<Transaction> post(BatchOperation operation, Map<String, Account> accounts) {
+        if (operation.type() == null) {
+            throw new RuntimeException("取引種別が指定されていません");
+        }
+        Account account = require(accounts, operation.accountNumber());
+        List<Transaction> posted = switch (operation.type()) {
+            case DEPOSIT -> List.of(accountService.postDeposit(account, operation.amount()));
+            case WITHDRAW -> List.of(accountService.postWithdraw(account, operation.amount()));
+            case TRANSFER -> accountService.postTransfer(account,
+                require(accounts, operation.toAccountNumber()), operation.amount());
+        };
+        if (operation.type() != BatchOperation.Type.DEPOSIT) {
+            velocityLimiter.record(account.getAccountNumber(), operation.amount());
+        }
+        return posted;
+    }
+    
+    private Account require(Map<String, Account> accounts, String accountNumber) {
+        Account account = accountNumber == null ? null : accounts.get(accountNumber);
+        if (account == null) {
+            throw new RuntimeException("口座が見つかりません");
+        }
+        return account;
+    }
+}
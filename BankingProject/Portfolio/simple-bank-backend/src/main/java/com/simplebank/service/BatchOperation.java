@@ -0,0 +1,15 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+
+/**
+ * 一括処理APIの1操作。TRANSFERのときだけtoAccountNumberを使う。
+ */
+public record BatchOperation(Type type, String accountNumber, String toAccountNumber, Money amount) {
+
+    public enum Type {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER
+    }
+}
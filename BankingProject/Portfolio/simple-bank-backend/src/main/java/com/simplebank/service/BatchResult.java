@@ -0,0 +1,10 @@
+package com.simplebank.service;
+
+import java.util.List;
+
+/**
+ * 一括処理全体の結果。rowsPerSecondは登録した取引行数ベースのスループット。
+ */
+public record BatchResult(int total, int succeeded, int failed, long elapsedMillis, double rowsPerSecond,
+                          List<BatchItemResult> results) {
+}
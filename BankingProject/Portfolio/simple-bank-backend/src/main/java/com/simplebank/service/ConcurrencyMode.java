@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+/**
+ * 残高更新の同時実行制御方式。
+ * LOCK: プロセス内のストライプロックで直列化する（単一インスタンス向け）。
+ * OPTIMISTIC: ロックに加えて、Accountのバージョン列で他インスタンスとの競合を検出し再試行する（複数インスタンス向け）。
+ */
+public enum ConcurrencyMode {
+    LOCK,
+    OPTIMISTIC
+}
@@ -0,0 +1,88 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Account;
+import com.simplebank.entity.DailyBalance;
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.repository.DailyBalanceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 取引を口座×日付の残高集計（DailyBalance）に反映する。
+ * LedgerEventRecorderがコミット直前に、そのトランザクションで登録した取引を登録順に渡す。
+ * 同じ口座の更新は口座ロック（またはバージョン列）で直列化されるので、集計行の更新が競合することはない。
+ */
+@Component
+@RequiredArgsConstructor
+class DailyBalanceAggregator {
+    
+    private final DailyBalanceRepository dailyBalanceRepository;
+    
+    void apply(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Set<Long> accountIds = transactions.stream().map(t -> t.getAccount().getId()).collect(Collectors.toSet());
+        Set<LocalDate> dates = transactions.stream().map(t -> t.getCreatedAt().toLocalDate()).collect(Collectors.toSet());
+        
+        Map<Key, DailyBalance> rows = new HashMap<>();
+        for (DailyBalance row : dailyBalanceRepository.findByAccountIdsAndDates(accountIds, dates)) {
+            rows.put(new Key(row.getAccount().getId(), row.getBalanceDate()), row);
+        }
+        
+        List<DailyBalance> created = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            Key key = new Key(transaction.getAccount().getId(), transaction.getCreatedAt().toLocalDate());
+            Money balance = transaction.getBalanceAfter();
+            DailyBalance row = rows.get(key);
+            if (row == null) {
+                Money open = balanceBefore(transaction);
+                row = new DailyBalance(null, transaction.getAccount(), key.date(), open,
+                    open.min(balance), open.max(balance), balance, 0);
+                rows.put(key, row);
+                created.add(row);
+            }
+            row.setMinBalance(row.getMinBalance().min(balance));
+            row.setMaxBalance(row.getMaxBalance().max(balance));
+            row.setCloseBalance(balance);
+            row.setTransactionCount(row.getTransactionCount() + 1);
+        }
+        // 既存の行は管理下のエンティティなのでフラッシュ時に更新される
+        dailyBalanceRepository.saveAll(created);
+    }
+    
+    /**
+     * 残高バケットを本体に寄せた分（creditCount件の入金で残高がbeforeからafterに増えた）を今日の集計に反映する。
+     */
+    void applySettlement(Account account, Money before, Money after, long creditCount) {
+        LocalDate today = LocalDate.now();
+        List<DailyBalance> rows = dailyBalanceRepository.findByAccountIdsAndDates(Set.of(account.getId()), Set.of(today));
+        if (rows.isEmpty()) {
+            dailyBalanceRepository.save(new DailyBalance(null, account, today, before, before, after, after, creditCount));
+            return;
+        }
+        DailyBalance row = rows.get(0);
+        row.setMinBalance(row.getMinBalance().min(before));
+        row.setMaxBalance(row.getMaxBalance().max(after));
+        row.setCloseBalance(after);
+        row.setTransactionCount(row.getTransactionCount() + creditCount);
+    }
+    
+    private static Money balanceBefore(Transaction transaction) {
+        return switch (transaction.getType()) {
+            case DEPOSIT, TRANSFER_IN, INTEREST -> transaction.getBalanceAfter().minus(transaction.getAmount());
+            case WITHDRAW, TRANSFER_OUT -> transaction.getBalanceAfter().plus(transaction.getAmount());
+        };
+    }
+    
+    private record Key(Long accountId, LocalDate date) {
+    }
+}
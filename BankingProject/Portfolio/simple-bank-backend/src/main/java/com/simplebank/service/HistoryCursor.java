@@ -0,0 +1,31 @@
+package com.simplebank.service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * 取引履歴のキーセットページング用カーソル。
+ * 文字列表現は "作成日時_取引ID"（例: 2025-08-12T10:15:30.123_42）。
+ */
+public record HistoryCursor(LocalDateTime createdAt, Long id) {
+
+    public static HistoryCursor parse(String value) {
+        int separator = value.lastIndexOf('_');
+        if (separator <= 0 || separator == value.length() - 1) {
+            throw new RuntimeException("カーソルの形式が不正です");
+        }
+        try {
+            return new HistoryCursor(
+                LocalDateTime.parse(value.substring(0, separator)),
+                Long.parseLong(value.substring(separator + 1))
+            );
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new RuntimeException("カーソルの形式が不正です");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createdAt + "_" + id;
+    }
+}
@@ -0,0 +1,10 @@
+package com.simplebank.service;
+
+import com.simplebank.repository.TransactionView;
+import java.util.List;
+
+/**
+ * 取引履歴の1ページ分。nextCursorがnullなら最後のページ。
+ */
+public record HistoryPage(List<TransactionView> items, String nextCursor) {
+}
@@ -0,0 +1,15 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * 月末の利息計算の進捗・結果。runningの間は途中経過。
+ * accountsはこの実行で処理した口座数（利息が0円の口座を含む）、creditedはそのうち利息を付けた口座数。
+ * failedChunksはロックの取得待ちなどで失敗したチャンク数で、同じ月で再実行すれば失敗したチャンクの口座だけを処理する。
+ */
+public record InterestAccrualResult(YearMonth month, BigDecimal annualRate, boolean running, long chunks,
+                                    long completedChunks, long failedChunks, long accounts, long credited,
+                                    Money totalInterest, long elapsedMillis, double accountsPerSecond) {
+}
@@ -0,0 +1,255 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Account;
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.repository.AccountRepository;
+import com.simplebank.repository.TransactionRepository;
+import com.simplebank.repository.TransactionView;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 月末の利息計算。全口座の残高に利息を付け、INTERESTの取引として登録する。
+ * <p>
+ * 口座のID範囲をchunk-size件ずつのチャンクに分け、専用のForkJoinPoolで並列に処理する（AccountChunkExecutor）。
+ * チャンクごとに1トランザクションで、チャンク内の口座ロックを取り、口座の更新と取引のINSERTをJDBCバッチで送る。
+ * 台帳イベントは入金と同じものを使うので、ジャーナル・キャッシュ・読み取りモデル・日次残高集計にもそのまま反映される。
+ * <p>
+ * 利息を付けた月は口座に記録する（Account.interestAccruedMonth）。同じ月で再実行すると、コミット済みのチャンクの口座は
+ * 対象から外れるので、途中で停止した・失敗したチャンクがあった実行は、再実行すれば残りだけを処理する。
+ * 利息は月末の残高×年利×その月の日数/365で、1円未満は切り捨てる。月末の残高は、月が明けてから取引のない口座は
+ * 現在の残高（残高バケットの分を含む）、ある口座は月末までの最後の取引の取引後残高で、実行した時点の残高は使わない。
+ */
+@Slf4j
+@Service
+@Observed(name = "ledger.service")
+public class InterestAccrualService implements MeterBinder {
+    
+    private static final int DAYS_PER_YEAR = 365;
+    private static final BigDecimal MAX_RATE = new BigDecimal("100");
+    // 残高（銭）×年利（1万分の1%単位）×日数 をこれで割ると円になる
+    private static final BigInteger INTEREST_DENOMINATOR =
+        BigInteger.valueOf(Money.ofMajor(1).minorUnits() * 100L * 10_000 * DAYS_PER_YEAR);
+    
+    private final AccountService accountService;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerEventRecorder ledgerEventRecorder;
+    private final BalanceBuckets balanceBuckets;
+    private final LedgerOutbox ledgerOutbox;
+    private final BigDecimal annualRate;
+    private final long rateUnits;
+    private final AccountChunkExecutor chunkExecutor;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    // 実行中、または最後に実行した分
+    private volatile Run lastRun;
+    private final LongAdder accruedAccounts = new LongAdder();
+    private final LongAdder failedChunks = new LongAdder();
+    
+    public InterestAccrualService(AccountService accountService,
+                                  AccountRepository accountRepository,
+                                  TransactionRepository transactionRepository,
+                                  LedgerEventRecorder ledgerEventRecorder,
+                                  BalanceBuckets balanceBuckets,
+                                  LedgerOutbox ledgerOutbox,
+                                  @Value("${simplebank.interest.annual-rate:0.2}") BigDecimal annualRate,
+                                  @Value("${simplebank.interest.chunk-size:200}") int chunkSize,
+                                  @Value("${simplebank.interest.parallelism:0}") int parallelism) {
+        if (annualRate.signum() < 0 || annualRate.compareTo(MAX_RATE) > 0
+                || annualRate.stripTrailingZeros().scale() > LoanAmortization.RATE_SCALE) {
+            throw new IllegalArgumentException("利息の年利は0%以上100%以下、小数点以下"
+                + LoanAmortization.RATE_SCALE + "桁までで指定してください: " + annualRate);
+        }
+        this.accountService = accountService;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.ledgerEventRecorder = ledgerEventRecorder;
+        this.balanceBuckets = balanceBuckets;
+        this.ledgerOutbox = ledgerOutbox;
+        this.annualRate = annualRate;
+        this.rateUnits = annualRate.movePointRight(LoanAmortization.RATE_SCALE).longValueExact();
+        this.chunkExecutor = new AccountChunkExecutor(accountRepository, chunkSize, parallelism);
+    }
+    
+    /**
+     * monthの利息を付ける（省略時は前月）。すべてのチャンクが終わるまで待ち、結果を返す。
+     */
+    public InterestAccrualResult accrue(YearMonth month) {
+        YearMonth target = month == null ? YearMonth.now().minusMonths(1) : month;
+        if (!target.isBefore(YearMonth.now())) {
+            throw new RuntimeException("締まっていない月の利息は計算できません: " + target);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("利息計算は実行中です");
+        }
+        try {
+            Run run = new Run(target, chunkExecutor.plan());
+            lastRun = run;
+            chunkExecutor.execute(run.progress, (fromId, toId) -> accrueChunk(run, fromId, toId));
+            
+            InterestAccrualResult result = run.result();
+            log.info("{}の利息を付けました: 口座数={}, 利息合計={}, 失敗したチャンク={}, {}ms ({}口座/秒)",
+                target, result.accounts(), result.totalInterest(), result.failedChunks(), result.elapsedMillis(),
+                Math.round(result.accountsPerSecond()));
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    /**
+     * 実行中ならその途中経過、そうでなければ最後の実行の結果。一度も実行していなければnull。
+     */
+    public InterestAccrualResult status() {
+        Run run = lastRun;
+        return run == null ? null : run.result();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ledger.interest.accounts", accruedAccounts, LongAdder::sum)
+            .description("月末の利息計算で処理した口座数").register(registry);
+        FunctionCounter.builder("ledger.interest.chunks.failed", failedChunks, LongAdder::sum)
+            .description("月末の利息計算で失敗したチャンク数（再実行で処理する）").register(registry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        chunkExecutor.shutdown();
+    }
+    
+    /**
+     * 残高×年利×日数/365（1円未満は切り捨て）。
+     */
+    static Money interest(Money balance, long rateUnits, int days) {
+        if (!balance.isPositive() || rateUnits == 0) {
+            return Money.ZERO;
+        }
+        BigInteger yen = BigInteger.valueOf(balance.minorUnits())
+            .multiply(BigInteger.valueOf(rateUnits * days))
+            .divide(INTEREST_DENOMINATOR);
+        return Money.ofMajor(yen.longValueExact());
+    }
+    
+    /**
+     * 1チャンク分（口座ID fromId〜toId）を1トランザクションで処理する。
+     * 失敗したチャンクは数えるだけで、他のチャンクは続ける（再実行で処理される）。
+     */
+    private boolean accrueChunk(Run run, long fromId, long toId) {
+        try {
+            List<String> due = accountRepository.findInterestDueAccountNumbers(fromId, toId, run.openedBefore, run.monthKey);
+            if (!due.isEmpty()) {
+                ChunkResult result = accountService.executeLedger(due, status -> post(run, due));
+                run.accounts.add(result.accounts());
+                run.credited.add(result.credited());
+                run.interestMinor.add(result.interest().minorUnits());
+                accruedAccounts.add(result.accounts());
+            }
+            return true;
+        } catch (RuntimeException e) {
+            failedChunks.increment();
+            log.warn("利息計算のチャンク（口座ID {}〜{}）に失敗しました: {}", fromId, toId, e.getMessage());
+            return false;
+        }
+    }
+    
+    private ChunkResult post(Run run, List<String> accountNumbers) {
+        List<Account> accounts = accountRepository.findByAccountNumberIn(accountNumbers);
+        Set<Long> postedSince = postedSince(run, accounts);
+        List<Transaction> postings = new ArrayList<>(accounts.size());
+        Money total = Money.ZERO;
+        int processed = 0;
+        for (Account account : accounts) {
+            String accrued = account.getInterestAccruedMonth();
+            // ロックを取るまでの間に、他のインスタンスの実行で付け済みになった
+            if (accrued != null && accrued.compareTo(run.monthKey) >= 0) {
+                continue;
+            }
+            processed++;
+            Money interest = interest(monthEndBalance(run, account, postedSince), rateUnits, run.days);
+            if (interest.isPositive()) {
+                postings.add(accountService.postInterest(account, interest, run.month));
+                total = total.plus(interest);
+            } else {
+                account.setInterestAccruedMonth(run.monthKey);
+                ledgerEventRecorder.recordInterestMarked(account, run.month);
+            }
+        }
+        transactionRepository.saveAll(postings);
+        return new ChunkResult(processed, postings.size(), total);
+    }
+    
+    /**
+     * 月が明けてから取引のあった口座のID。非同期書き出しの取引表は遅れるので、口座ロックの中で書き出してから読む。
+     */
+    private Set<Long> postedSince(Run run, List<Account> accounts) {
+        List<Long> accountIds = accounts.stream().map(Account::getId).toList();
+        accountIds.forEach(ledgerOutbox::awaitWritten);
+        return new HashSet<>(transactionRepository.findAccountIdsPostedSince(accountIds, run.openedBefore));
+    }
+    
+    /**
+     * 月末の残高。月が明けてから取引がなければ現在の残高で、あれば月末までの最後の取引の取引後残高
+     * （残高バケットへの入金の取引後残高はバケットの分を含む）。
+     */
+    private Money monthEndBalance(Run run, Account account, Set<Long> postedSince) {
+        if (!postedSince.contains(account.getId())) {
+            return account.getBalanceBuckets() > 0 ? balanceBuckets.balance(account.getId()) : account.getBalance();
+        }
+        List<TransactionView> last = transactionRepository.findHistoryPageBefore(account.getId(), run.openedBefore,
+            0L, PageRequest.of(0, 1));
+        return last.isEmpty() ? Money.ZERO : last.get(0).getBalanceAfter();
+    }
+    
+    private record ChunkResult(int accounts, int credited, Money interest) {
+    }
+    
+    /**
+     * 1回の実行の対象と進捗。チャンクは並列に終わるので、件数はLongAdderで数える。
+     */
+    private final class Run {
+        private final YearMonth month;
+        private final String monthKey;
+        private final int days;
+        private final LocalDateTime openedBefore;
+        private final AccountChunkExecutor.Progress progress;
+        private final LongAdder accounts = new LongAdder();
+        private final LongAdder credited = new LongAdder();
+        private final LongAdder interestMinor = new LongAdder();
+        
+        Run(YearMonth month, AccountChunkExecutor.Progress progress) {
+            this.month = month;
+            this.monthKey = month.toString();
+            this.days = month.lengthOfMonth();
+            this.openedBefore = month.plusMonths(1).atDay(1).atStartOfDay();
+            this.progress = progress;
+        }
+        
+        InterestAccrualResult result() {
+            long elapsedNanos = progress.elapsedNanos();
+            long processed = accounts.sum();
+            return new InterestAccrualResult(month, annualRate, progress.inProgress(), progress.chunks(),
+                progress.completedChunks(), progress.failedChunks(), processed, credited.sum(), Money.ofMinor(interestMinor.sum()),
+                elapsedNanos / 1_000_000, elapsedNanos == 0 ? 0 : processed * 1_000_000_000.0 / elapsedNanos);
+        }
+    }
+}
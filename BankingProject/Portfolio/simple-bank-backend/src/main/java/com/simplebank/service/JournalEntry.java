@@ -0,0 +1,68 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * ジャーナルに記録する1件の台帳イベント。
+ * OPENは口座開設（ownerName・passwordを使う）、TRANSFERはtoAccountNumberを使う。INTERESTは利息の対象月（period）を使う。
+ * BUCKET_DEPOSITは残高バケットへの入金で、bucketはバケット番号、balanceAfterは記録時の取引後残高
+ * （並行する入金の分を含むことがあり、再生では求め直せない）。BUCKET_CONFIGUREのbucketは新しいバケット数。
+ * INTEREST_MARKは利息が0円だった口座の対象月（period）。
+ */
+record JournalEntry(Type type, String accountNumber, String toAccountNumber, String ownerName,
+                    String password, Money amount, YearMonth period, int bucket, Money balanceAfter,
+                    LocalDateTime createdAt) {
+    
+    // 符号化に序数を使うため、追加は末尾に行う
+    enum Type {
+        OPEN,
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER,
+        INTEREST,
+        BUCKET_DEPOSIT,
+        BUCKET_SETTLE,
+        BUCKET_CONFIGURE,
+        INTEREST_MARK,
+        PASSWORD
+    }
+    
+    static JournalEntry open(String accountNumber, String ownerName, String password, LocalDateTime createdAt) {
+        return new JournalEntry(Type.OPEN, accountNumber, null, ownerName, password, null, null, 0, null, createdAt);
+    }
+    
+    static JournalEntry posting(Type type, String accountNumber, Money amount, LocalDateTime createdAt) {
+        return new JournalEntry(type, accountNumber, null, null, null, amount, null, 0, null, createdAt);
+    }
+    
+    static JournalEntry transfer(String fromAccountNumber, String toAccountNumber, Money amount,
+                                 LocalDateTime createdAt) {
+        return new JournalEntry(Type.TRANSFER, fromAccountNumber, toAccountNumber, null, null, amount, null, 0, null,
+            createdAt);
+    }
+    
+    static JournalEntry interest(String accountNumber, Money amount, YearMonth period, LocalDateTime createdAt) {
+        return new JournalEntry(Type.INTEREST, accountNumber, null, null, null, amount, period, 0, null, createdAt);
+    }
+    
+    static JournalEntry bucketDeposit(String accountNumber, int bucket, Money amount, Money balanceAfter,
+                                      LocalDateTime createdAt) {
+        return new JournalEntry(Type.BUCKET_DEPOSIT, accountNumber, null, null, null, amount, null, bucket, balanceAfter,
+            createdAt);
+    }
+    
+    static JournalEntry bucketConfigure(String accountNumber, int buckets, LocalDateTime createdAt) {
+        return new JournalEntry(Type.BUCKET_CONFIGURE, accountNumber, null, null, null, null, null, buckets, null,
+            createdAt);
+    }
+    
+    static JournalEntry interestMark(String accountNumber, YearMonth period, LocalDateTime createdAt) {
+        return new JournalEntry(Type.INTEREST_MARK, accountNumber, null, null, null, null, period, 0, null, createdAt);
+    }
+    
+    static JournalEntry password(String accountNumber, String password, LocalDateTime createdAt) {
+        return new JournalEntry(Type.PASSWORD, accountNumber, null, null, password, null, null, 0, null, createdAt);
+    }
+}
@@ -0,0 +1,373 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 追記専用のジャーナルファイル（メモリマップした固定長セグメントの列）。
+ * レコードは [長さ][CRC32C][本体] の形式で、長さ0の位置が末尾。
+ * <p>
+ * グループコミット: 追記したスレッドは自分のレコードが永続化されるまで待つ。
+ * 最初に待ったスレッドがまとめてforce（msync）し、その間に追記された分は次のforceでまとめて永続化する。
+ * 1回のforceで永続化できる件数が並行数に応じて増えるため、1件ごとにfsyncするより速い。
+ */
+class JournalFile implements AutoCloseable {
+    
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    
+    private final Path directory;
+    private final int segmentBytes;
+    
+    // 追記位置。appendLockで保護する
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private Segment current;
+    private long written;
+    
+    // 永続化済みの位置。flushLockで保護する
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushed = flushLock.newCondition();
+    private long durable;
+    private boolean flushing;
+    
+    private final LongAdder records = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    
+    JournalFile(Path directory, int segmentBytes, long segmentIndex) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.current = Segment.open(segmentPath(directory, segmentIndex), segmentIndex, 0, segmentBytes);
+    }
+    
+    /**
+     * 1レコードを追記し、永続化されるまで待つ。
+     */
+    void append(List<JournalEntry> entries) {
+        byte[] payload = encode(entries);
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new IllegalArgumentException("ジャーナルレコードがセグメントより大きいです: " + size + " bytes");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        
+        long end;
+        appendLock.lock();
+        try {
+            if (segmentBytes - current.position < size) {
+                rotateLocked();
+            }
+            MappedByteBuffer buffer = current.buffer;
+            int position = current.position;
+            buffer.put(position + HEADER_BYTES, payload);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            // 長さは最後に書く（途中で落ちても長さ0＝末尾として読まれる）
+            buffer.putInt(position, payload.length);
+            current.position += size;
+            written += size;
+            end = written;
+        } finally {
+            appendLock.unlock();
+        }
+        records.increment();
+        awaitDurable(end);
+    }
+    
+    /**
+     * 新しいセグメントに切り替え、その番号を返す。切り替え前のセグメントはすべて永続化済みになる。
+     */
+    long rotate() {
+        appendLock.lock();
+        try {
+            rotateLocked();
+            return current.index;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    long currentSegment() {
+        appendLock.lock();
+        try {
+            return current.index;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    long records() {
+        return records.sum();
+    }
+    
+    long flushes() {
+        return flushes.sum();
+    }
+    
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            current.buffer.force();
+            current.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    private void rotateLocked() {
+        Segment previous = current;
+        previous.buffer.force();
+        previous.close();
+        current = Segment.open(segmentPath(directory, previous.index + 1), previous.index + 1, written, segmentBytes);
+        markDurable(written);
+    }
+    
+    private void awaitDurable(long end) {
+        flushLock.lock();
+        try {
+            while (durable < end) {
+                if (flushing) {
+                    // 他のスレッドがforce中。終わったら自分の分が含まれたか確認する
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                long from = durable;
+                flushLock.unlock();
+                long target = from;
+                try {
+                    target = flushPending(from);
+                } finally {
+                    flushLock.lock();
+                    flushing = false;
+                    durable = Math.max(durable, target);
+                    flushed.signalAll();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * fromから現在の追記位置までをforceし、永続化した位置を返す。
+     */
+    private long flushPending(long from) {
+        Segment segment;
+        long target;
+        appendLock.lock();
+        try {
+            segment = current;
+            target = written;
+        } finally {
+            appendLock.unlock();
+        }
+        int start = (int) Math.max(0, from - segment.base);
+        int length = (int) (target - segment.base) - start;
+        if (length > 0) {
+            segment.buffer.force(start, length);
+            flushes.increment();
+        }
+        return target;
+    }
+    
+    private void markDurable(long position) {
+        flushLock.lock();
+        try {
+            durable = Math.max(durable, position);
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    // ---- 読み込み（起動時の再生用） ----
+    
+    /**
+     * セグメントのレコードを先頭から順に渡す。CRCが合わないレコード（書き込み途中で停止した末尾）で打ち切る。
+     * 戻り値は読み込んだレコード数。
+     */
+    static int read(Path segment, Consumer<List<JournalEntry>> consumer) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = 0;
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                consumer.accept(decode(payload));
+                count++;
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * ディレクトリ内のセグメントを番号順に返す。
+     */
+    static List<Long> listSegments(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    static Path segmentPath(Path directory, long index) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+    
+    // ---- レコードの符号化 ----
+    
+    private static byte[] encode(List<JournalEntry> entries) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * entries.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(entries.size());
+            for (JournalEntry entry : entries) {
+                out.writeByte(entry.type().ordinal());
+                out.writeUTF(entry.accountNumber());
+                writeNullable(out, entry.toAccountNumber());
+                writeNullable(out, entry.ownerName());
+                writeNullable(out, entry.password());
+                writeNullable(out, entry.amount() == null ? null : entry.amount().toString());
+                out.writeLong(entry.createdAt().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(entry.createdAt().getNano());
+                // 種類ごとの項目は続けて書く（それ以外の種類は従来の形式のまま読める）
+                switch (entry.type()) {
+                    case INTEREST, INTEREST_MARK -> out.writeUTF(entry.period().toString());
+                    case BUCKET_DEPOSIT -> {
+                        out.writeInt(entry.bucket());
+                        out.writeUTF(entry.balanceAfter().toString());
+                    }
+                    case BUCKET_CONFIGURE -> out.writeInt(entry.bucket());
+                    default -> { }
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static List<JournalEntry> decode(byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            int count = in.readInt();
+            List<JournalEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                JournalEntry.Type type = JournalEntry.Type.values()[in.readByte()];
+                String accountNumber = in.readUTF();
+                String toAccountNumber = readNullable(in);
+                String ownerName = readNullable(in);
+                String password = readNullable(in);
+                String amount = readNullable(in);
+                LocalDateTime createdAt = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                YearMonth period = null;
+                int bucket = 0;
+                Money balanceAfter = null;
+                switch (type) {
+                    case INTEREST, INTEREST_MARK -> period = YearMonth.parse(in.readUTF());
+                    case BUCKET_DEPOSIT -> {
+                        bucket = in.readInt();
+                        balanceAfter = Money.parse(in.readUTF());
+                    }
+                    case BUCKET_CONFIGURE -> bucket = in.readInt();
+                    default -> { }
+                }
+                entries.add(new JournalEntry(type, accountNumber, toAccountNumber, ownerName, password,
+                    amount == null ? null : Money.parse(amount), period, bucket, balanceAfter, createdAt));
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    /**
+     * 1つのセグメントファイル。baseはジャーナル全体での先頭位置。
+     */
+    private static final class Segment {
+        private final long index;
+        private final long base;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        
+        private Segment(long index, long base, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.base = base;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+        
+        static Segment open(Path path, long index, long base, int size) {
+            try {
+                FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                // マップ範囲までファイルが拡張され、未使用部分は0で埋まる
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                return new Segment(index, base, channel, buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        void close() {
+            // マッピングはチャネルを閉じても有効（GCで解放される）
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
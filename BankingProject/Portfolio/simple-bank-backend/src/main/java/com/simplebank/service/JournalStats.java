@@ -0,0 +1,13 @@
+package com.simplebank.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * ジャーナルの統計スナップショット。
+ * recordsPerFlushはグループコミット1回あたりの平均レコード数、
+ * recordsSinceSnapshotは次回起動時に再生されるレコード数。
+ */
+public record JournalStats(String directory, long currentSegment, long records, long flushes, double recordsPerFlush,
+                           long recordsSinceSnapshot, long snapshots, long lastSnapshotSegment,
+                           LocalDateTime lastSnapshotAt, long replayedRecords, long replayMillis) {
+}
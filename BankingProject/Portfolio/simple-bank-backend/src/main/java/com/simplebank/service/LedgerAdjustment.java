@@ -0,0 +1,38 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Transaction;
+import java.time.YearMonth;
+
+/**
+ * 取引の種類だけでは再生できない台帳の変更（LedgerCommittedEventに含めてジャーナルに記録する）。
+ * BUCKET_CREDITは残高バケットへの入金で、transactionはイベントのtransactionsにも含まれ、bucketはバケット番号。
+ * BUCKET_CONFIGUREはバケット数を変更した（bucketは新しいバケット数）。
+ * INTEREST_MARKは利息が0円だった口座に対象月（period）だけを記録した。
+ * PASSWORDは平文のパスワードをハッシュ化した値に置き換えた（新しい値はイベントのaccountsにある口座のスナップショット）。
+ */
+public record LedgerAdjustment(Kind kind, String accountNumber, int bucket, YearMonth period, Transaction transaction) {
+
+    public enum Kind {
+        BUCKET_CREDIT,
+        BUCKET_CONFIGURE,
+        INTEREST_MARK,
+        PASSWORD
+    }
+
+    static LedgerAdjustment bucketCredit(Transaction transaction, int bucket) {
+        return new LedgerAdjustment(Kind.BUCKET_CREDIT, transaction.getAccount().getAccountNumber(), bucket, null,
+            transaction);
+    }
+
+    static LedgerAdjustment bucketConfigure(String accountNumber, int buckets) {
+        return new LedgerAdjustment(Kind.BUCKET_CONFIGURE, accountNumber, buckets, null, null);
+    }
+
+    static LedgerAdjustment interestMark(String accountNumber, YearMonth period) {
+        return new LedgerAdjustment(Kind.INTEREST_MARK, accountNumber, 0, period, null);
+    }
+
+    static LedgerAdjustment password(String accountNumber) {
+        return new LedgerAdjustment(Kind.PASSWORD, accountNumber, 0, null, null);
+    }
+}
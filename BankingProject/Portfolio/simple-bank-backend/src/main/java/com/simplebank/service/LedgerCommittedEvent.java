@@ -0,0 +1,15 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Transaction;
+import java.util.List;
+
+/**
+ * 残高更新トランザクションのコミット後に発行されるイベント。
+ * accountsは更新後の口座、transactionsは登録した取引（ID採番済み）、
+ * openedはこのトランザクションで開設した口座（accountsにも含まれる）、
+ * adjustmentsは取引の種類だけでは再生できない変更（残高バケット・利息の対象月。ジャーナル用）。
+ * 口座ロックを保持したまま同じスレッドで発行されるため、同じ口座のイベントは順序どおりに届く。
+ */
+public record LedgerCommittedEvent(List<AccountSnapshot> accounts, List<Transaction> transactions,
+                                   List<AccountSnapshot> opened, List<LedgerAdjustment> adjustments) {
+}
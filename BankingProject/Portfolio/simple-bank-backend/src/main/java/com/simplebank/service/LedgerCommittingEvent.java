@@ -0,0 +1,9 @@
+package com.simplebank.service;
+
+/**
+ * 残高更新トランザクションのコミット直前（フラッシュ後）に発行されるイベント。中身はコミット後に発行するLedgerCommittedEventと同じ。
+ * 口座ロックとLedgerWriteGateを保持したまま同じスレッドで発行され、リスナーが例外を投げるとトランザクションはロールバックされる。
+ * コミットより先に済ませなければならない記録（ジャーナル）に使う。
+ */
+public record LedgerCommittingEvent(LedgerCommittedEvent ledger) {
+}
@@ -0,0 +1,141 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Account;
+import com.simplebank.entity.Transaction;
+import com.simplebank.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * トランザクション内で登録された取引と開設された口座を集め、コミット後にLedgerCommittedEventとして1回だけ発行する。
+ * コミット直前には同じ取引を日次残高集計に反映し（取引と同じトランザクションで保存される）、フラッシュしてから
+ * 同じ内容をLedgerCommittingEventとして発行する（ジャーナルはここで永続化を待ち、失敗すればロールバックさせる）。
+ * ロールバックされた場合はLedgerCommittedEventを発行しない。
+ */
+@Component
+@RequiredArgsConstructor
+class LedgerEventRecorder {
+    
+    private final ApplicationEventPublisher eventPublisher;
+    private final DailyBalanceAggregator dailyBalanceAggregator;
+    private final AccountRepository accountRepository;
+    
+    void record(Transaction transaction) {
+        Buffer buffer = buffer();
+        if (buffer == null) {
+            return;
+        }
+        buffer.accounts.put(transaction.getAccount().getAccountNumber(), transaction.getAccount());
+        buffer.transactions.add(transaction);
+        buffer.aggregated.add(transaction);
+    }
+    
+    /**
+     * 残高バケットへの入金。口座の行は更新していないので口座のスナップショットは発行せず、
+     * 日次残高集計にはバケットを寄せたときにまとめて反映する（BalanceBuckets.settle）。
+     */
+    void recordBucketCredit(Transaction transaction, int bucket) {
+        Buffer buffer = buffer();
+        if (buffer == null) {
+            return;
+        }
+        buffer.transactions.add(transaction);
+        buffer.adjustments.add(LedgerAdjustment.bucketCredit(transaction, bucket));
+    }
+    
+    /**
+     * 残高バケットの数を変更した（変更前に寄せた分も含む）。
+     */
+    void recordBucketsConfigured(Account account) {
+        adjust(account, LedgerAdjustment.bucketConfigure(account.getAccountNumber(), account.getBalanceBuckets()));
+    }
+    
+    /**
+     * 利息が0円の口座に対象月だけを記録した。
+     */
+    void recordInterestMarked(Account account, YearMonth period) {
+        adjust(account, LedgerAdjustment.interestMark(account.getAccountNumber(), period));
+    }
+    
+    /**
+     * 平文のパスワードをハッシュ化した値に置き換えた。
+     */
+    void recordPasswordUpgraded(Account account) {
+        adjust(account, LedgerAdjustment.password(account.getAccountNumber()));
+    }
+    
+    void recordOpened(Account account) {
+        Buffer buffer = buffer();
+        if (buffer == null) {
+            return;
+        }
+        buffer.accounts.put(account.getAccountNumber(), account);
+        buffer.opened.add(account);
+    }
+    
+    /**
+     * 取引を伴わずに口座の行を更新した。口座のスナップショットを発行し、ジャーナルには変更を記録する。
+     */
+    private void adjust(Account account, LedgerAdjustment adjustment) {
+        Buffer buffer = buffer();
+        if (buffer == null) {
+            return;
+        }
+        buffer.accounts.put(account.getAccountNumber(), account);
+        buffer.adjustments.add(adjustment);
+    }
+    
+    private Buffer buffer() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Buffer buffer = (Buffer) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            buffer = new Buffer();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        return buffer;
+    }
+    
+    private class Buffer implements TransactionSynchronization {
+        private final Map<String, Account> accounts = new LinkedHashMap<>();
+        private final List<Transaction> transactions = new ArrayList<>();
+        private final List<Transaction> aggregated = new ArrayList<>();
+        private final List<Account> opened = new ArrayList<>();
+        private final List<LedgerAdjustment> adjustments = new ArrayList<>();
+        private LedgerCommittedEvent event;
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            dailyBalanceAggregator.apply(aggregated);
+            // 楽観ロックの衝突などはここで失敗させ、ジャーナルにはコミットできる変更だけを記録する
+            // （リポジトリ経由でフラッシュし、衝突をOptimisticLockingFailureExceptionに変換して再実行の対象にする）
+            accountRepository.flush();
+            // フラッシュ後なのでバージョンと取引IDは確定している
+            List<AccountSnapshot> snapshots = accounts.values().stream().map(AccountSnapshot::of).toList();
+            List<AccountSnapshot> openedSnapshots = opened.stream().map(AccountSnapshot::of).toList();
+            event = new LedgerCommittedEvent(snapshots, List.copyOf(transactions), openedSnapshots,
+                List.copyOf(adjustments));
+            eventPublisher.publishEvent(new LedgerCommittingEvent(event));
+        }
+        
+        @Override
+        public void afterCommit() {
+            eventPublisher.publishEvent(event);
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LedgerEventRecorder.this);
+        }
+    }
+}
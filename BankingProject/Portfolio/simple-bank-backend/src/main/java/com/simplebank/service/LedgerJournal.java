@@ -0,0 +1,499 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Account;
+import com.simplebank.entity.Transaction;
+import com.simplebank.repository.AccountRepository;
+import com.simplebank.repository.TransactionRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 台帳イベントの追記ジャーナル。インメモリDBでも再起動で残高と取引履歴を失わないようにする。
+ * <p>
+ * コミット直前の通知（LedgerCommittingEvent）を受けて口座開設・入金・出金・振込・利息と、残高バケットの入金・寄せ・バケット数の変更、
+ * 利息が0円だった口座の対象月を記録し、永続化を待ってからコミットする。追記に失敗したらそのトランザクションはロールバックされ、
+ * ジャーナルにない変更がDBに残らない。失敗した後は再起動するまで残高更新をすべて断る（失敗したレコードが
+ * ファイルに残っている可能性があり、その後ろに記録を続けると再生結果がDBとずれるため）。
+ * 通知は口座ロックを保持したまま届くため、同じ口座のイベントはコミット順に並ぶ。
+ * 起動時は最新のスナップショット（H2のSCRIPT出力）を読み込み、それ以降のセグメントを再生する。
+ * スナップショットは一定件数・一定時間ごとに取り、それより古いセグメントは削除するので、再生時間は頭打ちになる。
+ * スナップショット取得中は残高更新を止める（LedgerWriteGate）。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "simplebank.journal.enabled", havingValue = "true")
+public class LedgerJournal implements SmartLifecycle, MeterBinder {
+    
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".sql.deflate";
+    private static final int REPLAY_CHUNK_RECORDS = 500;
+    private static final long CHECK_INTERVAL_SECONDS = 5;
+    
+    private final AccountService accountService;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerWriteGate writeGate;
+    private final AccountCache accountCache;
+    private final BalanceBuckets balanceBuckets;
+    private final Path directory;
+    private final int segmentBytes;
+    private final long snapshotRecords;
+    private final long snapshotIntervalSeconds;
+    
+    // 再生が終わるまではnull（再生中のコミット通知は記録しない）
+    private volatile JournalFile journalFile;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    // 追記に失敗した原因。nullでなければ以降の残高更新を断る
+    private volatile RuntimeException appendFailure;
+    
+    private volatile long recordsAtSnapshot;
+    private volatile long lastSnapshotSegment;
+    private volatile LocalDateTime lastSnapshotAt;
+    private volatile long snapshots;
+    private volatile long replayedRecords;
+    private volatile long replayMillis;
+    
+    public LedgerJournal(AccountService accountService,
+                         AccountRepository accountRepository,
+                         TransactionRepository transactionRepository,
+                         TransactionTemplate transactionTemplate,
+                         JdbcTemplate jdbcTemplate,
+                         LedgerWriteGate writeGate,
+                         AccountCache accountCache,
+                         BalanceBuckets balanceBuckets,
+                         @Value("${simplebank.journal.directory:./data/journal}") String directory,
+                         @Value("${simplebank.journal.segment-size-mb:64}") int segmentSizeMb,
+                         @Value("${simplebank.journal.snapshot-records:100000}") long snapshotRecords,
+                         @Value("${simplebank.journal.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) {
+        this.accountService = accountService;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeGate = writeGate;
+        this.accountCache = accountCache;
+        this.balanceBuckets = balanceBuckets;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.segmentBytes = segmentSizeMb * 1024 * 1024;
+        this.snapshotRecords = snapshotRecords;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+    
+    @EventListener
+    public void onLedgerCommitting(LedgerCommittingEvent event) {
+        JournalFile file = journalFile;
+        if (file == null) {
+            return;
+        }
+        List<JournalEntry> entries = toEntries(event.ledger());
+        if (entries.isEmpty()) {
+            return;
+        }
+        RuntimeException failure = appendFailure;
+        if (failure != null) {
+            throw new RuntimeException("ジャーナルへの追記に失敗したため、残高の更新を停止しています", failure);
+        }
+        try {
+            file.append(entries);
+        } catch (RuntimeException e) {
+            appendFailure = e;
+            log.error("ジャーナルへの追記に失敗しました。再起動するまで残高の更新を停止します", e);
+            throw e;
+        }
+    }
+    
+    /**
+     * スナップショットを取り、古いセグメントを削除する。取得中は残高更新を止める。
+     */
+    public JournalStats snapshot() {
+        writeGate.exclusive(() -> {
+            takeSnapshot();
+            return null;
+        });
+        return stats();
+    }
+    
+    public JournalStats stats() {
+        JournalFile file = journalFile;
+        long records = file == null ? 0 : file.records();
+        long flushes = file == null ? 0 : file.flushes();
+        return new JournalStats(
+            directory.toString(),
+            file == null ? 0 : file.currentSegment(),
+            records,
+            flushes,
+            flushes == 0 ? 0 : (double) records / flushes,
+            records - recordsAtSnapshot,
+            snapshots,
+            lastSnapshotSegment,
+            lastSnapshotAt,
+            replayedRecords,
+            replayMillis
+        );
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ledger.journal.records", this, journal -> journal.stats().records())
+            .description("ジャーナルに追記したレコード数").register(registry);
+        FunctionCounter.builder("ledger.journal.flushes", this, journal -> journal.stats().flushes())
+            .description("ジャーナルのforce回数（グループコミット単位）").register(registry);
+        FunctionCounter.builder("ledger.journal.snapshots", this, journal -> journal.snapshots)
+            .description("取得したスナップショット数").register(registry);
+        Gauge.builder("ledger.journal.records.since.snapshot", this, journal -> journal.stats().recordsSinceSnapshot())
+            .description("直近のスナップショット以降のレコード数（起動時に再生する件数）").register(registry);
+    }
+    
+    // ---- 起動と停止 ----
+    
+    /**
+     * Webサーバーより先に開始し、再生が終わるまでリクエストを受け付けない。
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+    
+    @Override
+    public void start() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        long started = System.nanoTime();
+        long snapshotSegment = latestSnapshot();
+        if (snapshotSegment > 0) {
+            restore(snapshotPath(snapshotSegment));
+            deleteObsolete(snapshotSegment);
+        }
+        
+        List<Long> segments = JournalFile.listSegments(directory);
+        long replayed = replay(segments);
+        // 再生中のコミット通知で入ったスナップショットは、DBから読み直した値と桁数が異なるため捨てる
+        accountCache.invalidateAll();
+        replayedRecords = replayed;
+        replayMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        if (snapshotSegment > 0 || replayed > 0) {
+            log.info("ジャーナルから復元しました: スナップショット={}, 再生レコード数={}, {}ms",
+                snapshotSegment, replayed, replayMillis);
+        }
+        
+        // 再生したセグメントには追記せず、新しいセグメントから書き始める
+        long lastSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        journalFile = new JournalFile(directory, segmentBytes, Math.max(lastSegment + 1, Math.max(snapshotSegment, 1)));
+        lastSnapshotSegment = snapshotSegment;
+        if (replayed > 0) {
+            snapshot();
+        }
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotIfDue,
+            CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        running = true;
+    }
+    
+    /**
+     * 停止時に未反映の分をスナップショットにして、次回の起動で再生しなくて済むようにする。
+     */
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        if (stats().recordsSinceSnapshot() > 0) {
+            snapshot();
+        }
+        JournalFile file = journalFile;
+        journalFile = null;
+        file.close();
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    private void snapshotIfDue() {
+        try {
+            long pending = stats().recordsSinceSnapshot();
+            boolean intervalElapsed = lastSnapshotAt == null
+                || lastSnapshotAt.plusSeconds(snapshotIntervalSeconds).isBefore(LocalDateTime.now());
+            if (pending >= snapshotRecords || (pending > 0 && intervalElapsed)) {
+                snapshot();
+            }
+        } catch (RuntimeException e) {
+            log.error("ジャーナルのスナップショット取得に失敗しました", e);
+        }
+    }
+    
+    // ---- スナップショット ----
+    
+    /**
+     * 新しいセグメントに切り替えてからDB全体を書き出す。
+     * スナップショットNは「セグメントN以降を再生すれば最新になる状態」を表す。
+     * 書き出しが完了してから名前を付け替えるので、途中で停止しても前のスナップショットが使われる。
+     */
+    private void takeSnapshot() {
+        long segment = journalFile.rotate();
+        long records = journalFile.records();
+        Path target = snapshotPath(segment);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temporary);
+            jdbcTemplate.execute("SCRIPT NOPASSWORDS NOSETTINGS TO " + sqlLiteral(temporary) + " COMPRESSION DEFLATE");
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recordsAtSnapshot = records;
+        lastSnapshotSegment = segment;
+        lastSnapshotAt = LocalDateTime.now();
+        snapshots++;
+        deleteObsolete(segment);
+    }
+    
+    private void restore(Path snapshot) {
+        // Hibernateが作成したスキーマごと置き換える（シーケンスの現在値も復元される）
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        jdbcTemplate.execute("RUNSCRIPT FROM " + sqlLiteral(snapshot) + " COMPRESSION DEFLATE");
+    }
+    
+    private long latestSnapshot() {
+        return listSnapshots().stream().reduce((first, second) -> second).orElse(0L);
+    }
+    
+    private List<Long> listSnapshots() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX))
+                .map(name -> Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * スナップショットsegmentに含まれるセグメントと、それより古いスナップショットを削除する。
+     */
+    private void deleteObsolete(long segment) {
+        try {
+            for (Long index : JournalFile.listSegments(directory)) {
+                if (index < segment) {
+                    Files.deleteIfExists(JournalFile.segmentPath(directory, index));
+                }
+            }
+            for (Long index : listSnapshots()) {
+                if (index < segment) {
+                    Files.deleteIfExists(snapshotPath(index));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private Path snapshotPath(long segment) {
+        return directory.resolve(String.format("%s%012d%s", SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX));
+    }
+    
+    private static String sqlLiteral(Path path) {
+        return "'" + path.toString().replace("'", "''") + "'";
+    }
+    
+    // ---- 再生 ----
+    
+    /**
+     * セグメントを順に再生する。AccountServiceの残高更新処理をそのまま使い、REPLAY_CHUNK_RECORDS件ごとにコミットする。
+     */
+    private long replay(List<Long> segments) {
+        List<List<JournalEntry>> chunk = new ArrayList<>();
+        long replayed = 0;
+        for (Long segment : segments) {
+            replayed += JournalFile.read(JournalFile.segmentPath(directory, segment), entries -> {
+                chunk.add(entries);
+                if (chunk.size() >= REPLAY_CHUNK_RECORDS) {
+                    applyChunk(chunk);
+                    chunk.clear();
+                }
+            });
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(chunk);
+        }
+        return replayed;
+    }
+    
+    private void applyChunk(List<List<JournalEntry>> records) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Account> accounts = new HashMap<>();
+            List<Transaction> transactions = new ArrayList<>();
+            for (List<JournalEntry> record : records) {
+                for (JournalEntry entry : record) {
+                    apply(entry, accounts, transactions);
+                }
+            }
+            transactionRepository.saveAll(transactions);
+        });
+    }
+    
+    private void apply(JournalEntry entry, Map<String, Account> accounts, List<Transaction> transactions) {
+        List<Transaction> posted = switch (entry.type()) {
+            case OPEN -> {
+                Account account = new Account();
+                account.setAccountNumber(entry.accountNumber());
+                account.setOwnerName(entry.ownerName());
+                account.setPassword(entry.password());
+                account.setCreatedAt(entry.createdAt());
+                accounts.put(entry.accountNumber(), accountRepository.save(account));
+                yield List.of();
+            }
+            case DEPOSIT -> List.of(accountService.postDeposit(resolve(accounts, entry.accountNumber()), entry.amount()));
+            case WITHDRAW -> List.of(accountService.postWithdraw(resolve(accounts, entry.accountNumber()), entry.amount()));
+            case TRANSFER -> accountService.postTransfer(resolve(accounts, entry.accountNumber()),
+                resolve(accounts, entry.toAccountNumber()), entry.amount());
+            case INTEREST -> List.of(accountService.postInterest(resolve(accounts, entry.accountNumber()),
+                entry.amount(), entry.period()));
+            case BUCKET_DEPOSIT -> {
+                Transaction credited = accountService.postBucketCredit(resolve(accounts, entry.accountNumber()),
+                    entry.bucket(), entry.amount(), entry.balanceAfter());
+                if (credited == null) {
+                    throw new RuntimeException("ジャーナルの再生中に残高バケットが見つかりません: "
+                        + BalanceBuckets.lockKey(entry.accountNumber(), entry.bucket()));
+                }
+                yield List.of(credited);
+            }
+            // 以前の利息計算が記録したもの（今は寄せずに月末の残高を取引から求めるので記録しない）
+            case BUCKET_SETTLE -> {
+                balanceBuckets.settle(resolve(accounts, entry.accountNumber()));
+                yield List.of();
+            }
+            case BUCKET_CONFIGURE -> {
+                balanceBuckets.configure(resolve(accounts, entry.accountNumber()), entry.bucket());
+                yield List.of();
+            }
+            case INTEREST_MARK -> {
+                resolve(accounts, entry.accountNumber()).setInterestAccruedMonth(entry.period().toString());
+                yield List.of();
+            }
+            case PASSWORD -> {
+                resolve(accounts, entry.accountNumber()).setPassword(entry.password());
+                yield List.of();
+            }
+        };
+        for (Transaction transaction : posted) {
+            transaction.setCreatedAt(entry.createdAt());
+        }
+        transactions.addAll(posted);
+    }
+    
+    private Account resolve(Map<String, Account> accounts, String accountNumber) {
+        return accounts.computeIfAbsent(accountNumber, key -> accountRepository.findByAccountNumber(key)
+            .orElseThrow(() -> new RuntimeException("ジャーナルの再生中に口座が見つかりません: " + key)));
+    }
+    
+    // ---- コミット通知 → ジャーナルレコード ----
+    
+    /**
+     * 1トランザクション分の通知を1レコードに変換する。
+     * 振込は送金元・送金先の取引が続けて登録されるので、2件を1つのTRANSFERにまとめる。
+     * 残高バケットへの入金はDEPOSITではなくBUCKET_DEPOSITにする（バケットへの入金は1トランザクションに1件だけ）。
+     * バケットの寄せ・バケット数の変更・利息の対象月・パスワードの置き換えは取引より後に並べる。同じトランザクションで同じ口座の取引と
+     * 組み合わさることはない（出金・振込・利息の中での寄せは、再生でも同じ処理の中で行われる）。
+     */
+    private static List<JournalEntry> toEntries(LedgerCommittedEvent event) {
+        List<JournalEntry> entries = new ArrayList<>(
+            event.opened().size() + event.transactions().size() + event.adjustments().size());
+        LocalDateTime now = LocalDateTime.now();
+        for (AccountSnapshot account : event.opened()) {
+            entries.add(JournalEntry.open(account.accountNumber(), account.ownerName(), account.password(), now));
+        }
+        Transaction bucketCredit = null;
+        for (LedgerAdjustment adjustment : event.adjustments()) {
+            if (adjustment.kind() == LedgerAdjustment.Kind.BUCKET_CREDIT) {
+                bucketCredit = adjustment.transaction();
+                entries.add(JournalEntry.bucketDeposit(adjustment.accountNumber(), adjustment.bucket(),
+                    bucketCredit.getAmount(), bucketCredit.getBalanceAfter(), bucketCredit.getCreatedAt()));
+            }
+        }
+        List<Transaction> transactions = event.transactions();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            if (transaction == bucketCredit) {
+                continue;
+            }
+            String accountNumber = transaction.getAccount().getAccountNumber();
+            switch (transaction.getType()) {
+                case DEPOSIT -> entries.add(JournalEntry.posting(JournalEntry.Type.DEPOSIT, accountNumber,
+                    transaction.getAmount(), transaction.getCreatedAt()));
+                case WITHDRAW -> entries.add(JournalEntry.posting(JournalEntry.Type.WITHDRAW, accountNumber,
+                    transaction.getAmount(), transaction.getCreatedAt()));
+                case TRANSFER_OUT -> {
+                    Transaction incoming = transactions.get(++i);
+                    entries.add(JournalEntry.transfer(accountNumber, incoming.getAccount().getAccountNumber(),
+                        transaction.getAmount(), transaction.getCreatedAt()));
+                }
+                case TRANSFER_IN -> throw new IllegalStateException("送金元のない振込入金です: " + transaction.getId());
+                // 対象月は利息を付けたときに口座に記録してある
+                case INTEREST -> entries.add(JournalEntry.interest(accountNumber, transaction.getAmount(),
+                    YearMonth.parse(transaction.getAccount().getInterestAccruedMonth()), transaction.getCreatedAt()));
+            }
+        }
+        for (LedgerAdjustment adjustment : event.adjustments()) {
+            switch (adjustment.kind()) {
+                case BUCKET_CONFIGURE -> entries.add(JournalEntry.bucketConfigure(adjustment.accountNumber(),
+                    adjustment.bucket(), now));
+                case INTEREST_MARK -> entries.add(JournalEntry.interestMark(adjustment.accountNumber(),
+                    adjustment.period(), now));
+                case PASSWORD -> entries.add(JournalEntry.password(adjustment.accountNumber(),
+                    passwordOf(event, adjustment.accountNumber()), now));
+                case BUCKET_CREDIT -> { }
+            }
+        }
+        return entries;
+    }
+    
+    private static String passwordOf(LedgerCommittedEvent event, String accountNumber) {
+        for (AccountSnapshot account : event.accounts()) {
+            if (account.accountNumber().equals(accountNumber)) {
+                return account.password();
+            }
+        }
+        throw new IllegalStateException("口座のスナップショットがありません: " + accountNumber);
+    }
+}
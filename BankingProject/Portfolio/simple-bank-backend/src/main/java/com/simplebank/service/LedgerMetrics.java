@@ -0,0 +1,73 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 業務カウンター。
+ * ledger.operations: コミットされた入金・出金・振込・利息の件数
+ * ledger.rejections: 残高不足・出金と振込の上限超過で拒否した件数
+ */
+@Component
+public class LedgerMetrics {
+    
+    private final Counter deposits;
+    private final Counter withdrawals;
+    private final Counter transfers;
+    private final Counter interest;
+    private final Counter insufficientFunds;
+    private final Counter velocityCount;
+    private final Counter velocityAmount;
+    
+    public LedgerMetrics(MeterRegistry meterRegistry) {
+        this.deposits = operations(meterRegistry, "deposit");
+        this.withdrawals = operations(meterRegistry, "withdraw");
+        this.transfers = operations(meterRegistry, "transfer");
+        this.interest = operations(meterRegistry, "interest");
+        this.insufficientFunds = rejections(meterRegistry, "insufficient_funds");
+        this.velocityCount = rejections(meterRegistry, "velocity_count");
+        this.velocityAmount = rejections(meterRegistry, "velocity_amount");
+    }
+    
+    void insufficientFunds() {
+        insufficientFunds.increment();
+    }
+    
+    /**
+     * 出金・振込の上限（VelocityLimiter）で拒否した。limitは"count"（回数）か"amount"（金額）。
+     */
+    void velocityLimited(String limit) {
+        ("count".equals(limit) ? velocityCount : velocityAmount).increment();
+    }
+    
+    @EventListener
+    public void onLedgerCommitted(LedgerCommittedEvent event) {
+        for (Transaction transaction : event.transactions()) {
+            switch (transaction.getType()) {
+                case DEPOSIT -> deposits.increment();
+                case WITHDRAW -> withdrawals.increment();
+                // 振込は送金元の取引だけを数える
+                case TRANSFER_OUT -> transfers.increment();
+                case INTEREST -> interest.increment();
+                default -> { }
+            }
+        }
+    }
+    
+    private static Counter operations(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("ledger.operations")
+            .description("コミットされた取引の件数")
+            .tag("type", type)
+            .register(meterRegistry);
+    }
+    
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("ledger.rejections")
+            .description("拒否した取引の件数")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,298 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.LedgerOutboxEntry;
+import com.simplebank.entity.Transaction;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * パイプラインモード（simplebank.ledger.pipeline.enabled=true）の取引書き込み。
+ * <p>
+ * 入金・出金・振込のトランザクションでは、残高の更新と一緒に控え（LedgerOutboxEntry）を1行書くだけにし、
+ * 取引表（transactions）への行の追加は書き出しスレッドがまとめて行う。振込でも書くのは1行なので、
+ * 口座ロックとDBの行ロックを持つ時間が短くなる。取引IDは控えを書く時点でtransactions_seqから採番するため、
+ * 応答・コミット通知（ジャーナル・SSE）には通常モードと同じ取引が渡る。
+ * <p>
+ * 書き出し前の取引は取引表にない。そこで口座ごとに未書き出しの件数を数えておき、
+ * 取引履歴を読む前にその口座の分が残っていれば、呼び出したスレッドで書き出してから読む（自分の書き込みは必ず見える）。
+ * 件数はプロセス内で数えるため、複数インスタンス構成（cluster）では使わない。
+ */
+@Slf4j
+@Component
+public class LedgerOutbox implements SmartLifecycle, MeterBinder {
+    
+    private static final String SELECT_SQL =
+        "SELECT o.id, o.account_id, o.type, o.amount, o.balance_after, o.created_at, "
+            + "o.counterparty_account_id, o.counterparty_transaction_id, o.counterparty_balance_after, "
+            + "a.owner_name, c.owner_name "
+            + "FROM ledger_outbox o JOIN accounts a ON a.id = o.account_id "
+            + "LEFT JOIN accounts c ON c.id = o.counterparty_account_id "
+            + "ORDER BY o.id LIMIT ?";
+    private static final String INSERT_SQL =
+        "INSERT INTO transactions (id, account_id, type, amount, balance_after, created_at, description) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM ledger_outbox WHERE id = ?";
+    
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    
+    // 口座IDごとの未書き出しの取引数（コミット後に加算、書き出しのコミット後に減算。0になったら消す）
+    private final Map<Long, Integer> pendingByAccount = new ConcurrentHashMap<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder readFlushes = new LongAdder();
+    private final Object drainLock = new Object();
+    
+    private ScheduledExecutorService writer;
+    private volatile boolean running;
+    
+    public LedgerOutbox(EntityManager entityManager,
+                        JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${simplebank.ledger.pipeline.enabled:false}") boolean enabled,
+                        @Value("${simplebank.ledger.pipeline.batch-size:2000}") int batchSize,
+                        @Value("${simplebank.ledger.pipeline.flush-interval-ms:50}") long flushIntervalMillis) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * 取引に取引IDを採番し、控えを書く。呼び出し側のトランザクション内で呼ぶこと。
+     * transactionsは1件（入金・出金）か、postTransferの戻り値（[送金元, 送金先]）。
+     */
+    void append(List<Transaction> transactions) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) session.getFactory().getMappingMetamodel()
+            .getEntityDescriptor(Transaction.class).getGenerator();
+        for (Transaction transaction : transactions) {
+            transaction.setId((Long) generator.generate(session, transaction, null, EventType.INSERT));
+        }
+        
+        Transaction first = transactions.get(0);
+        LedgerOutboxEntry entry = new LedgerOutboxEntry();
+        entry.setId(first.getId());
+        entry.setAccountId(first.getAccount().getId());
+        entry.setType(first.getType());
+        entry.setAmount(first.getAmount());
+        entry.setBalanceAfter(first.getBalanceAfter());
+        entry.setCreatedAt(first.getCreatedAt());
+        if (transactions.size() > 1) {
+            Transaction counterparty = transactions.get(1);
+            entry.setCounterpartyAccountId(counterparty.getAccount().getId());
+            entry.setCounterpartyTransactionId(counterparty.getId());
+            entry.setCounterpartyBalanceAfter(counterparty.getBalanceAfter());
+        }
+        // IDを割り当て済みなのでmergeではなくpersist（存在確認のSELECTを出さない）
+        entityManager.persist(entry);
+        
+        List<Long> accountIds = transactions.stream().map(transaction -> transaction.getAccount().getId()).toList();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accountIds.forEach(accountId -> pendingByAccount.merge(accountId, 1, LedgerOutbox::sum));
+                pending.addAndGet(accountIds.size());
+            }
+        });
+    }
+    
+    /**
+     * 口座の未書き出しの取引を書き出してから戻る。取引表から履歴を読む前に呼ぶ。
+     */
+    void awaitWritten(Long accountId) {
+        if (!enabled) {
+            return;
+        }
+        Integer count = pendingByAccount.get(accountId);
+        if (count == null || count <= 0) {
+            return;
+        }
+        readFlushes.increment();
+        // 書き出しは古い控えから順に行うので、その口座の分がなくなるまで繰り返す
+        while (drain() > 0) {
+            count = pendingByAccount.get(accountId);
+            if (count == null || count <= 0) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 未書き出しの控えをすべて書き出す（取引表から全体を読み直す前に呼ぶ）。
+     */
+    void flush() {
+        if (enabled) {
+            drainAll();
+        }
+    }
+    
+    public OutboxStats stats() {
+        long batchCount = batches.sum();
+        long writtenCount = written.sum();
+        return new OutboxStats(enabled, pending.get(), writtenCount, batchCount,
+            batchCount == 0 ? 0 : (double) writtenCount / batchCount, readFlushes.sum());
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("ledger.outbox.pending", pending, AtomicLong::get)
+            .description("取引表への書き出しを待っている取引数").register(registry);
+        FunctionCounter.builder("ledger.outbox.written", written, LongAdder::sum)
+            .description("控えから取引表へ書き出した取引数").register(registry);
+        FunctionCounter.builder("ledger.outbox.batches", batches, LongAdder::sum)
+            .description("控えの書き出し回数（1回のトランザクション単位）").register(registry);
+        FunctionCounter.builder("ledger.outbox.read.flushes", readFlushes, LongAdder::sum)
+            .description("取引履歴を読む前に書き出しを待った回数").register(registry);
+    }
+    
+    // ---- 起動と停止 ----
+    
+    /**
+     * ジャーナルの再生（フェーズ0）の後に開始し、停止はジャーナルの最後のスナップショットより先に行う。
+     */
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+    
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // 前回の停止時に残った控え（ファイルDB・スナップショットからの復元分）は件数を数えていないので、先に書き出す
+        drainAll();
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-outbox-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::drainQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            writer.shutdownNow();
+            drainAll();
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    // ---- 書き出し ----
+    
+    private void drainQuietly() {
+        try {
+            drainAll();
+        } catch (RuntimeException e) {
+            log.error("取引の書き出しに失敗しました", e);
+        }
+    }
+    
+    private void drainAll() {
+        while (drain() == batchSize) {
+            // 溜まっている間は間隔を空けずに続ける
+        }
+    }
+    
+    /**
+     * 古い控えから最大batchSize件を取引表へ書き出し、控えを消す（1トランザクション）。書き出した控えの件数を返す。
+     * IDの小さい控えが後からコミットされることがあるため、削除は範囲ではなく読んだ行のIDで行う。
+     */
+    private int drain() {
+        synchronized (drainLock) {
+            List<Long> accountIds = new ArrayList<>();
+            Integer drained = transactionTemplate.execute(status -> {
+                List<Object[]> rows = new ArrayList<>();
+                List<Object[]> ids = new ArrayList<>();
+                jdbcTemplate.query(SELECT_SQL, rs -> {
+                    long id = rs.getLong(1);
+                    long accountId = rs.getLong(2);
+                    Transaction.TransactionType type = Transaction.TransactionType.valueOf(rs.getString(3));
+                    LocalDateTime createdAt = rs.getObject(6, LocalDateTime.class);
+                    String ownerName = rs.getString(10);
+                    String counterpartyName = rs.getString(11);
+                    ids.add(new Object[]{id});
+                    if (type == Transaction.TransactionType.TRANSFER_OUT) {
+                        long counterpartyId = rs.getLong(7);
+                        rows.add(new Object[]{id, accountId, type.name(), rs.getBigDecimal(4), rs.getBigDecimal(5),
+                            createdAt, AccountService.transferOutDescription(counterpartyName)});
+                        rows.add(new Object[]{rs.getLong(8), counterpartyId, Transaction.TransactionType.TRANSFER_IN.name(),
+                            rs.getBigDecimal(4), rs.getBigDecimal(9), createdAt, AccountService.transferInDescription(ownerName)});
+                        accountIds.add(accountId);
+                        accountIds.add(counterpartyId);
+                    } else {
+                        rows.add(new Object[]{id, accountId, type.name(), rs.getBigDecimal(4), rs.getBigDecimal(5),
+                            createdAt, null});
+                        accountIds.add(accountId);
+                    }
+                }, batchSize);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                jdbcTemplate.batchUpdate(DELETE_SQL, ids);
+                return ids.size();
+            });
+            if (drained == null || drained == 0) {
+                return 0;
+            }
+            accountIds.forEach(accountId -> pendingByAccount.merge(accountId, -1, LedgerOutbox::sum));
+            pending.addAndGet(-accountIds.size());
+            written.add(accountIds.size());
+            batches.increment();
+            return drained;
+        }
+    }
+    
+    // 書き出しが先にコミット後の加算を追い越すと一時的に負になる。0になった口座は消す
+    private static Integer sum(Integer current, Integer delta) {
+        int result = current + delta;
+        return result == 0 ? null : result;
+    }
+}
@@ -0,0 +1,432 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+import com.simplebank.repository.AccountRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 台帳の照合。口座の残高が取引の合計と一致すること、取引後残高が前の取引から連続していることを確認する。
+ * <p>
+ * 口座ごとに照合済みの最後の取引（ウォーターマーク）と、そこまでの件数・合計・チェックサムを照合の状態（AccountReconciliation）に持ち、
+ * 差分モードでは前回から変わった口座の、ウォーターマークより後の取引だけを取引履歴の索引（account_id, created_at, id）で読む。
+ * 取引表を全件読むのは全件モード（状態の作り直し）だけ。口座のID範囲をchunk-size件ずつのチャンクに分け、専用のForkJoinPoolで並列に処理する（AccountChunkExecutor）。
+ * <p>
+ * 口座ロックは取らない。口座の残高・バージョン・バケットの合計を取引を読む前後で読み、変わっていれば読み直す（取引の登録は必ずどれかを変える）。
+ * パイプラインモードでは控えの書き出し前の取引が取引表にないため、不一致なら控えを書き出してから読み直し、それでも一致しないものだけを報告する。
+ * 残高を分散している口座は、並行した入金の取引後残高が連続しないので、合計だけを照合する。
+ */
+@Slf4j
+@Service
+@Observed(name = "ledger.service")
+public class LedgerReconciliationService implements MeterBinder {
+    
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_REPORTED = 1000;
+    // 採番・作成時刻とコミットの順序が入れ替わった取引（残高バケットへの並行入金など）をウォーターマークより前に取りこぼさないよう、
+    // 作成から間もない取引ではウォーターマークを進めず、次回も読み直す
+    private static final Duration SETTLE_MARGIN = Duration.ofSeconds(10);
+    
+    private static final String ACCOUNT_COLUMNS =
+        "SELECT a.id, a.account_number, a.balance, a.version, a.balance_buckets, "
+            + "COALESCE((SELECT SUM(b.balance) FROM account_balance_buckets b WHERE b.account_id = a.id), 0), "
+            + "r.last_created_at, r.last_transaction_id, r.transaction_count, r.balance_sum, r.last_balance_after, r.checksum "
+            + "FROM accounts a LEFT JOIN account_reconciliations r ON r.account_id = a.id WHERE a.id BETWEEN ? AND ? ";
+    private static final String ALL_ACCOUNTS_SQL = ACCOUNT_COLUMNS + "ORDER BY a.id";
+    private static final String CHANGED_ACCOUNTS_SQL = ACCOUNT_COLUMNS
+        + "AND (r.account_id IS NULL OR r.account_version IS DISTINCT FROM a.version OR a.balance_buckets > 0) ORDER BY a.id";
+    private static final String SNAPSHOT_SQL =
+        "SELECT a.balance, a.version, a.balance_buckets, "
+            + "COALESCE((SELECT SUM(b.balance) FROM account_balance_buckets b WHERE b.account_id = a.id), 0) "
+            + "FROM accounts a WHERE a.id = ?";
+    private static final String FIRST_PAGE_SQL =
+        "SELECT id, type, amount, balance_after, created_at FROM transactions WHERE account_id = ? "
+            + "ORDER BY created_at, id LIMIT ?";
+    private static final String NEXT_PAGE_SQL =
+        "SELECT id, type, amount, balance_after, created_at FROM transactions WHERE account_id = ? "
+            + "AND (created_at > ? OR (created_at = ? AND id > ?)) ORDER BY created_at, id LIMIT ?";
+    private static final String MERGE_SQL =
+        "MERGE INTO account_reconciliations (account_id, last_created_at, last_transaction_id, transaction_count, "
+            + "balance_sum, last_balance_after, checksum, account_version, verified_at) KEY (account_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM account_reconciliations WHERE account_id = ?";
+    
+    private final LedgerOutbox ledgerOutbox;
+    private final JdbcTemplate jdbcTemplate;
+    private final int pageSize;
+    private final AccountChunkExecutor chunkExecutor;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    // 実行中、または最後に実行した分
+    private volatile Run lastRun;
+    private final LongAdder verifiedTransactions = new LongAdder();
+    private final LongAdder discrepancies = new LongAdder();
+    
+    public LedgerReconciliationService(AccountRepository accountRepository,
+                                       LedgerOutbox ledgerOutbox,
+                                       JdbcTemplate jdbcTemplate,
+                                       @Value("${simplebank.reconciliation.chunk-size:500}") int chunkSize,
+                                       @Value("${simplebank.reconciliation.page-size:5000}") int pageSize,
+                                       @Value("${simplebank.reconciliation.parallelism:0}") int parallelism) {
+        this.ledgerOutbox = ledgerOutbox;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageSize = Math.max(1, pageSize);
+        this.chunkExecutor = new AccountChunkExecutor(accountRepository, chunkSize, parallelism);
+    }
+    
+    /**
+     * 照合する（省略時は差分モード）。すべてのチャンクが終わるまで待ち、結果を返す。
+     */
+    public ReconciliationResult reconcile(ReconciliationMode mode) {
+        ReconciliationMode target = mode == null ? ReconciliationMode.INCREMENTAL : mode;
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("照合は実行中です");
+        }
+        try {
+            // 書き出し待ちの控えがあれば、先に取引表へ書き出す
+            ledgerOutbox.flush();
+            Run run = new Run(target, chunkExecutor.plan());
+            lastRun = run;
+            chunkExecutor.execute(run.progress, (fromId, toId) -> reconcileChunk(run, fromId, toId));
+            
+            ReconciliationResult result = run.result();
+            log.info("台帳を照合しました（{}）: 口座数={}, 取引数={}, 不一致={}, 未照合の口座={}, 失敗したチャンク={}, {}ms ({}取引/秒)",
+                target, result.accounts(), result.transactions(), result.discrepancyCount(), result.skippedAccounts(),
+                result.failedChunks(), result.elapsedMillis(), Math.round(result.transactionsPerSecond()));
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    /**
+     * 実行中ならその途中経過、そうでなければ最後の実行の結果。一度も実行していなければnull。
+     */
+    public ReconciliationResult status() {
+        Run run = lastRun;
+        return run == null ? null : run.result();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ledger.reconciliation.transactions", verifiedTransactions, LongAdder::sum)
+            .description("台帳の照合で読んだ取引数").register(registry);
+        FunctionCounter.builder("ledger.reconciliation.discrepancies", discrepancies, LongAdder::sum)
+            .description("台帳の照合で見つかった不一致の件数").register(registry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        chunkExecutor.shutdown();
+    }
+    
+    /**
+     * 取引1件をチェックサムに畳み込む。照合済みの範囲で同じ取引を同じ順に読めば同じ値になる。
+     */
+    static long fold(long checksum, long transactionId, String type, long amountMinor, long balanceAfterMinor) {
+        long h = mix(checksum + transactionId);
+        h = mix(h + type.hashCode());
+        h = mix(h + amountMinor);
+        return mix(h + balanceAfterMinor);
+    }
+    
+    // SplitMix64の最終化関数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * 入金は正、出金は負の金額（銭）。
+     */
+    private static long signedAmount(String type, long amountMinor) {
+        return switch (type) {
+            case "WITHDRAW", "TRANSFER_OUT" -> -amountMinor;
+            default -> amountMinor;
+        };
+    }
+    
+    /**
+     * 1チャンク分（口座ID fromId〜toId）を照合し、照合の状態をまとめて書く。
+     * 失敗したチャンクは数えるだけで、他のチャンクは続ける（差分モードの次回の実行で照合される）。
+     */
+    private boolean reconcileChunk(Run run, long fromId, long toId) {
+        try {
+            String sql = run.mode == ReconciliationMode.FULL ? ALL_ACCOUNTS_SQL : CHANGED_ACCOUNTS_SQL;
+            List<Candidate> candidates = jdbcTemplate.query(sql, (rs, rowNum) -> candidate(rs), fromId, toId);
+            LocalDateTime verifiedAt = LocalDateTime.now();
+            List<Object[]> verified = new ArrayList<>();
+            List<Object[]> reset = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                Scan scan = reconcileAccount(run, candidate);
+                if (scan == null) {
+                    run.skippedAccounts.increment();
+                    continue;
+                }
+                run.accounts.increment();
+                // 読み直した回の行は数えず、採用した回の行だけを数える
+                run.transactions.add(scan.rows);
+                verifiedTransactions.add(scan.rows);
+                if (scan.found.isEmpty()) {
+                    Cursor settled = scan.settled;
+                    verified.add(new Object[]{candidate.accountId(), settled.createdAt, settled.transactionId,
+                        settled.count, Money.ofMinor(settled.sum).toBigDecimal(),
+                        Money.ofMinor(settled.balanceAfter).toBigDecimal(), settled.checksum,
+                        scan.snapshot.version(), verifiedAt});
+                    continue;
+                }
+                scan.found.forEach(run::report);
+                // 差分モードでは状態を進めず、全件モードでは状態を消して、解消するまで毎回最初から照合する
+                if (run.mode == ReconciliationMode.FULL && candidate.checkpoint() != null) {
+                    reset.add(new Object[]{candidate.accountId()});
+                }
+            }
+            if (!verified.isEmpty()) {
+                jdbcTemplate.batchUpdate(MERGE_SQL, verified);
+            }
+            if (!reset.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_SQL, reset);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("台帳の照合のチャンク（口座ID {}〜{}）に失敗しました: {}", fromId, toId, e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * 1口座を照合する。取引を読む間に口座が変わったら読み直し、MAX_ATTEMPTS回続いたらnull（次回照合する）。
+     */
+    private Scan reconcileAccount(Run run, Candidate candidate) {
+        Snapshot before = candidate.snapshot();
+        for (int attempt = 1; ; attempt++) {
+            Scan scan = new Scan(run, candidate, before);
+            scan.read();
+            Snapshot after = snapshot(candidate.accountId());
+            boolean stable = before.equals(after);
+            if (stable && (scan.found.isEmpty() || attempt >= MAX_ATTEMPTS)) {
+                return scan;
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                return null;
+            }
+            if (stable) {
+                // パイプラインモードで、控えがまだ取引表に書き出されていなかった
+                ledgerOutbox.flush();
+            }
+            before = after;
+        }
+    }
+    
+    private Snapshot snapshot(long accountId) {
+        return jdbcTemplate.queryForObject(SNAPSHOT_SQL, (rs, rowNum) -> snapshot(rs, 1), accountId);
+    }
+    
+    private static Snapshot snapshot(ResultSet rs, int column) throws SQLException {
+        Money balance = Money.of(rs.getBigDecimal(column));
+        Money buckets = Money.of(rs.getBigDecimal(column + 3));
+        return new Snapshot(balance.plus(buckets), rs.getLong(column + 1), rs.getInt(column + 2));
+    }
+    
+    private static Candidate candidate(ResultSet rs) throws SQLException {
+        Checkpoint checkpoint = null;
+        if (rs.getObject(9) != null) {
+            checkpoint = new Checkpoint(rs.getObject(7, LocalDateTime.class), (Long) rs.getObject(8), rs.getLong(9),
+                Money.of(rs.getBigDecimal(10)).minorUnits(), Money.of(rs.getBigDecimal(11)).minorUnits(), rs.getLong(12));
+        }
+        return new Candidate(rs.getLong(1), rs.getString(2), snapshot(rs, 3), checkpoint);
+    }
+    
+    // 口座の残高（バケットを含む）・バージョン・バケット数
+    private record Snapshot(Money balance, long version, int buckets) {
+    }
+    
+    // 保存済みの照合の状態
+    private record Checkpoint(LocalDateTime createdAt, Long transactionId, long count, long sum, long balanceAfter,
+                              long checksum) {
+    }
+    
+    private record Candidate(long accountId, String accountNumber, Snapshot snapshot, Checkpoint checkpoint) {
+    }
+    
+    /**
+     * 読んだ位置と、そこまでの件数・合計・取引後残高・チェックサム。
+     */
+    private static final class Cursor {
+        private LocalDateTime createdAt;
+        private Long transactionId;
+        private long count;
+        private long sum;
+        private long balanceAfter;
+        private long checksum;
+        
+        Cursor() {
+        }
+        
+        Cursor(Checkpoint checkpoint) {
+            createdAt = checkpoint.createdAt();
+            transactionId = checkpoint.transactionId();
+            count = checkpoint.count();
+            sum = checkpoint.sum();
+            balanceAfter = checkpoint.balanceAfter();
+            checksum = checkpoint.checksum();
+        }
+        
+        void copyFrom(Cursor other) {
+            createdAt = other.createdAt;
+            transactionId = other.transactionId;
+            count = other.count;
+            sum = other.sum;
+            balanceAfter = other.balanceAfter;
+            checksum = other.checksum;
+        }
+    }
+    
+    /**
+     * 1口座の取引を、差分モードではウォーターマークの後から、全件モードでは最初からpage-size件ずつ読んで照合する。
+     */
+    private final class Scan implements RowCallbackHandler {
+        private final Run run;
+        private final Candidate candidate;
+        private final Snapshot snapshot;
+        private final Checkpoint stored;
+        private final Cursor cursor;
+        // ウォーターマークとして保存する位置（作成からSETTLE_MARGIN以上たった最後の取引）
+        private final Cursor settled = new Cursor();
+        private final boolean checkChain;
+        private final List<ReconciliationDiscrepancy> found = new ArrayList<>(1);
+        private boolean storedReached;
+        private boolean chainBroken;
+        private int pageRows;
+        private long rows;
+        
+        Scan(Run run, Candidate candidate, Snapshot snapshot) {
+            this.run = run;
+            this.candidate = candidate;
+            this.snapshot = snapshot;
+            this.stored = candidate.checkpoint();
+            boolean resume = run.mode == ReconciliationMode.INCREMENTAL && stored != null;
+            this.cursor = resume ? new Cursor(stored) : new Cursor();
+            this.settled.copyFrom(cursor);
+            this.checkChain = snapshot.buckets() == 0;
+            // 全件モードで比べる相手（保存済みのウォーターマーク）がなければ比べない
+            this.storedReached = resume || stored == null || stored.transactionId() == null;
+        }
+        
+        void read() {
+            do {
+                pageRows = 0;
+                if (cursor.transactionId == null) {
+                    jdbcTemplate.query(FIRST_PAGE_SQL, this, candidate.accountId(), pageSize);
+                } else {
+                    jdbcTemplate.query(NEXT_PAGE_SQL, this, candidate.accountId(),
+                        cursor.createdAt, cursor.createdAt, cursor.transactionId, pageSize);
+                }
+            } while (pageRows == pageSize);
+            
+            if (!storedReached) {
+                found.add(discrepancy(ReconciliationDiscrepancy.Kind.HISTORY_CHANGED, stored.transactionId(),
+                    stored.sum(), cursor.sum));
+            }
+            if (cursor.sum != snapshot.balance().minorUnits()) {
+                found.add(new ReconciliationDiscrepancy(candidate.accountNumber(),
+                    ReconciliationDiscrepancy.Kind.BALANCE_MISMATCH, null, Money.ofMinor(cursor.sum), snapshot.balance()));
+            }
+        }
+        
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            pageRows++;
+            rows++;
+            long transactionId = rs.getLong(1);
+            String type = rs.getString(2);
+            long amount = Money.of(rs.getBigDecimal(3)).minorUnits();
+            long balanceAfter = Money.of(rs.getBigDecimal(4)).minorUnits();
+            LocalDateTime createdAt = rs.getObject(5, LocalDateTime.class);
+            
+            long signed = signedAmount(type, amount);
+            long expected = cursor.balanceAfter + signed;
+            if (checkChain && !chainBroken && balanceAfter != expected) {
+                chainBroken = true;
+                found.add(discrepancy(ReconciliationDiscrepancy.Kind.BROKEN_CHAIN, transactionId, expected, balanceAfter));
+            }
+            cursor.createdAt = createdAt;
+            cursor.transactionId = transactionId;
+            cursor.count++;
+            cursor.sum += signed;
+            cursor.balanceAfter = balanceAfter;
+            cursor.checksum = fold(cursor.checksum, transactionId, type, amount, balanceAfter);
+            if (createdAt.isBefore(run.settledBefore)) {
+                settled.copyFrom(cursor);
+            }
+            if (!storedReached && transactionId == stored.transactionId()) {
+                storedReached = true;
+                if (cursor.count != stored.count() || cursor.sum != stored.sum() || cursor.checksum != stored.checksum()) {
+                    found.add(discrepancy(ReconciliationDiscrepancy.Kind.HISTORY_CHANGED, transactionId,
+                        stored.sum(), cursor.sum));
+                }
+            }
+        }
+        
+        private ReconciliationDiscrepancy discrepancy(ReconciliationDiscrepancy.Kind kind, Long transactionId,
+                                                      long expected, long actual) {
+            return new ReconciliationDiscrepancy(candidate.accountNumber(), kind, transactionId,
+                Money.ofMinor(expected), Money.ofMinor(actual));
+        }
+    }
+    
+    /**
+     * 1回の実行の対象と進捗。チャンクは並列に終わるので、件数はLongAdderで数える。
+     */
+    private final class Run {
+        private final ReconciliationMode mode;
+        private final AccountChunkExecutor.Progress progress;
+        private final LocalDateTime settledBefore = LocalDateTime.now().minus(SETTLE_MARGIN);
+        private final LongAdder accounts = new LongAdder();
+        private final LongAdder transactions = new LongAdder();
+        private final LongAdder skippedAccounts = new LongAdder();
+        private final LongAdder discrepancyCount = new LongAdder();
+        private final Queue<ReconciliationDiscrepancy> reported = new ConcurrentLinkedQueue<>();
+        
+        Run(ReconciliationMode mode, AccountChunkExecutor.Progress progress) {
+            this.mode = mode;
+            this.progress = progress;
+        }
+        
+        void report(ReconciliationDiscrepancy discrepancy) {
+            discrepancyCount.increment();
+            discrepancies.increment();
+            if (discrepancyCount.sum() <= MAX_REPORTED) {
+                reported.add(discrepancy);
+            }
+            log.warn("台帳の不一致: {}", discrepancy);
+        }
+        
+        ReconciliationResult result() {
+            long elapsedNanos = progress.elapsedNanos();
+            long read = transactions.sum();
+            return new ReconciliationResult(mode, progress.inProgress(), progress.chunks(), progress.completedChunks(),
+                progress.failedChunks(), accounts.sum(), read, skippedAccounts.sum(), discrepancyCount.sum(), List.copyOf(reported),
+                elapsedNanos / 1_000_000, elapsedNanos == 0 ? 0 : read * 1_000_000_000.0 / elapsedNanos);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.simplebank.service;
+
+import org.springframework.stereotype.Component;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 残高更新とスナップショット取得の排他。
+ * 通常の更新は共有モードで並行に通し、スナップショット取得時だけ排他モードで全更新を止める。
+ * スナップショットとジャーナルの切り替え位置をずらさないために使う。
+ */
+@Component
+class LedgerWriteGate {
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    <T> T shared(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    <T> T exclusive(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.simplebank.service;
+
+import com.simplebank.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+/**
+ * パスワードのハッシュ化の導入前に作成された口座（DB・ジャーナルに平文が残っている口座）のパスワードを、
+ * 起動時に1回だけハッシュ化した値に置き換える。置き換えは残高更新と同じく口座ロックを取ってコミットし、
+ * ジャーナル（PASSWORD）・読み取りモデル・キャッシュにも反映される。
+ * <p>
+ * Webサーバーの起動より前に終わるので、PasswordHasherは平文との照合を行わない。
+ * ハッシュ化はPasswordHasherのプールで1件ずつ行う（対象は移行前の口座だけで、2回目以降の起動では0件になる）。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LegacyPasswordMigration implements SmartLifecycle {
+    
+    private final AccountRepository accountRepository;
+    private final AccountService accountService;
+    private final PasswordHasher passwordHasher;
+    private volatile boolean running;
+    
+    /**
+     * ジャーナルの再生（フェーズ0）と、読み取りモデル・残高バケットの一覧の読み込み（フェーズ1）の後に実行する。
+     */
+    @Override
+    public int getPhase() {
+        return 2;
+    }
+    
+    @Override
+    public void start() {
+        List<Object[]> legacy = accountRepository.findLegacyPasswords();
+        int upgraded = 0;
+        for (Object[] row : legacy) {
+            String accountNumber = (String) row[0];
+            String password = (String) row[1];
+            // ハッシュ化は時間がかかるため、ロックを取る前に済ませる
+            if (accountService.upgradeLegacyPassword(accountNumber, password, passwordHasher.hash(password))) {
+                upgraded++;
+            }
+        }
+        if (!legacy.isEmpty()) {
+            log.info("平文のパスワードをハッシュ化しました: {}件", upgraded);
+        }
+        running = true;
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
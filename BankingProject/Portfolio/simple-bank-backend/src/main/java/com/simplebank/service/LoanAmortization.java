@@ -0,0 +1,67 @@
+package com.simplebank.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * 元利均等返済の計算（固定小数点）。
+ * 金額は円単位のlong、年利は1万分の1%単位の整数（1.5% → 15000）で扱い、
+ * 毎月の利息は 残高 × 年利 / 12 を円未満切り捨てで求める。浮動小数点は使わない。
+ * 毎月の返済額だけはローンごとに1回BigDecimal（34桁）で求めて円未満を切り上げ、最終回で端数を調整する。
+ * 返済ループ内ではオブジェクトを割り当てない。
+ */
+final class LoanAmortization {
+    
+    static final int RATE_SCALE = 4;
+    // 年利（1万分の1%単位）→ 月利の分母: 12か月 × 100% × 10^4
+    private static final long RATE_DENOMINATOR = 12L * 100 * 10_000;
+    
+    private LoanAmortization() {
+    }
+    
+    static long monthlyPayment(long principal, long rateUnits, int months) {
+        if (rateUnits == 0) {
+            return ceilDiv(principal, months);
+        }
+        MathContext mc = MathContext.DECIMAL128;
+        BigDecimal rate = BigDecimal.valueOf(rateUnits).divide(BigDecimal.valueOf(RATE_DENOMINATOR), mc);
+        BigDecimal growth = BigDecimal.ONE.add(rate).pow(months, mc);
+        BigDecimal payment = BigDecimal.valueOf(principal).multiply(rate, mc).multiply(growth, mc)
+            .divide(growth.subtract(BigDecimal.ONE), mc);
+        return payment.setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+    
+    /**
+     * 返済スケジュールを計算し、sinkがあれば1回ごとに渡す。
+     */
+    static LoanQuote amortize(long principal, BigDecimal annualRate, long rateUnits, int months,
+                              LoanScheduleSink sink) throws IOException {
+        long payment = monthlyPayment(principal, rateUnits, months);
+        long balance = principal;
+        long totalPayment = 0;
+        long totalInterest = 0;
+        long lastPayment = 0;
+        int month = 0;
+        while (balance > 0 && month < months) {
+            month++;
+            long interest = Math.multiplyExact(balance, rateUnits) / RATE_DENOMINATOR;
+            long due = balance + interest;
+            long paid = month == months || due < payment ? due : payment;
+            long principalPaid = paid - interest;
+            balance -= principalPaid;
+            totalPayment += paid;
+            totalInterest += interest;
+            lastPayment = paid;
+            if (sink != null) {
+                sink.row(month, paid, principalPaid, interest, balance);
+            }
+        }
+        return new LoanQuote(principal, annualRate, months, payment, lastPayment, totalPayment, totalInterest);
+    }
+    
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+}
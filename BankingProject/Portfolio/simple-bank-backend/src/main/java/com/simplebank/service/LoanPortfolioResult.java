@@ -0,0 +1,10 @@
+package com.simplebank.service;
+
+import java.util.List;
+
+/**
+ * 複数ローンの一括試算結果。quotesは要求と同じ順序。loansPerSecondは計算部分のスループット。
+ */
+public record LoanPortfolioResult(int loans, long totalPrincipal, long totalPayment, long totalInterest,
+                                  long elapsedMillis, double loansPerSecond, List<LoanQuote> quotes) {
+}
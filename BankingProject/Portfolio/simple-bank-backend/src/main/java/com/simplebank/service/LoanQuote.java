@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+import java.math.BigDecimal;
+
+/**
+ * ローン1件の試算結果（円単位）。
+ * monthlyPaymentは毎月の返済額、finalPaymentは端数を調整した最終回の返済額。
+ */
+public record LoanQuote(long principal, BigDecimal annualRate, int months, long monthlyPayment, long finalPayment,
+                        long totalPayment, long totalInterest) {
+}
@@ -0,0 +1,12 @@
+package com.simplebank.service;
+
+import java.io.IOException;
+
+/**
+ * 返済スケジュールを1回分ずつ受け取る。行オブジェクトを作らずにプリミティブのまま渡す。
+ */
+@FunctionalInterface
+interface LoanScheduleSink {
+    
+    void row(int month, long payment, long principal, long interest, long balance) throws IOException;
+}
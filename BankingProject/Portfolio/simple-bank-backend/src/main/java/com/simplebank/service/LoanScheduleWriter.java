@@ -0,0 +1,60 @@
+package com.simplebank.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 返済スケジュールをNDJSON（1行1回分）で書き出す。
+ * 1行分のバイト列を使い回し、数値も直接ASCIIに変換するので、行ごとの割り当てがない。
+ */
+class LoanScheduleWriter implements LoanScheduleSink {
+    
+    private static final byte[] MONTH = "{\"month\":".getBytes();
+    private static final byte[] PAYMENT = ",\"payment\":".getBytes();
+    private static final byte[] PRINCIPAL = ",\"principal\":".getBytes();
+    private static final byte[] INTEREST = ",\"interest\":".getBytes();
+    private static final byte[] BALANCE = ",\"balance\":".getBytes();
+    
+    private final OutputStream out;
+    private final byte[] line = new byte[160];
+    private final byte[] digits = new byte[20];
+    private int length;
+    
+    LoanScheduleWriter(OutputStream out) {
+        this.out = out;
+    }
+    
+    @Override
+    public void row(int month, long payment, long principal, long interest, long balance) throws IOException {
+        length = 0;
+        append(MONTH);
+        append(month);
+        append(PAYMENT);
+        append(payment);
+        append(PRINCIPAL);
+        append(principal);
+        append(INTEREST);
+        append(interest);
+        append(BALANCE);
+        append(balance);
+        line[length++] = '}';
+        line[length++] = '\n';
+        out.write(line, 0, length);
+    }
+    
+    private void append(byte[] bytes) {
+        System.arraycopy(bytes, 0, line, length, bytes.length);
+        length += bytes.length;
+    }
+    
+    private void append(long value) {
+        // 金額は0以上なので符号は扱わない
+        int position = digits.length;
+        do {
+            digits[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        System.arraycopy(digits, position, line, length, digits.length - position);
+        length += digits.length - position;
+    }
+}
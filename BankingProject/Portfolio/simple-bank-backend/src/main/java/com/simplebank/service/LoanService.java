@@ -0,0 +1,119 @@
+package com.simplebank.service;
+
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * ローン試算（元利均等返済）。計算はLoanAmortizationの固定小数点演算で行う。
+ * 一括試算は専用のForkJoinPoolでローンごとに並列に計算する（Webリクエストのスレッドや共通プールを占有しない）。
+ * 返済スケジュールは保持せず、計算しながらNDJSONで書き出す。
+ */
+@Service
+@Observed(name = "ledger.service")
+public class LoanService {
+    
+    static final long MAX_PRINCIPAL = 100_000_000_000L;
+    static final int MAX_MONTHS = 600;
+    static final BigDecimal MAX_RATE = new BigDecimal("100");
+    static final int MAX_BATCH_SIZE = 100_000;
+    
+    private final ForkJoinPool pool;
+    
+    public LoanService(@Value("${simplebank.loan.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    public LoanQuote quote(LoanTerms terms) {
+        long rateUnits = validate(terms);
+        try {
+            return LoanAmortization.amortize(terms.principal(), terms.annualRate(), rateUnits, terms.months(), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * 複数ローンをまとめて試算する。rateShift（%ポイント、省略可）を全ローンの金利に加算して感応度を見る用途にも使う。
+     */
+    public LoanPortfolioResult quoteAll(List<LoanTerms> loans, BigDecimal rateShift) {
+        if (loans.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("一度に試算できるのは" + MAX_BATCH_SIZE + "件までです");
+        }
+        LoanTerms[] shifted = new LoanTerms[loans.size()];
+        for (int i = 0; i < shifted.length; i++) {
+            LoanTerms terms = loans.get(i);
+            shifted[i] = rateShift == null || terms.annualRate() == null ? terms
+                : new LoanTerms(terms.principal(), terms.annualRate().add(rateShift), terms.months());
+            try {
+                validate(shifted[i]);
+            } catch (RuntimeException e) {
+                throw new RuntimeException((i + 1) + "件目: " + e.getMessage());
+            }
+        }
+        
+        long start = System.nanoTime();
+        LoanQuote[] quotes = new LoanQuote[shifted.length];
+        pool.submit(() -> IntStream.range(0, shifted.length).parallel()
+            .forEach(i -> quotes[i] = quote(shifted[i]))).join();
+        long elapsedNanos = System.nanoTime() - start;
+        
+        long totalPrincipal = 0;
+        long totalPayment = 0;
+        long totalInterest = 0;
+        for (LoanQuote quote : quotes) {
+            totalPrincipal += quote.principal();
+            totalPayment += quote.totalPayment();
+            totalInterest += quote.totalInterest();
+        }
+        double loansPerSecond = elapsedNanos == 0 ? 0 : quotes.length * 1_000_000_000.0 / elapsedNanos;
+        return new LoanPortfolioResult(quotes.length, totalPrincipal, totalPayment, totalInterest,
+            elapsedNanos / 1_000_000, loansPerSecond, Arrays.asList(quotes));
+    }
+    
+    /**
+     * 返済スケジュール全体をNDJSON（1行1回分、month/payment/principal/interest/balance）でoutに書き出す。
+     */
+    public void writeSchedule(LoanTerms terms, OutputStream out) throws IOException {
+        long rateUnits = validate(terms);
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 8192);
+        LoanAmortization.amortize(terms.principal(), terms.annualRate(), rateUnits, terms.months(),
+            new LoanScheduleWriter(buffered));
+        buffered.flush();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+    
+    /**
+     * 条件を検証し、年利を1万分の1%単位の整数で返す。
+     */
+    private static long validate(LoanTerms terms) {
+        if (terms.principal() <= 0 || terms.principal() > MAX_PRINCIPAL) {
+            throw new RuntimeException("借入額は1円以上" + MAX_PRINCIPAL + "円以下で指定してください");
+        }
+        if (terms.months() <= 0 || terms.months() > MAX_MONTHS) {
+            throw new RuntimeException("返済回数は1回以上" + MAX_MONTHS + "回以下で指定してください");
+        }
+        BigDecimal rate = terms.annualRate();
+        if (rate == null || rate.signum() < 0 || rate.compareTo(MAX_RATE) > 0) {
+            throw new RuntimeException("金利は0%以上100%以下で指定してください");
+        }
+        if (rate.stripTrailingZeros().scale() > LoanAmortization.RATE_SCALE) {
+            throw new RuntimeException("金利は小数点以下" + LoanAmortization.RATE_SCALE + "桁までで指定してください");
+        }
+        return rate.movePointRight(LoanAmortization.RATE_SCALE).longValueExact();
+    }
+}
@@ -0,0 +1,9 @@
+package com.simplebank.service;
+
+import java.math.BigDecimal;
+
+/**
+ * 元利均等返済のローン条件。principalは借入額（円）、annualRateは年利（%、小数点以下4桁まで）、monthsは返済回数。
+ */
+public record LoanTerms(long principal, BigDecimal annualRate, int months) {
+}
@@ -0,0 +1,7 @@
+package com.simplebank.service;
+
+/**
+ * 口座ロックの統計スナップショット。
+ */
+public record LockStats(int stripes, long acquisitions, long timeouts, double averageWaitMicros, double maxWaitMicros) {
+}
@@ -0,0 +1,89 @@
+package com.simplebank.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * OPTIMISTICモードで、バージョン競合したトランザクションを再実行する。
+ * 待ち時間は指数バックオフの上限までの一様乱数（フルジッター）で、
+ * 複数ノードが同じ口座に同時に再試行して再び衝突するのを避ける。
+ */
+@Component
+public class OptimisticRetryExecutor implements MeterBinder {
+    
+    private final ConcurrencyMode mode;
+    private final int maxAttempts;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    
+    public OptimisticRetryExecutor(@Value("${simplebank.concurrency.mode:LOCK}") ConcurrencyMode mode,
+                                   @Value("${simplebank.concurrency.max-attempts:5}") int maxAttempts,
+                                   @Value("${simplebank.concurrency.backoff-base-ms:5}") long backoffBaseMillis,
+                                   @Value("${simplebank.concurrency.backoff-max-ms:200}") long backoffMaxMillis) {
+        this.mode = mode;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+    }
+    
+    public boolean isEnabled() {
+        return mode == ConcurrencyMode.OPTIMISTIC;
+    }
+    
+    /**
+     * attemptを実行し、バージョン競合ならバックオフして最大maxAttempts回まで再実行する。
+     * attemptは毎回新しいトランザクションで口座を読み直すこと。
+     */
+    public <T> T execute(Supplier<T> attempt) {
+        executions.increment();
+        for (int i = 1; ; i++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                if (i >= maxAttempts) {
+                    exhausted.increment();
+                    throw new RuntimeException("他の処理と競合しました。しばらくしてから再度お試しください", e);
+                }
+                retries.increment();
+                backoff(i);
+            }
+        }
+    }
+    
+    public RetryStats stats() {
+        return new RetryStats(mode, executions.sum(), conflicts.sum(), retries.sum(), exhausted.sum());
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ledger.optimistic.conflicts", conflicts, LongAdder::sum)
+            .description("楽観ロックの競合回数").register(registry);
+        FunctionCounter.builder("ledger.optimistic.retries", retries, LongAdder::sum)
+            .description("楽観ロック競合による再試行回数").register(registry);
+        FunctionCounter.builder("ledger.optimistic.exhausted", exhausted, LongAdder::sum)
+            .description("再試行上限に達して失敗した回数").register(registry);
+    }
+    
+    private void backoff(int attempt) {
+        long cap = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("再試行の待機が中断されました");
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.simplebank.service;
+
+/**
+ * パイプラインモードの書き出しの統計スナップショット。
+ * pendingは取引表への書き出しを待っている取引数、transactionsPerBatchは書き出し1回あたりの平均取引数、
+ * readFlushesは取引履歴を読む前に書き出しを待った回数。
+ */
+public record OutboxStats(boolean enabled, long pending, long written, long batches, double transactionsPerBatch,
+                          long readFlushes) {
+}
@@ -0,0 +1,263 @@
+package com.simplebank.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * パスワードのハッシュ化と照合（PBKDF2-HMAC-SHA256）。
+ * 1回数十〜数百msかかるCPU処理のため、リクエストスレッドでは実行せず専用の固定サイズのプールで行う。
+ * 待ち行列が上限に達したとき、または待ち時間が上限を超えたときはAuthenticationBusyExceptionで即座に断る
+ * （ログインが集中してもCPUを使い切らず、他のAPIの処理を妨げない）。
+ * <p>
+ * 一括登録のまとめたハッシュ化（hashAll）は同時にプールへ入れる件数を制限し、ログインの照合の分を空けておく。
+ * <p>
+ * 形式: pbkdf2-sha256$反復回数$ソルト$ハッシュ（Base64）。この形式でない値とは一致しない
+ * （ハッシュ化の導入前の平文は、起動時にLegacyPasswordMigrationがハッシュ化した値に置き換える）。
+ */
+@Component
+public class PasswordHasher implements MeterBinder {
+    
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    // 保存されている値の反復回数として受け付ける範囲の下限（上限は設定値と既定値の大きい方）
+    static final int MIN_ITERATIONS = 1_000;
+    
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int MIN_SALT_BYTES = 8;
+    private static final int MAX_SALT_BYTES = 64;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final long BULK_RETRY_MILLIS = 10;
+    
+    private final int iterations;
+    private final int maxIterations;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore bulkPermits;
+    private final LongAdder rejections = new LongAdder();
+    
+    public PasswordHasher(@Value("${simplebank.auth.hash-iterations:" + DEFAULT_ITERATIONS + "}") int iterations,
+                          @Value("${simplebank.auth.threads:0}") int threads,
+                          @Value("${simplebank.auth.queue-capacity:64}") int queueCapacity,
+                          @Value("${simplebank.auth.timeout-ms:3000}") long timeoutMillis,
+                          @Value("${simplebank.auth.bulk-threads:0}") int bulkThreads) {
+        this.iterations = iterations;
+        this.maxIterations = Math.max(iterations, DEFAULT_ITERATIONS);
+        this.timeoutMillis = timeoutMillis;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // 既定ではプールのスレッドを1つ照合用に残す（1スレッドなら、照合が待つのは一括登録の1件分まで）
+        this.bulkPermits = new Semaphore(bulkThreads > 0 ? bulkThreads : Math.max(1, poolSize - 1));
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "auth-hash-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    /**
+     * 新しいソルトでハッシュ化する（口座開設時）。
+     */
+    public String hash(String rawPassword) {
+        return run(() -> encode(rawPassword, iterations));
+    }
+    
+    /**
+     * まとめてハッシュ化する（一括登録用）。プールに同時に入れるのはbulk-threads件までで、残りのスレッドと
+     * 待ち行列はログインの照合に使われる。照合で待ち行列が埋まっているときは空くまで待ち、待ち時間の上限を
+     * 超えた要素はAuthenticationBusyExceptionで失敗する。結果はrawPasswordsと同じ順序。
+     */
+    public List<Future<String>> hashAll(List<String> rawPasswords) {
+        List<Future<String>> results = new ArrayList<>(rawPasswords.size());
+        for (String rawPassword : rawPasswords) {
+            results.add(submitBulk(() -> encode(rawPassword, iterations)));
+        }
+        return results;
+    }
+    
+    /**
+     * 移行元でハッシュ化済みの値を検査する。形式が正しくない、または反復回数が範囲外（ログインのたびに
+     * 大きな反復回数でCPUを使わせることができる）なら例外。
+     */
+    public void checkEncoded(String stored) {
+        String[] parts = stored.substring(PREFIX.length()).split("\\$", -1);
+        if (parts.length != 3) {
+            throw new RuntimeException("ハッシュ化済みパスワードの形式が正しくありません");
+        }
+        int storedIterations;
+        try {
+            storedIterations = Integer.parseInt(parts[0]);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("ハッシュ化済みパスワードの反復回数が正しくありません");
+        }
+        if (storedIterations < MIN_ITERATIONS || storedIterations > maxIterations) {
+            throw new RuntimeException("ハッシュ化済みパスワードの反復回数は" + MIN_ITERATIONS + "以上" + maxIterations
+                + "以下にしてください");
+        }
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            int saltBytes = base64.decode(parts[1]).length;
+            if (saltBytes < MIN_SALT_BYTES || saltBytes > MAX_SALT_BYTES || base64.decode(parts[2]).length != HASH_BITS / 8) {
+                throw new RuntimeException("ハッシュ化済みパスワードのソルトまたはハッシュの長さが正しくありません");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("ハッシュ化済みパスワードのBase64が正しくありません");
+        }
+    }
+    
+    /**
+     * 保存されている値と照合する。
+     */
+    public boolean matches(String rawPassword, String stored) {
+        if (rawPassword == null || stored == null) {
+            return false;
+        }
+        if (!isEncoded(stored)) {
+            return false;
+        }
+        return run(() -> verify(rawPassword, stored, maxIterations));
+    }
+    
+    public static boolean isEncoded(String value) {
+        return value.startsWith(PREFIX);
+    }
+    
+    /**
+     * 呼び出したスレッドでハッシュ化する（プールを通さない。計測用データの投入などで使う）。
+     */
+    public static String encode(String rawPassword, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+            + base64.encodeToString(derive(rawPassword, salt, iterations));
+    }
+    
+    private static boolean verify(String rawPassword, String stored, int maxIterations) {
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        int storedIterations = Integer.parseInt(parts[0]);
+        if (storedIterations < MIN_ITERATIONS || storedIterations > maxIterations) {
+            return false;
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[2]);
+        byte[] actual = derive(rawPassword, base64.decode(parts[1]), storedIterations);
+        return MessageDigest.isEqual(expected, actual);
+    }
+    
+    private static byte[] derive(String rawPassword, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+    
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new AuthenticationBusyException();
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejections.increment();
+            throw new AuthenticationBusyException();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationBusyException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private <T> Future<T> submitBulk(Callable<T> task) {
+        try {
+            bulkPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new AuthenticationBusyException());
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            try {
+                return executor.submit(() -> {
+                    try {
+                        return task.call();
+                    } finally {
+                        bulkPermits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 照合で待ち行列が埋まっている。照合を優先し、空くまで待つ
+                if (System.nanoTime() - deadline > 0) {
+                    bulkPermits.release();
+                    rejections.increment();
+                    return CompletableFuture.failedFuture(new AuthenticationBusyException());
+                }
+                try {
+                    Thread.sleep(BULK_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    bulkPermits.release();
+                    Thread.currentThread().interrupt();
+                    return CompletableFuture.failedFuture(new AuthenticationBusyException());
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "auth.hash", List.of()).bindTo(registry);
+        FunctionCounter.builder("auth.hash.rejections", rejections, LongAdder::sum)
+            .description("待ち行列の上限・待ち時間の上限で断ったハッシュ処理の数").register(registry);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,10 @@
+package com.simplebank.service;
+
+/**
+ * 読み取りモデルの統計スナップショット。
+ * lagMillisは反映を待っている最も古いコミット通知の経過時間、pendingはその件数。
+ * readsは読み取りモデルから返した読み取り数、fallbacksは反映待ち・未掲載などでDBから読んだ数。
+ */
+public record ReadModelStats(boolean enabled, long accounts, long pending, double lagMillis, long applied,
+                             long reads, long fallbacks, long rebuilds, long lastRebuildMillis) {
+}
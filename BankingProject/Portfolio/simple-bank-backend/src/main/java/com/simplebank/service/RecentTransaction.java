@@ -0,0 +1,33 @@
+package com.simplebank.service;
+
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.repository.TransactionView;
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * 読み取りモデルが口座ごとに持つ直近の取引（不変）。取引履歴のAPIにはDBのプロジェクションと同じ形で返す。
+ */
+@Value
+class RecentTransaction implements TransactionView {
+    Long id;
+    Transaction.TransactionType type;
+    Money amount;
+    Money balanceAfter;
+    LocalDateTime createdAt;
+    String description;
+    
+    static RecentTransaction of(Transaction transaction) {
+        return new RecentTransaction(transaction.getId(), transaction.getType(), transaction.getAmount(),
+            transaction.getBalanceAfter(), transaction.getCreatedAt(), transaction.getDescription());
+    }
+    
+    /**
+     * 取引履歴の並び（新しい順: 作成日時の降順、同時刻は取引IDの降順）でthisがotherより後ろならtrue。
+     */
+    boolean isOlderThan(LocalDateTime otherCreatedAt, Long otherId) {
+        int compared = createdAt.compareTo(otherCreatedAt);
+        return compared < 0 || (compared == 0 && id < otherId);
+    }
+}
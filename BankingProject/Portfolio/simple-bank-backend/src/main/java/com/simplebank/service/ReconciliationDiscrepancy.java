@@ -0,0 +1,19 @@
+package com.simplebank.service;
+
+import com.simplebank.money.Money;
+
+/**
+ * 照合で見つかった不一致。
+ * BALANCE_MISMATCH: 口座の残高（actual）が取引の合計（expected）と一致しない
+ * BROKEN_CHAIN: 取引（transactionId）の取引後残高（actual）が、直前の取引後残高±金額（expected）と一致しない
+ * HISTORY_CHANGED: 照合済みの取引が書き換えられた・削除された（transactionIdは前回のウォーターマーク、金額は照合済みの範囲の合計）
+ */
+public record ReconciliationDiscrepancy(String accountNumber, Kind kind, Long transactionId,
+                                        Money expected, Money actual) {
+
+    public enum Kind {
+        BALANCE_MISMATCH,
+        BROKEN_CHAIN,
+        HISTORY_CHANGED
+    }
+}
@@ -0,0 +1,12 @@
+package com.simplebank.service;
+
+/**
+ * 台帳の照合の方法。
+ * INCREMENTAL: 前回から変わった口座（バージョンが変わった・残高を分散している・照合の状態がない・前回不一致だった）だけを、
+ * ウォーターマークより後の取引だけ読んで照合する
+ * FULL: 全口座の全取引を読み直して照合の状態を作り直す。保存済みのチェックサムと一致しなければ、照合済みの履歴が書き換えられている
+ */
+public enum ReconciliationMode {
+    INCREMENTAL,
+    FULL
+}
@@ -0,0 +1,14 @@
+package com.simplebank.service;
+
+import java.util.List;
+
+/**
+ * 台帳の照合の進捗・結果。runningの間は途中経過。
+ * accountsは照合した口座数、transactionsは読んだ取引数。skippedAccountsは照合中に取引が続いて読み終えられなかった口座数で、次回照合する。
+ * discrepanciesは見つかった不一致（先頭から最大1,000件）で、件数はdiscrepancyCount。不一致のあった口座は解消するまで毎回照合する。
+ */
+public record ReconciliationResult(ReconciliationMode mode, boolean running, long chunks, long completedChunks,
+                                   long failedChunks, long accounts, long transactions, long skippedAccounts,
+                                   long discrepancyCount, List<ReconciliationDiscrepancy> discrepancies,
+                                   long elapsedMillis, double transactionsPerSecond) {
+}
@@ -0,0 +1,8 @@
+package com.simplebank.service;
+
+/**
+ * 楽観ロック再試行の統計スナップショット。
+ * conflictsは検出した競合の回数、exhaustedは再試行上限に達して失敗した回数。
+ */
+public record RetryStats(ConcurrencyMode mode, long executions, long conflicts, long retries, long exhausted) {
+}
@@ -0,0 +1,94 @@
+package com.simplebank.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * ログイン後のセッショントークン（HMAC-SHA256で署名）。
+ * 形式: Base64(口座番号).有効期限（エポック秒）.Base64(署名)。
+ * 検証は署名と有効期限だけで行い、ハッシュ照合やDB参照はしない。
+ * 複数インスタンスで共有するにはsimplebank.auth.token-secretに同じ値を設定する（未設定なら起動ごとに生成）。
+ */
+@Slf4j
+@Component
+public class SessionTokens {
+    
+    private static final String ALGORITHM = "HmacSHA256";
+    
+    private final Mac prototype;
+    private final Duration ttl;
+    
+    public SessionTokens(@Value("${simplebank.auth.token-secret:}") String secret,
+                         @Value("${simplebank.auth.token-ttl-minutes:30}") long ttlMinutes) {
+        byte[] key;
+        if (secret.isBlank()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            log.warn("simplebank.auth.token-secretが未設定のため署名鍵を生成しました（再起動で発行済みのトークンは無効になります）");
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            this.prototype = Mac.getInstance(ALGORITHM);
+            this.prototype.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+    
+    public String issue(String accountNumber) {
+        long expiresAt = Instant.now().plus(ttl).getEpochSecond();
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(accountNumber.getBytes(StandardCharsets.UTF_8))
+            + "." + expiresAt;
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+    }
+    
+    /**
+     * 有効なトークンなら口座番号を、署名が合わない・期限切れ・形式が不正ならnullを返す。
+     */
+    public String verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int signatureStart = token.lastIndexOf('.');
+        int expiresStart = signatureStart < 0 ? -1 : token.lastIndexOf('.', signatureStart - 1);
+        if (expiresStart <= 0) {
+            return null;
+        }
+        String payload = token.substring(0, signatureStart);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(signatureStart + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return null;
+            }
+            long expiresAt = Long.parseLong(token.substring(expiresStart + 1, signatureStart));
+            if (Instant.now().getEpochSecond() >= expiresAt) {
+                return null;
+            }
+            return new String(Base64.getUrlDecoder().decode(token.substring(0, expiresStart)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private byte[] sign(String payload) {
+        try {
+            // Macはスレッドセーフでないため、初期化済みのものを複製して使う
+            Mac mac = (Mac) prototype.clone();
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.simplebank.service;
+
+import java.time.LocalDate;
+
+/**
+ * 出力する取引明細（口座と期間。from・toは両端の日を含む）。書き出し前にStatementExportService.prepareで作る。
+ */
+public record StatementExport(Long accountId, String accountNumber, LocalDate from, LocalDate to,
+                              StatementFormat format) {
+    
+    public String filename() {
+        return "statement-" + accountNumber + "-" + from + "-" + to + "." + format.extension();
+    }
+}
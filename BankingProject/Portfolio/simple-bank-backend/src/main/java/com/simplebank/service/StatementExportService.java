@@ -0,0 +1,196 @@
+package com.simplebank.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simplebank.repository.AccountRepository;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 口座の取引明細（期間指定）をCSV/NDJSONで書き出す。
+ * <p>
+ * JPAを通さずにJDBCの前方専用カーソルから1行ずつ読み、読んだ行をそのまま書き出すので、
+ * 永続化コンテキストにもメモリにも行が溜まらず、件数によらずヒープ使用量は一定。
+ * H2の組み込みモードは既定で結果をすべて読み込んでから返すため、この接続でだけ遅延実行（LAZY_QUERY_EXECUTION）に切り替え、
+ * 取引履歴と同じ索引（account_id, created_at, id）の順に読む。fetch-size行ごとに出力をフラッシュして、呼び出し側に逐次届ける。
+ * 書き出している間はDB接続を1本使い続ける。
+ */
+@Service
+@RequiredArgsConstructor
+@Observed(name = "ledger.service")
+public class StatementExportService {
+    
+    static final int DEFAULT_DAYS = 30;
+    
+    private static final String SELECT_SQL =
+        "SELECT id, created_at, type, amount, balance_after, description FROM transactions "
+            + "WHERE account_id = ? AND created_at >= ? AND created_at < ? ORDER BY created_at, id";
+    
+    private final AccountRepository accountRepository;
+    private final LedgerOutbox ledgerOutbox;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${simplebank.statement.fetch-size:1000}")
+    private int fetchSize;
+    
+    /**
+     * 口座と期間を確認する。誤りは書き出しを始める前に例外にする。省略時は直近30日。
+     */
+    public StatementExport prepare(String accountNumber, LocalDate from, LocalDate to, StatementFormat format) {
+        Long accountId = accountRepository.findIdByAccountNumber(accountNumber)
+            .orElseThrow(() -> new RuntimeException("口座が見つかりません"));
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_DAYS - 1) : from;
+        if (start.isAfter(end)) {
+            throw new RuntimeException("開始日は終了日以前を指定してください");
+        }
+        return new StatementExport(accountId, accountNumber, start, end, format == null ? StatementFormat.CSV : format);
+    }
+    
+    /**
+     * 明細を書き出し、書き出した取引数を返す。
+     * パイプラインモードでは、この口座の書き出し待ちの取引を取引表に書き出してから読む。
+     */
+    public long write(StatementExport export, OutputStream out) throws IOException {
+        ledgerOutbox.awaitWritten(export.accountId());
+        RowWriter writer = export.format() == StatementFormat.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out);
+        try {
+            Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> stream(connection, export, writer));
+            writer.flush();
+            return rows == null ? 0 : rows;
+        } catch (UncheckedIOException e) {
+            // クライアントの切断など。カーソルは閉じてある
+            throw e.getCause();
+        }
+    }
+    
+    private long stream(Connection connection, StatementExport export, RowWriter writer) throws SQLException {
+        setLazyQueryExecution(connection, true);
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, export.accountId());
+            statement.setObject(2, export.from().atStartOfDay());
+            statement.setObject(3, export.to().plusDays(1).atStartOfDay());
+            long rows = 0;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    writer.row(rs.getLong(1), rs.getObject(2, LocalDateTime.class), rs.getString(3),
+                        rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getString(6));
+                    if (++rows % fetchSize == 0) {
+                        writer.flush();
+                    }
+                }
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // プールに返す接続なので元に戻す
+            setLazyQueryExecution(connection, false);
+        }
+    }
+    
+    private static void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+    
+    private interface RowWriter {
+        void row(long id, LocalDateTime createdAt, String type, BigDecimal amount, BigDecimal balanceAfter,
+                 String description) throws IOException;
+        
+        void flush() throws IOException;
+    }
+    
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        
+        CsvRowWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writer.write('\uFEFF');
+            writer.write("id,createdAt,type,amount,balanceAfter,description\n");
+        }
+        
+        @Override
+        public void row(long id, LocalDateTime createdAt, String type, BigDecimal amount, BigDecimal balanceAfter,
+                        String description) throws IOException {
+            writer.write(Long.toString(id));
+            writer.write(',');
+            writer.write(createdAt.toString());
+            writer.write(',');
+            writer.write(type);
+            writer.write(',');
+            writer.write(amount.toPlainString());
+            writer.write(',');
+            writer.write(balanceAfter.toPlainString());
+            writer.write(',');
+            if (description != null) {
+                writeQuoted(description);
+            }
+            writer.write('\n');
+        }
+        
+        // 説明文は名義を含むので、常に"..."で囲み、"は""にする
+        private void writeQuoted(String value) throws IOException {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+    
+    private class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            // 行の区切りは自分で書くので、ルート値の間の既定の区切り（空白）は出さない
+            generator.setRootValueSeparator(null);
+        }
+        
+        @Override
+        public void row(long id, LocalDateTime createdAt, String type, BigDecimal amount, BigDecimal balanceAfter,
+                        String description) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", id);
+            generator.writeStringField("createdAt", createdAt.toString());
+            generator.writeStringField("type", type);
+            generator.writeNumberField("amount", amount);
+            generator.writeNumberField("balanceAfter", balanceAfter);
+            generator.writeStringField("description", description);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
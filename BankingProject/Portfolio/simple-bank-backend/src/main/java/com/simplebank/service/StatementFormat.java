@@ -0,0 +1,27 @@
+package com.simplebank.service;
+
+/**
+ * 取引明細の出力形式。
+ * CSV: 1行目が列名（id,createdAt,type,amount,balanceAfter,description）。Excelで開けるようBOM付きUTF-8
+ * NDJSON: 1行に1取引の {"id":...,"createdAt":...,"type":...,"amount":...,"balanceAfter":...,"description":...}
+ */
+public enum StatementFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+    
+    private final String contentType;
+    private final String extension;
+    
+    StatementFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+    
+    public String contentType() {
+        return contentType;
+    }
+    
+    public String extension() {
+        return extension;
+    }
+}
@@ -0,0 +1,11 @@
+package com.simplebank.service;
+
+/**
+ * 出金・振込の回数か金額が上限（VelocityLimiter）を超える。呼び出し側は429で返す。
+ */
+public class VelocityLimitExceededException extends RuntimeException {
+    
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,300 @@
+package com.simplebank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.simplebank.money.Money;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.sql.Timestamp;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 出金・振込の回数と金額の上限（口座ごと、直近1分・直近1日の移動ウィンドウ）。simplebank.velocity.enabled=trueのときだけ有効。
+ * <p>
+ * 上限で拒否するのは画面からの出金・振込（AccountService.withdraw・transfer）だけで、一括処理の出金・振込は拒否せずに数える
+ * （給与振込などの一括処理を途中で止めないため。起動時の作り直しも取引表のすべての出金・振込を数えるので、数え方は同じになる）。
+ * <p>
+ * 口座ごとに、ルールごとのリングバッファ（ウィンドウを一定幅の区間に分け、区間ごとの回数と金額を持つ）をメモリに持ち、
+ * 確認のたびに取引表を読むことはしない。確認と計上は口座ロックを取ったトランザクション内で一度に行い、
+ * トランザクションがロールバックされたら計上を取り消す。ウィンドウの端は区間単位で数えるため、最大で1区間分長く数える
+ * （上限を超えて通すことはない）。最後の出金・振込から1日たった口座のバッファは捨てる。
+ * <p>
+ * バッファの更新はCASではなく口座ごとのモニターで守る。確認と計上は全ルールの区間をまとめて読んでから書く必要があり、
+ * CASにするには毎回バッファ全体を複製することになる。一方、計上も取り消しも口座ロックの中（取り消しはトランザクションの完了時で、
+ * まだロックを保持している）で行われるため、同じ口座のモニターを同時に取り合うことはなく、異なる口座は別のモニターを使う。
+ * つまりロックは口座単位で分かれており、競合しないモニターの取得はCAS1回分の費用で済む。
+ * <p>
+ * 起動時はジャーナルの再生（フェーズ0）の後に、直近1日分の出金・振込を取引表から読んで作り直す。それまでは確認しない。
+ * 他のインスタンスの取引は数えないため、複数インスタンス構成（cluster）では上限をインスタンスごとに数える。
+ */
+@Slf4j
+@Component
+public class VelocityLimiter implements SmartLifecycle, MeterBinder {
+    
+    private static final String RECENT_DEBITS_SQL =
+        "SELECT a.account_number, t.amount, t.created_at FROM transactions t JOIN accounts a ON a.id = t.account_id "
+            + "WHERE t.type IN ('WITHDRAW', 'TRANSFER_OUT') AND t.created_at >= ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerOutbox ledgerOutbox;
+    private final LedgerMetrics ledgerMetrics;
+    private final boolean enabled;
+    private final Rule[] rules;
+    private final Cache<String, Window> windows;
+    
+    private volatile boolean running;
+    
+    public VelocityLimiter(JdbcTemplate jdbcTemplate,
+                           LedgerOutbox ledgerOutbox,
+                           LedgerMetrics ledgerMetrics,
+                           @Value("${simplebank.velocity.enabled:false}") boolean enabled,
+                           @Value("${simplebank.velocity.minute.max-count:10}") int minuteMaxCount,
+                           @Value("${simplebank.velocity.minute.max-amount:1000000}") long minuteMaxAmount,
+                           @Value("${simplebank.velocity.day.max-count:100}") int dayMaxCount,
+                           @Value("${simplebank.velocity.day.max-amount:10000000}") long dayMaxAmount) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerOutbox = ledgerOutbox;
+        this.ledgerMetrics = ledgerMetrics;
+        this.enabled = enabled;
+        // 1分は5秒×12区間、1日は1時間×24区間
+        this.rules = new Rule[]{
+            new Rule("1分", Duration.ofSeconds(5).toMillis(), 12, minuteMaxCount, Money.ofMajor(minuteMaxAmount)),
+            new Rule("1日", Duration.ofHours(1).toMillis(), 24, dayMaxCount, Money.ofMajor(dayMaxAmount))
+        };
+        long longestMillis = 0;
+        for (Rule rule : rules) {
+            longestMillis = Math.max(longestMillis, rule.spanMillis());
+        }
+        this.windows = Caffeine.newBuilder()
+            .expireAfterAccess(longestMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+    
+    /**
+     * 出金・振込1件分を確認して計上する。上限を超えるなら計上せずにVelocityLimitExceededExceptionを投げる。
+     * 口座ロックを取ったトランザクション内で呼ぶ。トランザクションがロールバックされたら計上を取り消す。
+     */
+    void acquire(String accountNumber, Money amount) {
+        add(accountNumber, amount, true);
+    }
+    
+    /**
+     * 出金・振込1件分を上限を確認せずに計上する（一括処理）。呼び出し方はacquireと同じ。
+     */
+    void record(String accountNumber, Money amount) {
+        add(accountNumber, amount, false);
+    }
+    
+    private void add(String accountNumber, Money amount, boolean limited) {
+        if (!running) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Window window = windows.get(accountNumber, key -> new Window(rules));
+        long minorUnits = amount.minorUnits();
+        if (limited) {
+            int violated = window.tryAdd(now, minorUnits);
+            if (violated >= 0) {
+                reject(rules[violated / 2], violated % 2 == 0);
+            }
+        } else {
+            window.addAll(now, minorUnits);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        window.remove(now, minorUnits);
+                    }
+                }
+            });
+        }
+    }
+    
+    private void reject(Rule rule, boolean count) {
+        if (count) {
+            ledgerMetrics.velocityLimited("count");
+            throw new VelocityLimitExceededException("直近" + rule.name() + "の出金・振込の回数が上限（" + rule.maxCount() + "回）を超えます");
+        }
+        ledgerMetrics.velocityLimited("amount");
+        throw new VelocityLimitExceededException("直近" + rule.name() + "の出金・振込の金額が上限（"
+            + NumberFormat.getIntegerInstance().format(rule.maxAmount().minorUnits() / Money.ofMajor(1).minorUnits())
+            + "円）を超えます");
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ledger.velocity.accounts", windows, Cache::estimatedSize)
+            .description("出金・振込の上限を数えている口座数（直近1日に出金・振込があった口座）").register(registry);
+    }
+    
+    // ---- 起動と停止 ----
+    
+    /**
+     * ジャーナルの再生（フェーズ0）の後に作り直してから確認を始める。
+     */
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+    
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long from = now;
+        for (Rule rule : rules) {
+            from = Math.min(from, (now / rule.slotMillis() - rule.slots()) * rule.slotMillis());
+        }
+        // パイプラインモードで書き出し待ちの取引も数えるため、先に取引表へ書き出す
+        ledgerOutbox.flush();
+        LongAdder rows = new LongAdder();
+        jdbcTemplate.query(RECENT_DEBITS_SQL, (RowCallbackHandler) rs -> {
+            windows.get(rs.getString(1), key -> new Window(rules))
+                .restore(now, rs.getTimestamp(3).getTime(), Money.of(rs.getBigDecimal(2)).minorUnits());
+            rows.increment();
+        }, new Timestamp(from));
+        running = true;
+        log.info("出金・振込の上限を作り直しました: 取引数={}, 口座数={}, {}ms",
+            rows.sum(), windows.estimatedSize(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * 1つのルール。ウィンドウはslotMillis幅のslots区間。maxCount・maxAmountが0なら上限なし。
+     */
+    private record Rule(String name, long slotMillis, int slots, int maxCount, Money maxAmount) {
+        
+        long spanMillis() {
+            return slotMillis * (slots + 1);
+        }
+    }
+    
+    /**
+     * 1口座分のリングバッファ。ルールごとにslots + 1個の区間（現在の区間と、その前のslots区間）を持ち、
+     * 区間には区間番号（時刻 / slotMillis）と、その区間の回数・金額を入れる。区間番号が古い区間は空として扱う。
+     * 更新はすべて口座ロックの中で行われるので、モニターで競合しない（クラスの説明を参照）。
+     * 起動時の作り直し（restore）は確認を始める前に1スレッドで行う。
+     */
+    private static final class Window {
+        private final Rule[] rules;
+        private final int[] offsets;
+        private final long[] slotNumbers;
+        private final int[] counts;
+        private final long[] amounts;
+        
+        Window(Rule[] rules) {
+            this.rules = rules;
+            this.offsets = new int[rules.length];
+            int size = 0;
+            for (int i = 0; i < rules.length; i++) {
+                offsets[i] = size;
+                size += rules[i].slots() + 1;
+            }
+            this.slotNumbers = new long[size];
+            this.counts = new int[size];
+            this.amounts = new long[size];
+        }
+        
+        /**
+         * 全ルールの上限に収まれば計上して-1を返す。超えるなら計上せず、ルールの番号×2（回数）か×2+1（金額）を返す。
+         */
+        synchronized int tryAdd(long now, long minorUnits) {
+            for (int r = 0; r < rules.length; r++) {
+                Rule rule = rules[r];
+                long current = now / rule.slotMillis();
+                long count = 1;
+                long amount = minorUnits;
+                for (int i = offsets[r], end = i + rule.slots() + 1; i < end; i++) {
+                    if (slotNumbers[i] >= current - rule.slots()) {
+                        count += counts[i];
+                        amount += amounts[i];
+                    }
+                }
+                if (rule.maxCount() > 0 && count > rule.maxCount()) {
+                    return r * 2;
+                }
+                if (rule.maxAmount().isPositive() && amount > rule.maxAmount().minorUnits()) {
+                    return r * 2 + 1;
+                }
+            }
+            addAll(now, minorUnits);
+            return -1;
+        }
+        
+        /**
+         * 上限を確認せずに全ルールに計上する。
+         */
+        synchronized void addAll(long now, long minorUnits) {
+            for (int r = 0; r < rules.length; r++) {
+                add(r, now, minorUnits);
+            }
+        }
+        
+        /**
+         * tryAddで計上した分を取り消す（その区間がまだ残っていれば）。
+         */
+        synchronized void remove(long at, long minorUnits) {
+            for (int r = 0; r < rules.length; r++) {
+                long slotNumber = at / rules[r].slotMillis();
+                int index = index(r, slotNumber);
+                if (slotNumbers[index] == slotNumber) {
+                    counts[index]--;
+                    amounts[index] -= minorUnits;
+                }
+            }
+        }
+        
+        /**
+         * 起動時の作り直し。上限は確認せず、ウィンドウに入る取引だけを計上する。
+         */
+        synchronized void restore(long now, long at, long minorUnits) {
+            for (int r = 0; r < rules.length; r++) {
+                if (at / rules[r].slotMillis() >= now / rules[r].slotMillis() - rules[r].slots()) {
+                    add(r, at, minorUnits);
+                }
+            }
+        }
+        
+        private void add(int r, long at, long minorUnits) {
+            long slotNumber = at / rules[r].slotMillis();
+            int index = index(r, slotNumber);
+            if (slotNumbers[index] != slotNumber) {
+                slotNumbers[index] = slotNumber;
+                counts[index] = 0;
+                amounts[index] = 0;
+            }
+            counts[index]++;
+            amounts[index] += minorUnits;
+        }
+        
+        private int index(int r, long slotNumber) {
+            return offsets[r] + (int) (slotNumber % (rules[r].slots() + 1));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.simplebank;
+
+import com.simplebank.money.Money;
+import com.simplebank.service.AccountService;
+import com.simplebank.service.BalanceBucketStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 残高を分散する口座（BalanceBuckets）への並行した入金。バケットに入った入金が出金の残高確認に漏れなく含まれること、
+ * 寄せていない入金が残ったままバケット数を変えても失われないこと、並行する出金で残高がマイナスにならないこと。
+ */
+class BalanceBucketsConcurrencyIntegrationTest {
+
+    private static final String ACCOUNT = "B000000001";
+    private static final int THREADS = 8;
+    private static final int DEPOSITS_PER_THREAD = 50;
+    private static final String BUSY = "口座が処理中です";
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void start() {
+        context = new SpringApplicationBuilder(SimpleBankApplication.class)
+            .run("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID(),
+                "--simplebank.journal.enabled=false",
+                "--simplebank.velocity.enabled=false",
+                "--simplebank.auth.token-secret=bucket-test-secret",
+                "--simplebank.auth.hash-iterations=1000");
+        accountService = context.getBean(AccountService.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+        accountService.createAccount(ACCOUNT, "分散テスト", "password");
+        accountService.configureBalanceBuckets(ACCOUNT, THREADS);
+    }
+
+    @AfterEach
+    void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void withdrawalSeesEveryConcurrentBucketCredit() throws Exception {
+        LongAdder deposited = new LongAdder();
+        runConcurrently(THREADS, () -> depositRandomly(deposited));
+
+        BalanceBucketStatus status = accountService.getBalanceBucketStatus(ACCOUNT);
+        Money total = Money.ofMajor(deposited.sum());
+        assertThat(status.balance()).isEqualTo(total);
+        assertThat(status.unsettledBalance().isPositive()).isTrue();
+
+        // 本体の残高は0円なので、全バケットを寄せてからでないと出金できない
+        assertThatThrownBy(() -> accountService.withdraw(ACCOUNT, total.plus(Money.ofMajor(1))))
+            .hasMessage("残高不足です");
+        accountService.withdraw(ACCOUNT, total);
+        status = accountService.getBalanceBucketStatus(ACCOUNT);
+        assertThat(status.balance()).isEqualTo(Money.ZERO);
+        assertThat(status.unsettledBalance()).isEqualTo(Money.ZERO);
+        assertThatThrownBy(() -> accountService.withdraw(ACCOUNT, Money.ofMajor(1)))
+            .hasMessage("残高不足です");
+        assertBalanceMatchesTransactions();
+    }
+
+    @Test
+    void bucketCountChangeKeepsUnsettledCredits() throws Exception {
+        LongAdder deposited = new LongAdder();
+        AtomicBoolean depositing = new AtomicBoolean(true);
+        AtomicInteger changes = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> depositRandomly(deposited));
+        }
+        // 入金の間にバケット数を変え続ける（0で分散をやめ、また分散する）
+        tasks.add(() -> {
+            int[] counts = {3, 0, 5, 1, THREADS};
+            while (depositing.get()) {
+                accountService.configureBalanceBuckets(ACCOUNT, counts[changes.getAndIncrement() % counts.length]);
+            }
+            return null;
+        });
+        runConcurrently(tasks, () -> depositing.set(false), THREADS);
+
+        assertThat(changes.get()).isPositive();
+        Money total = Money.ofMajor(deposited.sum());
+        assertThat(accountService.getBalanceBucketStatus(ACCOUNT).balance()).isEqualTo(total);
+        // 寄せていない入金が残っていれば、バケット数を変えるときに本体に寄せる
+        accountService.configureBalanceBuckets(ACCOUNT, 2);
+        BalanceBucketStatus status = accountService.getBalanceBucketStatus(ACCOUNT);
+        assertThat(status.settledBalance()).isEqualTo(total);
+        assertThat(status.unsettledBalance()).isEqualTo(Money.ZERO);
+        assertBalanceMatchesTransactions();
+    }
+
+    @Test
+    void concurrentWithdrawalsNeverOverdraw() throws Exception {
+        LongAdder deposited = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicBoolean depositing = new AtomicBoolean(true);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> depositRandomly(deposited));
+        }
+        for (int t = 0; t < 2; t++) {
+            tasks.add(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                // 入金より大きい額も引き出そうとし、残高不足を起こす
+                while (depositing.get()) {
+                    long amount = 1 + random.nextInt(1000);
+                    try {
+                        accountService.withdraw(ACCOUNT, Money.ofMajor(amount));
+                        withdrawn.add(amount);
+                    } catch (RuntimeException e) {
+                        if (!e.getMessage().startsWith(BUSY)) {
+                            assertThat(e).hasMessage("残高不足です");
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks, () -> depositing.set(false), THREADS);
+        assertThat(withdrawn.sum()).isPositive();
+
+        // バケットに入金を残したまま、残高の半分より多い額を2つ同時に引き出すと、片方だけが通る
+        depositWhenNotBusy(100);
+        deposited.add(100);
+        long half = (deposited.sum() - withdrawn.sum()) / 2 + 1;
+        AtomicInteger succeeded = new AtomicInteger();
+        runConcurrently(2, () -> {
+            try {
+                withdrawWhenNotBusy(half);
+                succeeded.incrementAndGet();
+                withdrawn.add(half);
+            } catch (RuntimeException e) {
+                assertThat(e).hasMessage("残高不足です");
+                rejected.incrementAndGet();
+            }
+            return null;
+        });
+        assertThat(succeeded.get()).isEqualTo(1);
+        assertThat(rejected.get()).isPositive();
+
+        Money balance = accountService.getBalanceBucketStatus(ACCOUNT).balance();
+        assertThat(balance).isEqualTo(Money.ofMajor(deposited.sum() - withdrawn.sum()));
+        assertThat(balance.isNegative()).isFalse();
+        // どの出金の取引後残高（寄せた後の本体）もマイナスでない
+        BigDecimal lowest = jdbc.queryForObject("SELECT MIN(t.balance_after) FROM transactions t "
+            + "JOIN accounts a ON a.id = t.account_id WHERE a.account_number = ? AND t.type = 'WITHDRAW'",
+            BigDecimal.class, ACCOUNT);
+        assertThat(lowest).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+        assertBalanceMatchesTransactions();
+    }
+
+    private Void depositRandomly(LongAdder deposited) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < DEPOSITS_PER_THREAD; i++) {
+            long amount = 1 + random.nextInt(100);
+            depositWhenNotBusy(amount);
+            deposited.add(amount);
+        }
+        return null;
+    }
+
+    /**
+     * 出金が全バケットのロックを取り続けると、入金はロック待ちの上限で断られる。クライアントと同じく再送する。
+     */
+    private void depositWhenNotBusy(long amount) {
+        while (true) {
+            try {
+                accountService.deposit(ACCOUNT, Money.ofMajor(amount));
+                return;
+            } catch (RuntimeException e) {
+                assertThat(e.getMessage()).startsWith(BUSY);
+            }
+        }
+    }
+
+    private void withdrawWhenNotBusy(long amount) {
+        while (true) {
+            try {
+                accountService.withdraw(ACCOUNT, Money.ofMajor(amount));
+                return;
+            } catch (RuntimeException e) {
+                if (!e.getMessage().startsWith(BUSY)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 口座の残高（本体 + 全バケット）が取引の合計と一致すること。
+     */
+    private void assertBalanceMatchesTransactions() {
+        BigDecimal posted = jdbc.queryForObject(
+            "SELECT COALESCE(SUM(CASE WHEN t.type IN ('WITHDRAW', 'TRANSFER_OUT') THEN -t.amount ELSE t.amount END), 0) "
+                + "FROM transactions t JOIN accounts a ON a.id = t.account_id WHERE a.account_number = ?",
+            BigDecimal.class, ACCOUNT);
+        assertThat(accountService.getBalanceBucketStatus(ACCOUNT).balance().toBigDecimal())
+            .isEqualByComparingTo(posted);
+    }
+
+    private void runConcurrently(int threads, Callable<Void> task) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(task);
+        }
+        runConcurrently(tasks, () -> { }, tasks.size());
+    }
+
+    /**
+     * tasksを一斉に開始する。先頭のfinishing件が終わったらonFinishedを呼び（残りのタスクを止める合図）、全件の終了を待つ。
+     */
+    private void runConcurrently(List<Callable<Void>> tasks, Runnable onFinished, int finishing) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            try {
+                for (Future<Void> future : futures.subList(0, finishing)) {
+                    future.get(2, TimeUnit.MINUTES);
+                }
+            } finally {
+                onFinished.run();
+            }
+            for (Future<Void> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.simplebank;
+
+import com.simplebank.money.Money;
+import com.simplebank.service.AccountService;
+import com.simplebank.service.OptimisticRetryExecutor;
+import com.simplebank.service.RetryStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * clusterプロファイル（OPTIMISTICモード）の結合テスト。1つのH2ファイルDBを共有する2つのアプリケーションコンテキストを
+ * 起動し、同じ口座の間の振込を両方から並行に実行する。プロセス内ロックはコンテキストをまたいで効かないため、
+ * コンテキスト間の競合はバージョン列で検出されて再実行され、残高の合計と取引の件数が一致すること。
+ */
+class ClusterModeIntegrationTest {
+
+    private static final List<String> ACCOUNTS = List.of("C000000001", "C000000002", "C000000003", "C000000004");
+    private static final long INITIAL_BALANCE = 100_000;
+    private static final int THREADS_PER_NODE = 4;
+    private static final int TRANSFERS_PER_THREAD = 50;
+
+    @TempDir
+    Path dataDirectory;
+
+    private ConfigurableApplicationContext node1;
+    private ConfigurableApplicationContext node2;
+
+    @BeforeEach
+    void startNodes() {
+        node1 = startNode();
+        node2 = startNode();
+    }
+
+    @AfterEach
+    void stopNodes() {
+        if (node2 != null) {
+            node2.close();
+        }
+        if (node1 != null) {
+            node1.close();
+        }
+    }
+
+    @Test
+    void concurrentTransfersFromTwoNodesConserveTotalBalance() throws Exception {
+        AccountService accounts1 = node1.getBean(AccountService.class);
+        for (String accountNumber : ACCOUNTS) {
+            accounts1.createAccount(accountNumber, "結合テスト" + accountNumber, "password");
+            accounts1.deposit(accountNumber, Money.ofMajor(INITIAL_BALANCE));
+        }
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_NODE * 2);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (ConfigurableApplicationContext node : List.of(node1, node2)) {
+                AccountService accountService = node.getBean(AccountService.class);
+                for (int t = 0; t < THREADS_PER_NODE; t++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                            int from = random.nextInt(ACCOUNTS.size());
+                            int to = (from + 1 + random.nextInt(ACCOUNTS.size() - 1)) % ACCOUNTS.size();
+                            try {
+                                accountService.transfer(ACCOUNTS.get(from), ACCOUNTS.get(to),
+                                    Money.ofMajor(1 + random.nextInt(100)));
+                                succeeded.incrementAndGet();
+                            } catch (RuntimeException e) {
+                                // 再試行の上限に達したものは、ロールバックされていれば残高に影響しない
+                                failed.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        RetryStats stats1 = node1.getBean(OptimisticRetryExecutor.class).stats();
+        RetryStats stats2 = node2.getBean(OptimisticRetryExecutor.class).stats();
+        assertThat(succeeded.get() + failed.get()).isEqualTo(THREADS_PER_NODE * TRANSFERS_PER_THREAD * 2);
+        // コンテキスト間の競合が起きて再実行され、上限に達しなかった分は成功していること
+        assertThat(stats1.conflicts() + stats2.conflicts()).isPositive();
+        assertThat(stats1.retries() + stats2.retries()).isPositive();
+        assertThat(stats1.exhausted() + stats2.exhausted()).isEqualTo(failed.get());
+
+        JdbcTemplate jdbc = node2.getBean(JdbcTemplate.class);
+        BigDecimal total = jdbc.queryForObject(
+            "SELECT SUM(balance) FROM accounts WHERE account_number IN (?, ?, ?, ?)", BigDecimal.class,
+            ACCOUNTS.toArray());
+        assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(INITIAL_BALANCE * ACCOUNTS.size()));
+
+        // 成功した振込だけが取引として残り、各口座の残高は取引の合計と一致すること（更新の消失がない）
+        Integer transfers = jdbc.queryForObject(
+            "SELECT COUNT(*) FROM transactions t JOIN accounts a ON a.id = t.account_id "
+                + "WHERE t.type = 'TRANSFER_OUT' AND a.account_number IN (?, ?, ?, ?)", Integer.class,
+            ACCOUNTS.toArray());
+        assertThat(transfers).isEqualTo(succeeded.get());
+        for (String accountNumber : ACCOUNTS) {
+            BigDecimal balance = jdbc.queryForObject(
+                "SELECT balance FROM accounts WHERE account_number = ?", BigDecimal.class, accountNumber);
+            BigDecimal posted = jdbc.queryForObject(
+                "SELECT COALESCE(SUM(CASE WHEN t.type IN ('WITHDRAW', 'TRANSFER_OUT') THEN -t.amount ELSE t.amount END), 0) "
+                    + "FROM transactions t JOIN accounts a ON a.id = t.account_id WHERE a.account_number = ?",
+                BigDecimal.class, accountNumber);
+            assertThat(balance).as(accountNumber).isEqualByComparingTo(posted);
+        }
+    }
+
+    private ConfigurableApplicationContext startNode() {
+        // 既定値（properties）はapplication.propertiesより優先度が低いため、コマンドライン引数で渡す
+        return new SpringApplicationBuilder(SimpleBankApplication.class)
+            .profiles("cluster")
+            .run("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:file:" + dataDirectory.resolve("simplebank").toAbsolutePath()
+                    + ";AUTO_SERVER=TRUE",
+                "--simplebank.auth.token-secret=cluster-test-secret",
+                "--simplebank.auth.hash-iterations=1000",
+                "--simplebank.velocity.enabled=false",
+                "--simplebank.concurrency.max-attempts=10",
+                // 競合のたびにHibernateが出すバッチ更新の失敗ログ（再試行で処理される）を抑える
+                "--logging.level.org.hibernate.orm.jdbc.batch=OFF");
+    }
+}
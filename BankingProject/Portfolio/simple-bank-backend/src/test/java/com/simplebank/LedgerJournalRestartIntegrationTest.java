@@ -0,0 +1,201 @@
+package com.simplebank;
+
+import com.simplebank.money.Money;
+import com.simplebank.service.AccountService;
+import com.simplebank.service.InterestAccrualService;
+import com.simplebank.service.LedgerJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 台帳ジャーナルの再起動。停止時のスナップショットからの復元と、スナップショット以降のジャーナルの再生で、
+ * 残高・取引・残高バケット・利息の対象月が停止前と同じになること。
+ * 末尾のレコードが壊れていれば（書き込み途中の停止）そこで再生を打ち切り、それより前の分は復元されること。
+ */
+class LedgerJournalRestartIntegrationTest {
+
+    private static final String PAYER = "J000000001";
+    private static final String BUCKETED = "J000000002";
+    private static final String IDLE = "J000000003";
+    private static final int HEADER_BYTES = 8;
+
+    @TempDir
+    Path workDirectory;
+
+    private ConfigurableApplicationContext node;
+
+    @AfterEach
+    void stopNode() {
+        if (node != null) {
+            node.close();
+        }
+    }
+
+    @Test
+    void restartRestoresLedgerFromSnapshotAndFromJournal() throws IOException {
+        Path journal = workDirectory.resolve("journal");
+        Path copy = workDirectory.resolve("journal-copy");
+        start(journal);
+        writeLedger();
+        Map<String, List<Map<String, Object>>> expected = ledgerState();
+        assertThat(expected.get("accounts"))
+            .filteredOn(account -> List.of(PAYER, BUCKETED, IDLE).contains(account.get("ACCOUNT_NUMBER")))
+            .extracting(account -> account.get("INTEREST_ACCRUED_MONTH"))
+            .containsOnly(YearMonth.now().minusMonths(1).toString());
+        assertThat(expected.get("buckets")).hasSize(4);
+        // 起動直後のスナップショット以降はジャーナルにしかない
+        copyDirectory(journal, copy);
+        restart(journal);
+
+        // 停止時のスナップショットから復元する
+        assertThat(ledgerState()).isEqualTo(expected);
+        assertThat(journal().stats().replayedRecords()).isZero();
+
+        // 起動直後のスナップショットを読み込み、それ以降のジャーナルを再生する
+        restart(copy);
+        assertThat(ledgerState()).isEqualTo(expected);
+        assertThat(journal().stats().replayedRecords()).isPositive();
+    }
+
+    @Test
+    void replayStopsAtCorruptedTailRecord() throws IOException {
+        Path journal = workDirectory.resolve("journal");
+        Path copy = workDirectory.resolve("journal-copy");
+        start(journal);
+        writeLedger();
+        Map<String, List<Map<String, Object>>> expected = ledgerState();
+        accountService().deposit(PAYER, Money.ofMajor(5000));
+        copyDirectory(journal, copy);
+        // 最後のレコード（5000円の入金）の本体を書き換え、CRCが合わないようにする
+        corruptLastRecord(copy);
+        restart(copy);
+
+        assertThat(ledgerState()).isEqualTo(expected);
+
+        // 壊れたセグメントは復元後のスナップショットで消え、その後の追記は次の起動でも残る
+        accountService().deposit(PAYER, Money.ofMajor(7));
+        Map<String, List<Map<String, Object>>> appended = ledgerState();
+        restart(copy);
+        assertThat(ledgerState()).isEqualTo(appended);
+    }
+
+    /**
+     * 口座開設・入金・出金・振込・残高バケットの設定と入金・利息の対象月（利息0円）をジャーナルに記録する。
+     */
+    private void writeLedger() {
+        AccountService accountService = accountService();
+        accountService.createAccount(PAYER, "ジャーナル一郎", "password");
+        accountService.createAccount(BUCKETED, "ジャーナル二郎", "password");
+        accountService.createAccount(IDLE, "ジャーナル三郎", "password");
+        accountService.deposit(PAYER, Money.ofMajor(1000));
+        accountService.withdraw(PAYER, Money.ofMajor(100));
+        accountService.transfer(PAYER, BUCKETED, Money.ofMajor(200));
+        accountService.configureBalanceBuckets(BUCKETED, 4);
+        for (int i = 1; i <= 8; i++) {
+            accountService.deposit(BUCKETED, Money.ofMajor(i * 10));
+        }
+        // 前月の利息の対象にするため開設日をずらす（開設日はジャーナルに記録しないので比較しない）。
+        // 今月の取引しかないので月末の残高は0円で、利息は付けずに対象月だけを記録する
+        jdbc().update("UPDATE accounts SET created_at = DATEADD('MONTH', -2, created_at)");
+        node.getBean(InterestAccrualService.class).accrue(YearMonth.now().minusMonths(1));
+    }
+
+    private Map<String, List<Map<String, Object>>> ledgerState() {
+        JdbcTemplate jdbc = jdbc();
+        Map<String, List<Map<String, Object>>> state = new LinkedHashMap<>();
+        state.put("accounts", jdbc.queryForList("SELECT account_number, owner_name, password, balance, "
+            + "balance_buckets, interest_accrued_month FROM accounts ORDER BY account_number"));
+        state.put("transactions", jdbc.queryForList("SELECT a.account_number, t.type, t.amount, t.balance_after, "
+            + "t.created_at, t.description FROM transactions t JOIN accounts a ON a.id = t.account_id "
+            + "ORDER BY a.account_number, t.id"));
+        state.put("buckets", jdbc.queryForList("SELECT a.account_number, b.bucket, b.balance, b.credits "
+            + "FROM account_balance_buckets b JOIN accounts a ON a.id = b.account_id ORDER BY a.account_number, b.bucket"));
+        return state;
+    }
+
+    private void start(Path journalDirectory) {
+        node = new SpringApplicationBuilder(SimpleBankApplication.class)
+            .run("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID(),
+                "--simplebank.journal.enabled=true",
+                "--simplebank.journal.directory=" + journalDirectory.toAbsolutePath(),
+                "--simplebank.journal.segment-size-mb=1",
+                "--simplebank.journal.snapshot-records=1000000",
+                "--simplebank.journal.snapshot-interval-seconds=3600",
+                "--simplebank.velocity.enabled=false",
+                "--simplebank.auth.token-secret=journal-test-secret",
+                "--simplebank.auth.hash-iterations=1000");
+        // 定期スナップショット（初回は起動の5秒後）が途中に入らないよう、ここで取っておく
+        journal().snapshot();
+    }
+
+    private void restart(Path journalDirectory) {
+        node.close();
+        node = null;
+        start(journalDirectory);
+    }
+
+    private AccountService accountService() {
+        return node.getBean(AccountService.class);
+    }
+
+    private LedgerJournal journal() {
+        return node.getBean(LedgerJournal.class);
+    }
+
+    private JdbcTemplate jdbc() {
+        return node.getBean(JdbcTemplate.class);
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, target.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    /**
+     * 最後のセグメントの最後のレコード（[長さ][CRC32C][本体]、長さ0が末尾）の本体の先頭1バイトを反転する。
+     */
+    private static void corruptLastRecord(Path directory) throws IOException {
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().endsWith(".journal"))
+                .max(Path::compareTo)
+                .orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            channel.read(buffer, 0);
+            int position = 0;
+            int last = -1;
+            while (position + HEADER_BYTES <= buffer.capacity() && buffer.getInt(position) > 0) {
+                last = position;
+                position += HEADER_BYTES + buffer.getInt(position);
+            }
+            assertThat(last).as("最後のセグメントにレコードがない: " + segment).isNotNegative();
+            ByteBuffer corrupted = ByteBuffer.allocate(1).put(0, (byte) ~buffer.get(last + HEADER_BYTES));
+            channel.write(corrupted, last + HEADER_BYTES);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.simplebank;
+
+import com.simplebank.money.Money;
+import com.simplebank.service.AccountService;
+import com.simplebank.service.LedgerReconciliationService;
+import com.simplebank.service.ReconciliationDiscrepancy;
+import com.simplebank.service.ReconciliationMode;
+import com.simplebank.service.ReconciliationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 台帳の照合の差分モード。照合済みの取引の後に登録された取引だけを読んでウォーターマークを進めること、
+ * 照合済みの取引が書き換えられたら全件モードでHISTORY_CHANGEDとして報告されること。
+ */
+class LedgerReconciliationIntegrationTest {
+
+    private static final String ACCOUNT = "R000000001";
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private LedgerReconciliationService reconciliationService;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void start() {
+        context = new SpringApplicationBuilder(SimpleBankApplication.class)
+            .run("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID(),
+                "--simplebank.journal.enabled=false",
+                "--simplebank.auth.token-secret=reconciliation-test-secret",
+                "--simplebank.auth.hash-iterations=1000");
+        accountService = context.getBean(AccountService.class);
+        reconciliationService = context.getBean(LedgerReconciliationService.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+        accountService.createAccount(ACCOUNT, "照合テスト", "password");
+    }
+
+    @AfterEach
+    void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void incrementalRunAdvancesWatermarkAndFullRunDetectsRewrittenHistory() {
+        depositAndAge(100, 200, 300);
+        ReconciliationResult full = reconciliationService.reconcile(ReconciliationMode.FULL);
+        assertThat(full.discrepancyCount()).isZero();
+        Map<String, Object> first = checkpoint();
+        assertThat(first.get("TRANSACTION_COUNT")).isEqualTo(3L);
+        assertThat(first.get("LAST_TRANSACTION_ID")).isEqualTo(lastTransactionId());
+
+        depositAndAge(400, 500);
+        ReconciliationResult incremental = reconciliationService.reconcile(ReconciliationMode.INCREMENTAL);
+        // 変わった口座のウォーターマークより後の2件だけを読む
+        assertThat(incremental.accounts()).isEqualTo(1);
+        assertThat(incremental.transactions()).isEqualTo(2);
+        assertThat(incremental.discrepancyCount()).isZero();
+        Map<String, Object> second = checkpoint();
+        assertThat(second.get("TRANSACTION_COUNT")).isEqualTo(5L);
+        assertThat(second.get("LAST_TRANSACTION_ID")).isEqualTo(lastTransactionId());
+
+        // 照合済みの最初の取引を書き換える（口座のバージョンは変わらないので差分モードでは読まない）
+        jdbc.update("UPDATE transactions SET amount = amount + 1 WHERE id = (SELECT MIN(t.id) FROM transactions t "
+            + "JOIN accounts a ON a.id = t.account_id WHERE a.account_number = ?)", ACCOUNT);
+        assertThat(reconciliationService.reconcile(ReconciliationMode.INCREMENTAL).discrepancyCount()).isZero();
+
+        ReconciliationResult rescan = reconciliationService.reconcile(ReconciliationMode.FULL);
+        assertThat(rescan.discrepancies())
+            .filteredOn(discrepancy -> discrepancy.accountNumber().equals(ACCOUNT))
+            .extracting(ReconciliationDiscrepancy::kind, ReconciliationDiscrepancy::transactionId)
+            .contains(tuple(ReconciliationDiscrepancy.Kind.HISTORY_CHANGED,
+                second.get("LAST_TRANSACTION_ID")));
+    }
+
+    /**
+     * 入金して、その取引の作成時刻を1時間前にずらす（作成から間もない取引ではウォーターマークを進めないため）。
+     */
+    private void depositAndAge(long... amounts) {
+        long before = lastTransactionId();
+        for (long amount : amounts) {
+            accountService.deposit(ACCOUNT, Money.ofMajor(amount));
+        }
+        jdbc.update("UPDATE transactions SET created_at = DATEADD('HOUR', -1, created_at) WHERE id > ? "
+            + "AND account_id = (SELECT id FROM accounts WHERE account_number = ?)", before, ACCOUNT);
+    }
+
+    private long lastTransactionId() {
+        Long id = jdbc.queryForObject("SELECT MAX(t.id) FROM transactions t JOIN accounts a ON a.id = t.account_id "
+            + "WHERE a.account_number = ?", Long.class, ACCOUNT);
+        return id == null ? 0 : id;
+    }
+
+    private Map<String, Object> checkpoint() {
+        return jdbc.queryForMap("SELECT r.transaction_count, r.last_transaction_id FROM account_reconciliations r "
+            + "JOIN accounts a ON a.id = r.account_id WHERE a.account_number = ?", ACCOUNT);
+    }
+}
@@ -0,0 +1,117 @@
+package com.simplebank.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+import org.springframework.web.util.ServletRequestPathUtils;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 受付制御。WebConfigのパスの割り当てを通して、一括処理・取引明細のダウンロードが遅くても
+ * 書き込み・口座情報・取引履歴の上限を下げないこと、BULKは固定の同時実行数で断ること。
+ */
+class AdmissionControlTest {
+
+    private static final int INITIAL_LIMIT = 20;
+    private static final int BULK_LIMIT = 4;
+
+    private AdmissionControl admissionControl;
+    private List<MappedInterceptor> interceptors;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        admissionControl = new AdmissionControl(true, INITIAL_LIMIT, 2, 200, 1, 200, 100, 500, BULK_LIMIT);
+        registry = new SimpleMeterRegistry();
+        admissionControl.bindTo(registry);
+        WebConfig webConfig = new WebConfig(mock(SessionTokenInterceptor.class), mock(AdminTokenInterceptor.class),
+            admissionControl);
+        ExposedInterceptorRegistry interceptorRegistry = new ExposedInterceptorRegistry();
+        webConfig.addInterceptors(interceptorRegistry);
+        interceptors = interceptorRegistry.interceptors().stream()
+            .filter(MappedInterceptor.class::isInstance)
+            .map(MappedInterceptor.class::cast)
+            .toList();
+    }
+
+    @Test
+    void slowExportAndBatchDoNotLowerOtherLimits() {
+        complete("GET", "/api/account/1234567890/statement", 10_000);
+        complete("POST", "/api/account/batch", 10_000);
+
+        assertThat(limit("write")).isEqualTo(INITIAL_LIMIT);
+        assertThat(limit("read")).isEqualTo(INITIAL_LIMIT);
+        assertThat(limit("history")).isEqualTo(INITIAL_LIMIT);
+        assertThat(limit("bulk")).isEqualTo(BULK_LIMIT);
+    }
+
+    @Test
+    void slowWriteStillLowersWriteAndHistoryLimits() {
+        complete("POST", "/api/account/deposit", 10_000);
+
+        // 20 × 0.9
+        assertThat(limit("write")).isEqualTo(18);
+        assertThat(limit("history")).isEqualTo(18);
+        assertThat(limit("read")).isEqualTo(INITIAL_LIMIT);
+    }
+
+    @Test
+    void bulkRejectsBeyondFixedLimit() throws Exception {
+        HandlerInterceptor bulk = admissionControl.interceptor(AdmissionControl.EndpointClass.BULK);
+        for (int i = 0; i < BULK_LIMIT; i++) {
+            assertThat(bulk.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), null)).isTrue();
+        }
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertThat(bulk.preHandle(new MockHttpServletRequest(), rejected, null)).isFalse();
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(limit("bulk")).isEqualTo(BULK_LIMIT);
+    }
+
+    /**
+     * pathに割り当てた受付制御を通し、latencyMillisかかって終わったものとして完了させる。
+     */
+    private void complete(String method, String path, long latencyMillis) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        ServletRequestPathUtils.parseAndCache(request);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<HandlerInterceptor> matched = interceptors.stream()
+            .filter(interceptor -> interceptor.matches(request))
+            .map(MappedInterceptor::getInterceptor)
+            .toList();
+        try {
+            for (HandlerInterceptor interceptor : matched) {
+                // トークンの検証（モック）はfalseを返すが、受付制御だけを見るので続ける
+                interceptor.preHandle(request, response, null);
+            }
+            assertThat(request.getAttribute(AdmissionControl.STARTED_ATTRIBUTE)).isNotNull();
+            request.setAttribute(AdmissionControl.STARTED_ATTRIBUTE,
+                System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+            for (HandlerInterceptor interceptor : matched) {
+                interceptor.afterCompletion(request, response, null, null);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double limit(String endpointClass) {
+        return registry.get("http.admission.limit").tag("class", endpointClass).gauge().value();
+    }
+
+    private static final class ExposedInterceptorRegistry extends InterceptorRegistry {
+        List<Object> interceptors() {
+            return getInterceptors();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.simplebank.money;
+
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Money.parse（JSONの金額・一括取込の初期残高・ジャーナルの読み込みで使う）と、桁あふれの検出。
+ */
+class MoneyTest {
+
+    private static final long MAX_YEN = Long.MAX_VALUE / 100;
+
+    @Test
+    void parsesDecimalNotation() {
+        assertThat(Money.parse("1234").minorUnits()).isEqualTo(123_400);
+        assertThat(Money.parse("1234.5").minorUnits()).isEqualTo(123_450);
+        assertThat(Money.parse("0.05").minorUnits()).isEqualTo(5);
+        assertThat(Money.parse(".5").minorUnits()).isEqualTo(50);
+        assertThat(Money.parse("7.").minorUnits()).isEqualTo(700);
+        assertThat(Money.parse("1e3").minorUnits()).isEqualTo(100_000);
+    }
+
+    @Test
+    void parsesSigns() {
+        assertThat(Money.parse("+12.34").minorUnits()).isEqualTo(1_234);
+        assertThat(Money.parse("-12.34").minorUnits()).isEqualTo(-1_234);
+        assertThat(Money.parse("-0.05").toString()).isEqualTo("-0.05");
+        assertThat(Money.parse("-0")).isSameAs(Money.ZERO);
+        assertThatThrownBy(() -> Money.parse("-")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("+-1")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void rejectsNonAsciiDigits() {
+        // BigDecimalはUnicodeの数字を受け付けるので、全角数字が別の金額として通らないこと
+        assertThatThrownBy(() -> Money.parse("１")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("１００.５")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("1０")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.parse("-٣")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void rejectsMoreThanTwoDecimals() {
+        assertThatThrownBy(() -> Money.parse("1.234")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("0.001")).isInstanceOf(ArithmeticException.class);
+        // 0だけの桁は値を変えないので受け付ける
+        assertThat(Money.parse("1.2300").minorUnits()).isEqualTo(123);
+    }
+
+    @Test
+    void parsesUpToLongLimits() {
+        assertThat(Money.parse(MAX_YEN + ".07").minorUnits()).isEqualTo(Long.MAX_VALUE);
+        assertThat(Money.parse("-" + MAX_YEN + ".08").minorUnits()).isEqualTo(Long.MIN_VALUE);
+        assertThat(Money.parse("9999999999999999.99").minorUnits()).isEqualTo(999_999_999_999_999_999L);
+        assertThat(Money.parse("00000000000000000001").minorUnits()).isEqualTo(100);
+        // 高速経路とBigDecimal経由で同じ値になること
+        assertThat(Money.parse("12345678901234567.89"))
+            .isEqualTo(Money.of(new BigDecimal("12345678901234567.89")));
+    }
+
+    @Test
+    void rejectsValuesBeyondLongLimits() {
+        assertThatThrownBy(() -> Money.parse(MAX_YEN + ".08")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("-" + MAX_YEN + ".09")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("99999999999999999999")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("1e30")).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void arithmeticDetectsOverflow() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+        assertThatThrownBy(() -> max.plus(Money.ofMinor(1))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)))
+            .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE).negate()).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMajor(MAX_YEN + 1)).isInstanceOf(ArithmeticException.class);
+        assertThat(Money.ofMajor(MAX_YEN).plus(Money.ofMinor(7))).isEqualTo(max);
+    }
+}
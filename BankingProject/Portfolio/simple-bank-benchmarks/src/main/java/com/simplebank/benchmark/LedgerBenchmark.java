@@ -0,0 +1,88 @@
+package com.simplebank.benchmark;
+
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.service.AccountSnapshot;
+import com.simplebank.service.HistoryPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccountServiceの主要処理のベンチマーク。
+ * uniform系は全口座からランダムに選び、hot系は1口座に集中させて競合時の性能を測る。
+ *
+ * 実行例:
+ *   java -jar target/benchmarks.jar -rf json -rff results.json
+ *   java -jar target/benchmarks.jar LedgerBenchmark.deposit -p transactions=100000
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LedgerBenchmark {
+    
+    private static final Money AMOUNT = Money.ofMajor(1);
+    
+    @Benchmark
+    public Transaction depositUniform(LedgerState state) {
+        return state.accountService.deposit(state.randomAccount(), AMOUNT);
+    }
+    
+    @Benchmark
+    public Transaction withdrawUniform(LedgerState state) {
+        return state.accountService.withdraw(state.randomAccount(), AMOUNT);
+    }
+    
+    @Benchmark
+    public Transaction transferUniform(LedgerState state) {
+        String from = state.randomAccount();
+        String to = state.randomAccount();
+        return state.accountService.transfer(from, to, AMOUNT);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public Transaction depositHotAccount(LedgerState state) {
+        return state.accountService.deposit(state.hotAccount(), AMOUNT);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public Transaction transferHotAccount(LedgerState state) {
+        return state.accountService.transfer(state.hotAccount(), state.randomAccount(), AMOUNT);
+    }
+    
+    @Benchmark
+    public HistoryPage transactionHistoryFirstPage(LedgerState state) {
+        return state.accountService.getTransactionHistory(state.randomAccount(), null, null);
+    }
+    
+    /**
+     * パスワード照合（PBKDF2、認証用プール経由）。ログイン1回分のコスト。
+     */
+    @Benchmark
+    public boolean authenticate(LedgerState state) {
+        return state.accountService.authenticate(state.randomAccount(), LedgerSeeder.PASSWORD);
+    }
+    
+    /**
+     * ログイン後の各リクエストで行うセッショントークンの検証（HMACのみ）。
+     */
+    @Benchmark
+    public String verifySessionToken(LedgerState state) {
+        return state.sessionTokens.verify(state.sessionToken);
+    }
+    
+    @Benchmark
+    public AccountSnapshot getAccount(LedgerState state) {
+        return state.accountService.getAccount(state.randomAccount());
+    }
+}
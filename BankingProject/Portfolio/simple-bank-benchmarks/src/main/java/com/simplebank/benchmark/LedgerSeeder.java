@@ -0,0 +1,74 @@
+package com.simplebank.benchmark;
+
+import com.simplebank.service.PasswordHasher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 計測用の口座と取引履歴をJDBCバッチで直接投入する。
+ * 最後にシーケンスを投入済みIDの後ろへ進め、アプリ側の採番と衝突しないようにする。
+ */
+public final class LedgerSeeder {
+    
+    public static final BigDecimal SEED_AMOUNT = new BigDecimal("1000.00");
+    public static final String PASSWORD = "password";
+    // 全口座で同じハッシュを使う（口座ごとにハッシュ化すると投入に時間がかかりすぎる）
+    private static final String PASSWORD_HASH = PasswordHasher.encode(PASSWORD, PasswordHasher.DEFAULT_ITERATIONS);
+    
+    private LedgerSeeder() {
+    }
+    
+    /**
+     * 口座accounts件と、合計およそtransactions件の入金履歴を投入し、口座番号の配列を返す。
+     */
+    public static String[] seed(JdbcTemplate jdbc, int accounts, int transactions) {
+        long baseAccountId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) + 1000 FROM accounts", Long.class);
+        long baseTransactionId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) + 1000 FROM transactions", Long.class);
+        int perAccount = Math.max(1, transactions / accounts);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        
+        String[] accountNumbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNumbers[i] = String.format("B%09d", i);
+        }
+        
+        jdbc.batchUpdate(
+            "INSERT INTO accounts (id, account_number, owner_name, password, balance, created_at, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0)",
+            indexes(accounts), 1000, (PreparedStatement ps, Integer i) -> {
+                ps.setLong(1, baseAccountId + i);
+                ps.setString(2, accountNumbers[i]);
+                ps.setString(3, "ベンチ" + i);
+                ps.setString(4, PASSWORD_HASH);
+                ps.setBigDecimal(5, SEED_AMOUNT.multiply(BigDecimal.valueOf(perAccount)));
+                ps.setTimestamp(6, now);
+            });
+        
+        int total = perAccount * accounts;
+        jdbc.batchUpdate(
+            "INSERT INTO transactions (id, account_id, type, amount, balance_after, created_at, description) " +
+            "VALUES (?, ?, 'DEPOSIT', ?, ?, ?, NULL)",
+            indexes(total), 5000, (PreparedStatement ps, Integer n) -> {
+                int account = n / perAccount;
+                int sequence = n % perAccount;
+                ps.setLong(1, baseTransactionId + n);
+                ps.setLong(2, baseAccountId + account);
+                ps.setBigDecimal(3, SEED_AMOUNT);
+                ps.setBigDecimal(4, SEED_AMOUNT.multiply(BigDecimal.valueOf(sequence + 1L)));
+                ps.setTimestamp(5, Timestamp.valueOf(now.toLocalDateTime().plusNanos(sequence * 1000L)));
+            });
+        
+        jdbc.execute("ALTER SEQUENCE accounts_seq RESTART WITH " + (baseAccountId + accounts + 1000));
+        jdbc.execute("ALTER SEQUENCE transactions_seq RESTART WITH " + (baseTransactionId + total + 1000));
+        return accountNumbers;
+    }
+    
+    private static List<Integer> indexes(int count) {
+        return IntStream.range(0, count).boxed().toList();
+    }
+}
@@ -0,0 +1,80 @@
+package com.simplebank.benchmark;
+
+import com.simplebank.SimpleBankApplication;
+import com.simplebank.service.AccountReadModel;
+import com.simplebank.service.AccountService;
+import com.simplebank.service.SessionTokens;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * インメモリH2上にバックエンドを起動し、口座と取引履歴を投入した状態。
+ */
+@State(Scope.Benchmark)
+public class LedgerState {
+    
+    @Param("10000")
+    public int accounts;
+    
+    @Param("1000000")
+    public int transactions;
+    
+    // trueで取引の書き込みをパイプラインモードにする（-p pipeline=false,true で比較）
+    @Param("false")
+    public boolean pipeline;
+    
+    // falseで口座情報・取引履歴をDBから読む（-p readModel=false,true で比較）
+    @Param("true")
+    public boolean readModel;
+    
+    public ConfigurableApplicationContext context;
+    public AccountService accountService;
+    public SessionTokens sessionTokens;
+    public String[] accountNumbers;
+    public String sessionToken;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // application.propertiesより優先させるためコマンドライン引数として渡す
+        context = new SpringApplicationBuilder(SimpleBankApplication.class)
+            .web(WebApplicationType.NONE)
+            .run(
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--simplebank.journal.enabled=false",
+                // 同じ口座に繰り返し出金・振込するので、出金・振込の上限は外す
+                "--simplebank.velocity.enabled=false",
+                "--simplebank.ledger.pipeline.enabled=" + pipeline,
+                "--simplebank.read-model.enabled=" + readModel,
+                "--logging.level.root=WARN"
+            );
+        accountService = context.getBean(AccountService.class);
+        accountNumbers = LedgerSeeder.seed(context.getBean(JdbcTemplate.class), accounts, transactions);
+        // 投入はDBへ直接行うので、読み取りモデルを作り直す
+        context.getBean(AccountReadModel.class).rebuild();
+        sessionTokens = context.getBean(SessionTokens.class);
+        sessionToken = sessionTokens.issue(hotAccount());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    public String randomAccount() {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountNumbers.length)];
+    }
+    
+    public String hotAccount() {
+        return accountNumbers[0];
+    }
+}
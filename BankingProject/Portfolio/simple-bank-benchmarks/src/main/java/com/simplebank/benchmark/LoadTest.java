@@ -0,0 +1,446 @@
+package com.simplebank.benchmark;
+
+import com.simplebank.SimpleBankApplication;
+import com.simplebank.service.AccountReadModel;
+import com.simplebank.service.AccountService;
+import com.simplebank.service.LedgerOutbox;
+import com.simplebank.service.SessionTokens;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP経由の負荷試験・長時間試験（ソーク）ハーネス。
+ * アプリをランダムポートで起動して計測用データを投入し、口座APIに混合負荷をかけて
+ * 操作ごとのスループット・p50/p99/p999・エラー率を出力する。レイテンシはHdrHistogramで記録する。
+ * <p>
+ * 口座の選び方はZipf分布（--zipf=指数。0なら一様）で、振込は送金元・送金先ともこの分布から選ぶ。
+ * --rateを指定すると目標スループットの開ループになり、予定時刻からの遅れも含めて記録する（coordinated omission対策）。
+ * 省略時は各クライアントが応答を待って次を送る閉ループ。
+ * <p>
+ * 各ミックスの後に、お金が増減していないかを確認する。
+ * 全口座の残高合計が「開始時の合計＋成功した入金−成功した出金」と一致すること、
+ * 各口座の残高がその口座の取引の合計と一致すること。どちらかが崩れていれば終了コード1で終わる。
+ * <p>
+ * 実行例:
+ *   java -cp target/benchmarks.jar com.simplebank.benchmark.LoadTest \
+ *       --mixes=balanced,transfer-heavy,history-heavy --clients=32 --duration=60 --zipf=1.1 \
+ *       --accounts=10000 --transactions=200000 [--rate=2000] [--report-interval=10] [--hot-buckets=8] [--simplebank.xxx=...]
+ * --hot-bucketsを指定すると、最も選ばれやすい口座の残高をその数のバケットに分散してから負荷をかける。
+ * --simplebank. / --spring. で始まる引数はそのままアプリに渡す（例: --simplebank.ledger.pipeline.enabled=true）。
+ * 既定で外している受付制御も、--simplebank.admission.enabled=true で有効にして試せる（断られた分はエラーに数える）。
+ */
+public class LoadTest {
+    
+    // 入出金・振込の金額（1円）。残高不足で失敗しにくいよう小さくする
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    
+    enum Operation {
+        ACCOUNT,
+        HISTORY,
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER
+    }
+    
+    /**
+     * 操作の比率（合計100）。
+     */
+    enum Mix {
+        BALANCED("balanced", 40, 20, 15, 10, 15),
+        TRANSFER_HEAVY("transfer-heavy", 10, 5, 5, 5, 75),
+        HISTORY_HEAVY("history-heavy", 20, 70, 5, 0, 5);
+        
+        private final String label;
+        private final int[] cumulative = new int[Operation.values().length];
+        
+        Mix(String label, int... weights) {
+            this.label = label;
+            int sum = 0;
+            for (int i = 0; i < weights.length; i++) {
+                sum += weights[i];
+                cumulative[i] = sum;
+            }
+        }
+        
+        Operation pick(ThreadLocalRandom random) {
+            int dice = random.nextInt(100);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (dice < cumulative[i]) {
+                    return Operation.values()[i];
+                }
+            }
+            return Operation.ACCOUNT;
+        }
+        
+        static Mix of(String label) {
+            return Arrays.stream(values()).filter(mix -> mix.label.equals(label)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("不明なミックスです: " + label));
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        List<Mix> mixes = Arrays.stream(option(args, "mixes", "balanced,transfer-heavy,history-heavy").split(","))
+            .map(Mix::of).toList();
+        int clients = Integer.parseInt(option(args, "clients", "32"));
+        int durationSeconds = Integer.parseInt(option(args, "duration", "60"));
+        int warmupSeconds = Integer.parseInt(option(args, "warmup", "10"));
+        int reportIntervalSeconds = Integer.parseInt(option(args, "report-interval", "10"));
+        double rate = Double.parseDouble(option(args, "rate", "0"));
+        double zipfExponent = Double.parseDouble(option(args, "zipf", "1.1"));
+        int accounts = Integer.parseInt(option(args, "accounts", "10000"));
+        int transactions = Integer.parseInt(option(args, "transactions", "200000"));
+        int hotBuckets = Integer.parseInt(option(args, "hot-buckets", "0"));
+        
+        boolean conserved = true;
+        try (ConfigurableApplicationContext context = boot(args)) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            String[] accountNumbers = LedgerSeeder.seed(jdbc, accounts, transactions);
+            // 投入はDBへ直接行うので、読み取りモデルを作り直す
+            context.getBean(AccountReadModel.class).rebuild();
+            if (hotBuckets > 0) {
+                // Zipf分布では先頭の口座が最も選ばれる
+                context.getBean(AccountService.class).configureBalanceBuckets(accountNumbers[0], hotBuckets);
+            }
+            // ログインは計測対象外。トークンは事前に発行しておく
+            SessionTokens sessionTokens = context.getBean(SessionTokens.class);
+            String[] tokens = Arrays.stream(accountNumbers).map(sessionTokens::issue).toArray(String[]::new);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/account";
+            ZipfSampler sampler = new ZipfSampler(accountNumbers.length, zipfExponent);
+            Target target = new Target(baseUrl, accountNumbers, tokens, sampler);
+            
+            System.out.printf("clients=%d duration=%ds rate=%s zipf=%.2f accounts=%d transactions=%d hot-buckets=%d%n",
+                clients, durationSeconds, rate > 0 ? String.format("%.0f/s", rate) : "closed-loop",
+                zipfExponent, accounts, transactions, hotBuckets);
+            BigDecimal initialTotal = totalBalance(jdbc);
+            long netDeposits = 0;
+            for (Mix mix : mixes) {
+                // JITとコネクションを温めてから計測する（温めの入出金も残高の確認に含める）
+                Run warmup = run(target, mix, clients, warmupSeconds, rate, 0);
+                Run measured = run(target, mix, clients, durationSeconds, rate, reportIntervalSeconds);
+                netDeposits += warmup.netDeposits() + measured.netDeposits();
+                printReport(mix, measured, durationSeconds);
+                
+                awaitOutbox(context);
+                Conservation check = Conservation.check(jdbc, initialTotal, netDeposits,
+                    warmup.ambiguous() + measured.ambiguous());
+                System.out.println(check);
+                System.out.println();
+                conserved &= check.ok();
+            }
+        }
+        if (!conserved) {
+            System.exit(1);
+        }
+    }
+    
+    private static ConfigurableApplicationContext boot(String[] args) {
+        List<String> appArgs = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+            "--spring.jpa.show-sql=false",
+            "--simplebank.journal.enabled=false",
+            // 同じ口座に繰り返し出金・振込するので、出金・振込の上限は外す
+            "--simplebank.velocity.enabled=false",
+            // クライアントはRetry-Afterを待たずに次を送るので、受付制御は外して処理能力そのものを測る
+            "--simplebank.admission.enabled=false",
+            "--logging.level.root=WARN"
+        ));
+        List<String> overrides = Arrays.stream(args)
+            .filter(a -> a.startsWith("--simplebank.") || a.startsWith("--spring.")).toList();
+        // 同じ設定を2回渡すと値が連結されるので、指定された設定の既定値は外す
+        appArgs.removeIf(a -> overrides.stream().anyMatch(o -> o.startsWith(a.substring(0, a.indexOf('=') + 1))));
+        appArgs.addAll(overrides);
+        return new SpringApplicationBuilder(SimpleBankApplication.class).run(appArgs.toArray(String[]::new));
+    }
+    
+    // ---- 負荷 ----
+    
+    private static Run run(Target target, Mix mix, int clients, int durationSeconds, double rate, int reportIntervalSeconds)
+            throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+        Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(operation, new LongAdder());
+        }
+        LongAdder deposits = new LongAdder();
+        LongAdder withdrawals = new LongAdder();
+        LongAdder ambiguous = new LongAdder();
+        // 開ループのとき、各クライアントが1件を送る間隔
+        long intervalNanos = rate > 0 ? (long) (clients * 1_000_000_000.0 / rate) : 0;
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.SECONDS.toNanos(durationSeconds);
+        CountDownLatch done = new CountDownLatch(clients);
+        
+        for (int c = 0; c < clients; c++) {
+            // 開ループでは送信時刻をクライアント間でずらす
+            long firstStart = started + (intervalNanos == 0 ? 0 : intervalNanos * c / clients);
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long scheduled = firstStart;
+                while (true) {
+                    if (intervalNanos > 0) {
+                        long wait = scheduled - System.nanoTime();
+                        if (wait > 0) {
+                            sleepNanos(wait);
+                        }
+                    }
+                    long start = intervalNanos > 0 ? scheduled : System.nanoTime();
+                    if (start >= deadline) {
+                        break;
+                    }
+                    Operation operation = mix.pick(random);
+                    int status;
+                    try {
+                        status = http.send(target.request(operation, random), HttpResponse.BodyHandlers.discarding())
+                            .statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    long latency = System.nanoTime() - start;
+                    recorders.get(operation).recordValue(Math.min(latency, HIGHEST_TRACKABLE_NANOS));
+                    if (status == 200) {
+                        if (operation == Operation.DEPOSIT) {
+                            deposits.increment();
+                        } else if (operation == Operation.WITHDRAW) {
+                            withdrawals.increment();
+                        }
+                    } else {
+                        errors.get(operation).increment();
+                        // 通信エラーは反映されたか分からない（残高の確認では誤差として扱う）
+                        if (status == -1 && (operation == Operation.DEPOSIT || operation == Operation.WITHDRAW)) {
+                            ambiguous.increment();
+                        }
+                    }
+                    scheduled += intervalNanos;
+                }
+                done.countDown();
+            }, "load-client-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            totals.put(operation, new Histogram(HIGHEST_TRACKABLE_NANOS, 3));
+        }
+        long reportNanos = TimeUnit.SECONDS.toNanos(reportIntervalSeconds);
+        long lastReport = started;
+        while (!done.await(reportIntervalSeconds > 0 ? reportIntervalSeconds : 1, TimeUnit.SECONDS)) {
+            if (reportIntervalSeconds > 0 && System.nanoTime() - lastReport >= reportNanos) {
+                long now = System.nanoTime();
+                printInterval(now - started, now - lastReport, drain(recorders, totals));
+                lastReport = now;
+            }
+        }
+        drain(recorders, totals);
+        
+        Map<Operation, Long> errorCounts = new EnumMap<>(Operation.class);
+        errors.forEach((operation, count) -> errorCounts.put(operation, count.sum()));
+        return new Run(totals, errorCounts, deposits.sum() - withdrawals.sum(), ambiguous.sum());
+    }
+    
+    /**
+     * 前回からの区間のヒストグラムを取り出して合計に加え、全操作をまとめた区間のヒストグラムを返す。
+     */
+    private static Histogram drain(Map<Operation, Recorder> recorders, Map<Operation, Histogram> totals) {
+        Histogram interval = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        recorders.forEach((operation, recorder) -> {
+            Histogram histogram = recorder.getIntervalHistogram();
+            totals.get(operation).add(histogram);
+            interval.add(histogram);
+        });
+        return interval;
+    }
+    
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * パイプラインモードでは、取引表への書き出しが終わってから残高を確認する。
+     */
+    private static void awaitOutbox(ConfigurableApplicationContext context) throws InterruptedException {
+        LedgerOutbox outbox = context.getBean(LedgerOutbox.class);
+        for (int i = 0; i < 600 && outbox.stats().pending() > 0; i++) {
+            Thread.sleep(100);
+        }
+    }
+    
+    // ---- 出力 ----
+    
+    private static void printInterval(long elapsedNanos, long intervalNanos, Histogram interval) {
+        System.out.printf("  [%4ds] %8.1f req/s  p50=%7.2fms  p99=%7.2fms  max=%7.2fms%n",
+            TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+            interval.getTotalCount() * 1_000_000_000.0 / intervalNanos,
+            millis(interval.getValueAtPercentile(50)),
+            millis(interval.getValueAtPercentile(99)),
+            millis(interval.getMaxValue()));
+    }
+    
+    private static void printReport(Mix mix, Run run, int durationSeconds) {
+        System.out.println("mix=" + mix.label);
+        System.out.println("operation,count,throughput_rps,p50_ms,p99_ms,p999_ms,max_ms,errors,error_rate");
+        Histogram all = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        long allErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = run.histograms().get(operation);
+            long operationErrors = run.errors().get(operation);
+            if (histogram.getTotalCount() > 0) {
+                System.out.println(row(operation.name().toLowerCase(), histogram, operationErrors, durationSeconds));
+            }
+            all.add(histogram);
+            allErrors += operationErrors;
+        }
+        System.out.println(row("total", all, allErrors, durationSeconds));
+    }
+    
+    private static String row(String name, Histogram histogram, long errors, int durationSeconds) {
+        long count = histogram.getTotalCount();
+        return String.format("%s,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%d,%.4f", name, count, count / (double) durationSeconds,
+            millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+            millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()),
+            errors, count == 0 ? 0 : errors / (double) count);
+    }
+    
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+    
+    private static BigDecimal totalBalance(JdbcTemplate jdbc) {
+        // 残高を分散する口座は、まだ寄せていないバケットの入金も残高に含む
+        return jdbc.queryForObject("SELECT (SELECT COALESCE(SUM(balance), 0) FROM accounts) "
+            + "+ (SELECT COALESCE(SUM(balance), 0) FROM account_balance_buckets)", BigDecimal.class);
+    }
+    
+    private static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        return Arrays.stream(args).filter(a -> a.startsWith(prefix)).map(a -> a.substring(prefix.length()))
+            .findFirst().orElse(defaultValue);
+    }
+    
+    private record Run(Map<Operation, Histogram> histograms, Map<Operation, Long> errors, long netDeposits,
+                       long ambiguous) {
+    }
+    
+    /**
+     * 残高の確認結果。ambiguousは通信エラーで反映されたか分からない入出金の件数で、合計の差がその範囲なら許容する。
+     */
+    private record Conservation(BigDecimal expectedTotal, BigDecimal actualTotal, long ambiguous,
+                                long accountsOutOfBalance) {
+        
+        static Conservation check(JdbcTemplate jdbc, BigDecimal initialTotal, long netDeposits, long ambiguous) {
+            BigDecimal expected = initialTotal.add(AMOUNT.multiply(BigDecimal.valueOf(netDeposits)));
+            long outOfBalance = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM accounts a LEFT JOIN ("
+                    + "SELECT account_id, SUM(CASE WHEN type IN ('DEPOSIT', 'TRANSFER_IN', 'INTEREST') THEN amount ELSE -amount END) AS total "
+                    + "FROM transactions GROUP BY account_id) t ON t.account_id = a.id "
+                    + "LEFT JOIN (SELECT account_id, SUM(balance) AS total FROM account_balance_buckets GROUP BY account_id) b "
+                    + "ON b.account_id = a.id "
+                    + "WHERE a.balance + COALESCE(b.total, 0) <> COALESCE(t.total, 0)", Long.class);
+            return new Conservation(expected, totalBalance(jdbc), ambiguous, outOfBalance);
+        }
+        
+        boolean ok() {
+            BigDecimal difference = actualTotal.subtract(expectedTotal).abs();
+            return accountsOutOfBalance == 0
+                && difference.compareTo(AMOUNT.multiply(BigDecimal.valueOf(ambiguous))) <= 0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("conservation: %s (expected_total=%s actual_total=%s ambiguous=%d accounts_out_of_balance=%d)",
+                ok() ? "OK" : "VIOLATED", expectedTotal.toPlainString(), actualTotal.toPlainString(), ambiguous,
+                accountsOutOfBalance);
+        }
+    }
+    
+    // ---- リクエスト ----
+    
+    private record Target(String baseUrl, String[] accountNumbers, String[] tokens, ZipfSampler sampler) {
+        
+        HttpRequest request(Operation operation, ThreadLocalRandom random) {
+            int account = sampler.next(random);
+            String accountNumber = accountNumbers[account];
+            String authorization = "Bearer " + tokens[account];
+            return switch (operation) {
+                case ACCOUNT -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + accountNumber))
+                    .header("Authorization", authorization).GET().build();
+                case HISTORY -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + accountNumber + "/transactions"))
+                    .header("Authorization", authorization).GET().build();
+                case DEPOSIT -> post("/deposit", authorization,
+                    "{\"accountNumber\":\"" + accountNumber + "\",\"amount\":" + AMOUNT + "}");
+                case WITHDRAW -> post("/withdraw", authorization,
+                    "{\"accountNumber\":\"" + accountNumber + "\",\"amount\":" + AMOUNT + "}");
+                case TRANSFER -> {
+                    int to = sampler.next(random);
+                    if (to == account) {
+                        to = (to + 1) % accountNumbers.length;
+                    }
+                    yield post("/transfer", authorization, "{\"fromAccountNumber\":\"" + accountNumber
+                        + "\",\"toAccountNumber\":\"" + accountNumbers[to] + "\",\"amount\":" + AMOUNT + "}");
+                }
+            };
+        }
+        
+        private HttpRequest post(String path, String authorization, String body) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        }
+    }
+    
+    /**
+     * 順位kの口座を 1/k^s に比例する確率で選ぶ（順位0が最も選ばれる口座）。累積分布を二分探索する。
+     */
+    static final class ZipfSampler {
+        
+        private final double[] cumulative;
+        
+        ZipfSampler(int size, double exponent) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int k = 0; k < size; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < size; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+        
+        int next(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.simplebank.benchmark;
+
+import com.simplebank.SimpleBankApplication;
+import com.simplebank.service.SessionTokens;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * プラットフォームスレッドモードと仮想スレッドモードを同じ負荷で比較するハーネス。
+ * モードごとにアプリをランダムポートで起動し、同時クライアント数を変えながら
+ * 口座照会60%・取引履歴20%・入金20%の負荷をかけ、スループットとp50/p99を出力する。
+ *
+ * 実行例（仮想スレッドモードはJDK 21以上が必要）:
+ *   java -cp target/benchmarks.jar com.simplebank.benchmark.ThreadModeComparison \
+ *       --clients=50,200,1000 --duration=20 --accounts=10000 --transactions=200000
+ */
+public class ThreadModeComparison {
+    
+    public static void main(String[] args) throws Exception {
+        int[] clientCounts = Arrays.stream(option(args, "clients", "50,200,1000").split(","))
+            .mapToInt(Integer::parseInt).toArray();
+        int durationSeconds = Integer.parseInt(option(args, "duration", "20"));
+        int accounts = Integer.parseInt(option(args, "accounts", "10000"));
+        int transactions = Integer.parseInt(option(args, "transactions", "200000"));
+        
+        List<String> rows = new ArrayList<>();
+        rows.add("mode,clients,throughput_rps,p50_ms,p99_ms,errors");
+        for (String mode : List.of("platform", "virtual")) {
+            if (mode.equals("virtual") && Runtime.version().feature() < 21) {
+                System.out.println("JDK " + Runtime.version().feature() + " のため仮想スレッドモードはスキップします");
+                continue;
+            }
+            try (ConfigurableApplicationContext context = boot(mode)) {
+                String[] accountNumbers = LedgerSeeder.seed(context.getBean(JdbcTemplate.class), accounts, transactions);
+                // ログインは計測対象外。トークンは事前に発行しておく
+                SessionTokens sessionTokens = context.getBean(SessionTokens.class);
+                String[] tokens = Arrays.stream(accountNumbers).map(sessionTokens::issue).toArray(String[]::new);
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/account";
+                // JITとコネクションを温めてから計測する
+                run(baseUrl, accountNumbers, tokens, clientCounts[0], Math.min(durationSeconds, 10));
+                for (int clients : clientCounts) {
+                    Result result = run(baseUrl, accountNumbers, tokens, clients, durationSeconds);
+                    String row = String.format("%s,%d,%.1f,%.2f,%.2f,%d", mode, clients, result.throughput(),
+                        result.percentile(0.50), result.percentile(0.99), result.errors());
+                    System.out.println(row);
+                    rows.add(row);
+                }
+            }
+        }
+        System.out.println();
+        rows.forEach(System.out::println);
+    }
+    
+    private static ConfigurableApplicationContext boot(String mode) {
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.datasource.url=jdbc:h2:mem:compare-" + mode + ";DB_CLOSE_DELAY=-1",
+            "--spring.jpa.show-sql=false",
+            "--simplebank.journal.enabled=false",
+            // 同じ口座に繰り返し出金・振込するので、出金・振込の上限は外す
+            "--simplebank.velocity.enabled=false",
+            // クライアントはRetry-Afterを待たずに次を送るので、受付制御は外して処理能力そのものを測る
+            "--simplebank.admission.enabled=false",
+            "--logging.level.root=WARN"
+        ));
+        if (mode.equals("virtual")) {
+            args.add("--spring.profiles.active=virtual");
+        }
+        return new SpringApplicationBuilder(SimpleBankApplication.class).run(args.toArray(String[]::new));
+    }
+    
+    private static Result run(String baseUrl, String[] accountNumbers, String[] tokens, int clients, int durationSeconds)
+            throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        long[][] samples = new long[clients][];
+        int[] sampleCounts = new int[clients];
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + Duration.ofSeconds(durationSeconds).toNanos();
+        CountDownLatch done = new CountDownLatch(clients);
+        
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int account = random.nextInt(accountNumbers.length);
+                    HttpRequest request = nextRequest(baseUrl, accountNumbers[account], tokens[account], random);
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                samples[client] = latencies;
+                sampleCounts[client] = count;
+                done.countDown();
+            }, "client-" + c);
+            thread.start();
+        }
+        done.await();
+        
+        int total = Arrays.stream(sampleCounts).sum();
+        long[] merged = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(samples[c], 0, merged, offset, sampleCounts[c]);
+            offset += sampleCounts[c];
+        }
+        Arrays.sort(merged);
+        return new Result(merged, total / (double) durationSeconds, errors.sum());
+    }
+    
+    private static HttpRequest nextRequest(String baseUrl, String accountNumber, String token, ThreadLocalRandom random) {
+        String authorization = "Bearer " + token;
+        int dice = random.nextInt(100);
+        if (dice < 60) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/" + accountNumber))
+                .header("Authorization", authorization).GET().build();
+        }
+        if (dice < 80) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/" + accountNumber + "/transactions"))
+                .header("Authorization", authorization).GET().build();
+        }
+        String body = "{\"accountNumber\":\"" + accountNumber + "\",\"amount\":1}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/deposit"))
+            .header("Authorization", authorization)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+    }
+    
+    private static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        return Arrays.stream(args).filter(a -> a.startsWith(prefix)).map(a -> a.substring(prefix.length()))
+            .findFirst().orElse(defaultValue);
+    }
+    
+    private record Result(long[] sortedLatencies, double throughput, long errors) {
+        double percentile(double p) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(p * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
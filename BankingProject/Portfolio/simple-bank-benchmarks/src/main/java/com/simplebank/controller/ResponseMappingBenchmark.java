@@ -0,0 +1,62 @@
+package com.simplebank.controller;
+
+import com.simplebank.entity.Transaction;
+import com.simplebank.money.Money;
+import com.simplebank.repository.TransactionView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccountControllerのDTO変換（取引履歴1ページ分）のベンチマーク。
+ * DTOがパッケージプライベートのため、同じパッケージに置いている。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseMappingBenchmark {
+    
+    @Param({"50", "500"})
+    public int pageSize;
+    
+    private List<TransactionView> views;
+    
+    @Setup
+    public void setUp() {
+        views = new ArrayList<>(pageSize);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < pageSize; i++) {
+            views.add(new View((long) i, Money.ofMajor(1000), Money.ofMajor(1000L * (i + 1)), now.minusMinutes(i)));
+        }
+    }
+    
+    @Benchmark
+    public List<TransactionResponse> mapHistoryPage() {
+        return views.stream().map(TransactionResponse::new).toList();
+    }
+    
+    private record View(Long id, Money amount, Money balanceAfter, LocalDateTime createdAt)
+            implements TransactionView {
+        public Long getId() { return id; }
+        public Transaction.TransactionType getType() { return Transaction.TransactionType.DEPOSIT; }
+        public Money getAmount() { return amount; }
+        public Money getBalanceAfter() { return balanceAfter; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public String getDescription() { return null; }
+    }
+}
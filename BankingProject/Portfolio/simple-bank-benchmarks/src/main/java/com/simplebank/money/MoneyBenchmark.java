@@ -0,0 +1,91 @@
+package com.simplebank.money;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 振込1件分の残高計算（検証・残高比較・引き落とし・入金）と、リクエストの金額の読み込みを
+ * BigDecimalとMoneyで比較する（Springは起動しない）。
+ * LedgerBenchmarkではDBアクセスの割り当てに埋もれる差を -prof gc で確認する用。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+    
+    private static final String REQUEST = "{\"fromAccountNumber\":\"1234567890\",\"toAccountNumber\":\"0987654321\",\"amount\":1234.50}";
+    
+    private BigDecimal fromDecimal;
+    private BigDecimal toDecimal;
+    private BigDecimal amountDecimal;
+    private Money fromMoney;
+    private Money toMoney;
+    private Money amountMoney;
+    private ObjectReader decimalReader;
+    private ObjectReader moneyReader;
+    
+    @Setup
+    public void setUp() {
+        fromDecimal = new BigDecimal("100000.00");
+        toDecimal = new BigDecimal("50000.00");
+        amountDecimal = new BigDecimal("1234.50");
+        fromMoney = Money.ofMajor(100000);
+        toMoney = Money.ofMajor(50000);
+        amountMoney = Money.parse("1234.50");
+        ObjectMapper mapper = new ObjectMapper();
+        decimalReader = mapper.readerFor(DecimalRequest.class);
+        moneyReader = mapper.readerFor(MoneyRequest.class);
+    }
+    
+    @Benchmark
+    public BigDecimal transferBigDecimal() {
+        if (amountDecimal.compareTo(BigDecimal.ZERO) <= 0 || fromDecimal.compareTo(amountDecimal) < 0) {
+            throw new IllegalStateException();
+        }
+        BigDecimal fromNewBalance = fromDecimal.subtract(amountDecimal);
+        BigDecimal toNewBalance = toDecimal.add(amountDecimal);
+        return fromNewBalance.max(toNewBalance);
+    }
+    
+    @Benchmark
+    public Money transferMoney() {
+        if (!amountMoney.isPositive() || fromMoney.isLessThan(amountMoney)) {
+            throw new IllegalStateException();
+        }
+        Money fromNewBalance = fromMoney.minus(amountMoney);
+        Money toNewBalance = toMoney.plus(amountMoney);
+        return fromNewBalance.max(toNewBalance);
+    }
+    
+    @Benchmark
+    public DecimalRequest readBigDecimal() throws IOException {
+        return decimalReader.readValue(REQUEST);
+    }
+    
+    @Benchmark
+    public MoneyRequest readMoney() throws IOException {
+        return moneyReader.readValue(REQUEST);
+    }
+    
+    public record DecimalRequest(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+    }
+    
+    public record MoneyRequest(String fromAccountNumber, String toAccountNumber, Money amount) {
+    }
+}
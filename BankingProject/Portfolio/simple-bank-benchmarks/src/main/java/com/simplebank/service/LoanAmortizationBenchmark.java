@@ -0,0 +1,55 @@
+package com.simplebank.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ローン返済計算のベンチマーク（Springは起動しない）。
+ * -prof gc で返済ループ・NDJSON出力に行ごとの割り当てがないことを確認できる。
+ * LoanAmortizationがパッケージプライベートのため、同じパッケージに置いている。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanAmortizationBenchmark {
+    
+    private static final BigDecimal RATE = new BigDecimal("1.475");
+    
+    @Param({"120", "420"})
+    public int months;
+    
+    private LoanService loanService;
+    private LoanTerms terms;
+    
+    @Setup
+    public void setUp() {
+        loanService = new LoanService(1);
+        terms = new LoanTerms(35_000_000, RATE, months);
+    }
+    
+    @Benchmark
+    public LoanQuote quote() {
+        return loanService.quote(terms);
+    }
+    
+    @Benchmark
+    public void writeSchedule() throws IOException {
+        loanService.writeSchedule(terms, OutputStream.nullOutputStream());
+    }
+}
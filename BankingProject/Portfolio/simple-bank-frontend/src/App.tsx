@@ -1,7 +1,7 @@
 import React, { useState } from 'react';
 import Login from './components/Login';
 import Dashboard from './components/Dashboard';
-import { Account } from './services/api';
+import api, { Account } from './services/api';
 
 function App() {
   const [isLoggedIn, setIsLoggedIn] = useState(false);
@@ -13,6 +13,7 @@ function App() {
   };
 
   const handleLogout = () => {
+    api.logout();
     setAccount(null);
     setIsLoggedIn(false);
   };
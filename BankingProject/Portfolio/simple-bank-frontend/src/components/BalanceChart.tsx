@@ -1,4 +1,4 @@
-import React from 'react';
+import React, { useState, useEffect } from 'react';
 import {
   Chart as ChartJS,
   CategoryScale,
@@ -11,6 +11,7 @@ import {
   Filler
 } from 'chart.js';
 import { Line } from 'react-chartjs-2';
+import api, { BalancePoint, BalanceResolution } from '../services/api';
 
 ChartJS.register(
   CategoryScale,
@@ -23,38 +24,82 @@ ChartJS.register(
   Filler
 );
 
-interface Transaction {
-  id: number;
-  type: string;
-  amount: number;
-  balanceAfter: number;
-  createdAt: string;
-  description?: string;
-}
-
 interface BalanceChartProps {
-  transactions: Transaction[];
+  accountNumber: string;
+  // 値が変わったら再取得する（入出金後の残高など）
+  refreshKey?: unknown;
 }
 
-const BalanceChart: React.FC<BalanceChartProps> = ({ transactions }) => {
-  // 最新10件の取引を取得（古い順に並べ替え）
-  const recentTransactions = [...transactions].reverse().slice(-10);
-  
-  const labels = recentTransactions.map(tx => {
-    const date = new Date(tx.createdAt);
-    return `${date.getMonth() + 1}/${date.getDate()} ${date.getHours()}:${date.getMinutes().toString().padStart(2, '0')}`;
-  });
-  
+// 集計単位ごとの表示期間
+const RANGES: Record<BalanceResolution, { label: string; days: number }> = {
+  HOUR: { label: '時間（直近2日）', days: 2 },
+  DAY: { label: '日（直近30日）', days: 30 },
+  MONTH: { label: '月（直近12か月）', days: 365 }
+};
+
+const toDateParam = (date: Date) =>
+  `${date.getFullYear()}-${(date.getMonth() + 1).toString().padStart(2, '0')}-${date.getDate().toString().padStart(2, '0')}`;
+
+const formatLabel = (start: string, resolution: BalanceResolution) => {
+  const date = new Date(start);
+  switch (resolution) {
+    case 'HOUR':
+      return `${date.getMonth() + 1}/${date.getDate()} ${date.getHours()}:00`;
+    case 'DAY':
+      return `${date.getMonth() + 1}/${date.getDate()}`;
+    case 'MONTH':
+      return `${date.getFullYear()}/${date.getMonth() + 1}`;
+  }
+};
+
+const BalanceChart: React.FC<BalanceChartProps> = ({ accountNumber, refreshKey }) => {
+  const [resolution, setResolution] = useState<BalanceResolution>('DAY');
+  const [points, setPoints] = useState<BalancePoint[]>([]);
+  const [error, setError] = useState('');
+
+  useEffect(() => {
+    const to = new Date();
+    const from = new Date();
+    from.setDate(to.getDate() - (RANGES[resolution].days - 1));
+    api.getBalanceSeries(accountNumber, resolution, toDateParam(from), toDateParam(to))
+      .then(series => {
+        setPoints(series.points);
+        setError('');
+      })
+      .catch(err => {
+        console.error('残高推移の取得に失敗しました', err);
+        setError('残高推移の取得に失敗しました');
+      });
+  }, [accountNumber, resolution, refreshKey]);
+
+  const labels = points.map(point => formatLabel(point.start, resolution));
+
   const data = {
     labels,
     datasets: [
       {
         label: '残高推移',
-        data: recentTransactions.map(tx => tx.balanceAfter),
+        data: points.map(point => point.close),
         borderColor: 'rgb(76, 175, 80)',
         backgroundColor: 'rgba(76, 175, 80, 0.1)',
         fill: true,
         tension: 0.4,
+      },
+      {
+        label: '最大',
+        data: points.map(point => point.max),
+        borderColor: 'rgba(33, 150, 243, 0.5)',
+        borderDash: [4, 4],
+        pointRadius: 0,
+        fill: false,
+      },
+      {
+        label: '最小',
+        data: points.map(point => point.min),
+        borderColor: 'rgba(244, 67, 54, 0.5)',
+        borderDash: [4, 4],
+        pointRadius: 0,
+        fill: false,
       }
     ]
   };
@@ -67,12 +112,12 @@ const BalanceChart: React.FC<BalanceChartProps> = ({ transactions }) => {
       },
       title: {
         display: true,
-        text: '残高推移グラフ（最新10件）'
+        text: `残高推移グラフ（${RANGES[resolution].label}）`
       },
       tooltip: {
         callbacks: {
           label: (context: any) => {
-            return `残高: ¥${context.parsed.y.toLocaleString()}`;
+            return `${context.dataset.label}: ¥${context.parsed.y.toLocaleString()}`;
           }
         }
       }
@@ -91,6 +136,18 @@ const BalanceChart: React.FC<BalanceChartProps> = ({ transactions }) => {
 
   return (
     <div style={{ padding: '20px', backgroundColor: 'white', borderRadius: '10px', marginTop: '20px' }}>
+      <div style={{ marginBottom: '10px' }}>
+        {(Object.keys(RANGES) as BalanceResolution[]).map(key => (
+          <button
+            key={key}
+            onClick={() => setResolution(key)}
+            style={{ marginRight: '8px', fontWeight: key === resolution ? 'bold' : 'normal' }}
+          >
+            {RANGES[key].label}
+          </button>
+        ))}
+      </div>
+      {error && <p style={{ color: 'red' }}>{error}</p>}
       <Line data={data} options={options} />
     </div>
   );
@@ -1,8 +1,19 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import api, { Account, Transaction } from '../services/api';
 import BalanceChart from './BalanceChart';
 import LoanCalculator from './LoanCalculator';
 
+const TRANSACTION_TYPE_LABELS: Record<string, string> = {
+  DEPOSIT: '入金',
+  WITHDRAW: '出金',
+  TRANSFER_IN: '振込入金',
+  TRANSFER_OUT: '振込出金',
+  INTEREST: '利息',
+};
+
+// 混雑時にサーバーが受付を断ったとき（503）の表示
+const BUSY_MESSAGE = '混み合っています。しばらくしてから再度お試しください';
+
 interface DashboardProps {
   account: Account;
   onLogout: () => void;
@@ -16,15 +27,39 @@ const Dashboard: React.FC<DashboardProps> = ({ account: initialAccount, onLogout
   const [toAccountNumber, setToAccountNumber] = useState('');
   const [message, setMessage] = useState('');
   const [error, setError] = useState('');
+  // 反映済みの最新の取引ID。SSEとPOSTの応答のどちらが先に届いても、古い取引の残高で上書きしない
+  const latestTransactionId = useRef(0);
+
+  // 取引1件と取引後の残高を反映する（同じ取引が両方から届いたら2回目は無視する）
+  const applyTransaction = (transaction: Transaction, balance: number) => {
+    if (transaction.id > latestTransactionId.current) {
+      latestTransactionId.current = transaction.id;
+      setAccount(current => ({ ...current, balance }));
+    }
+    setTransactions(current => current.some(t => t.id === transaction.id)
+      ? current
+      : [transaction, ...current]);
+  };
 
   useEffect(() => {
     loadTransactionHistory();
+    // 取引のたびに口座情報と履歴を取り直さず、サーバーから届いた残高と取引1件だけを反映する
+    const unsubscribe = api.subscribeAccount(account.accountNumber, update => {
+      applyTransaction(update.transaction, update.balance);
+    }, () => {
+      refreshAccount();
+      loadTransactionHistory();
+    });
+    return unsubscribe;
   }, []);
 
   const loadTransactionHistory = async () => {
     try {
       const history = await api.getTransactionHistory(account.accountNumber);
       setTransactions(history);
+      if (history.length > 0) {
+        latestTransactionId.current = Math.max(latestTransactionId.current, history[0].id);
+      }
     } catch (err) {
       console.error('取引履歴の取得に失敗しました', err);
     }
@@ -45,13 +80,13 @@ const Dashboard: React.FC<DashboardProps> = ({ account: initialAccount, onLogout
     setMessage('');
 
     try {
-      await api.deposit(account.accountNumber, parseFloat(amount));
+      // 自分の取引は応答の取引（取引後の残高を含む）をそのまま反映する（SSEの通知を待たない）
+      const transaction = await api.deposit(account.accountNumber, parseFloat(amount));
+      applyTransaction(transaction, transaction.balanceAfter);
       setMessage(`${amount}円を入金しました`);
       setAmount('');
-      await refreshAccount();
-      await loadTransactionHistory();
-    } catch (err) {
-      setError('入金に失敗しました');
+    } catch (err: any) {
+      setError(err.response?.status === 503 ? BUSY_MESSAGE : '入金に失敗しました');
     }
   };
 
@@ -61,13 +96,14 @@ const Dashboard: React.FC<DashboardProps> = ({ account: initialAccount, onLogout
     setMessage('');
 
     try {
-      await api.withdraw(account.accountNumber, parseFloat(amount));
+      const transaction = await api.withdraw(account.accountNumber, parseFloat(amount));
+      applyTransaction(transaction, transaction.balanceAfter);
       setMessage(`${amount}円を出金しました`);
       setAmount('');
-      await refreshAccount();
-      await loadTransactionHistory();
     } catch (err: any) {
-      setError(err.response?.data?.message || '出金に失敗しました（残高不足の可能性があります）');
+      setError(err.response?.status === 503
+        ? BUSY_MESSAGE
+        : err.response?.data?.message || '出金に失敗しました（残高不足の可能性があります）');
     }
   };
 
@@ -77,14 +113,14 @@ const Dashboard: React.FC<DashboardProps> = ({ account: initialAccount, onLogout
     setMessage('');
 
     try {
-      await api.transfer(account.accountNumber, toAccountNumber, parseFloat(amount));
+      // 応答は送金元（自分の口座）の取引
+      const transaction = await api.transfer(account.accountNumber, toAccountNumber, parseFloat(amount));
+      applyTransaction(transaction, transaction.balanceAfter);
       setMessage(`${toAccountNumber}へ${amount}円を振込みました`);
       setAmount('');
       setToAccountNumber('');
-      await refreshAccount();
-      await loadTransactionHistory();
     } catch (err: any) {
-      setError(err.response?.data?.message || '振込に失敗しました');
+      setError(err.response?.status === 503 ? BUSY_MESSAGE : err.response?.data?.message || '振込に失敗しました');
     }
   };
 
@@ -270,7 +306,7 @@ const Dashboard: React.FC<DashboardProps> = ({ account: initialAccount, onLogout
                     <tr key={tx.id}>
                       <td style={styles.td}>{formatDate(tx.createdAt)}</td>
                       <td style={styles.td}>
-                        {tx.type === 'DEPOSIT' ? '入金' : '出金'}
+                        {TRANSACTION_TYPE_LABELS[tx.type] ?? tx.type}
                       </td>
                       <td style={styles.td}>{formatCurrency(tx.amount)}</td>
                       <td style={styles.td}>{formatCurrency(tx.balanceAfter)}</td>
@@ -285,11 +321,7 @@ const Dashboard: React.FC<DashboardProps> = ({ account: initialAccount, onLogout
         {activeTab === 'chart' && (
           <div>
             <h2>残高推移グラフ</h2>
-            {transactions.length > 0 ? (
-              <BalanceChart transactions={transactions} />
-            ) : (
-              <p>グラフを表示するには取引履歴が必要です</p>
-            )}
+            <BalanceChart accountNumber={account.accountNumber} refreshKey={account.balance} />
           </div>
         )}
 
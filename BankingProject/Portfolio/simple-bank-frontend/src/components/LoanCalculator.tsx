@@ -1,23 +1,13 @@
 import React, { useState } from 'react';
-
-interface LoanCalculation {
-  monthlyPayment: number;
-  totalPayment: number;
-  totalInterest: number;
-  schedule: {
-    month: number;
-    payment: number;
-    principal: number;
-    interest: number;
-    balance: number;
-  }[];
-}
+import api, { LoanQuote, LoanScheduleRow } from '../services/api';
 
 const LoanCalculator: React.FC = () => {
   const [loanAmount, setLoanAmount] = useState<string>('1000000');
   const [interestRate, setInterestRate] = useState<string>('3.5');
   const [loanTerm, setLoanTerm] = useState<string>('12');
-  const [calculation, setCalculation] = useState<LoanCalculation | null>(null);
+  const [calculation, setCalculation] = useState<LoanQuote | null>(null);
+  const [schedule, setSchedule] = useState<LoanScheduleRow[]>([]);
+  const [error, setError] = useState('');
   const [loanType, setLoanType] = useState<'housing' | 'car' | 'education' | 'personal'>('housing');
 
   const loanTypes = {
@@ -27,41 +17,22 @@ const LoanCalculator: React.FC = () => {
     personal: { name: 'フリーローン', defaultRate: 5.0, maxAmount: 3000000, maxTerm: 60 }
   };
 
-  const calculateLoan = () => {
-    const principal = parseFloat(loanAmount);
-    const monthlyRate = parseFloat(interestRate) / 100 / 12;
+  // 計算はサーバー側（円単位の固定小数点）で行い、スケジュールは全期間をストリームで受け取る
+  const calculateLoan = async () => {
+    const principal = parseInt(loanAmount);
+    const annualRate = parseFloat(interestRate);
     const months = parseInt(loanTerm);
 
-    // 月々の返済額を計算（元利均等返済）
-    const monthlyPayment = principal * monthlyRate * Math.pow(1 + monthlyRate, months) / 
-                          (Math.pow(1 + monthlyRate, months) - 1);
-
-    let balance = principal;
-    const schedule = [];
-
-    for (let month = 1; month <= Math.min(months, 12); month++) {
-      const interestPayment = balance * monthlyRate;
-      const principalPayment = monthlyPayment - interestPayment;
-      balance -= principalPayment;
-
-      schedule.push({
-        month,
-        payment: monthlyPayment,
-        principal: principalPayment,
-        interest: interestPayment,
-        balance: Math.max(0, balance)
-      });
+    setError('');
+    setSchedule([]);
+    try {
+      setCalculation(await api.quoteLoan(principal, annualRate, months));
+      await api.streamLoanSchedule(principal, annualRate, months,
+        rows => setSchedule(current => [...current, ...rows]));
+    } catch (err) {
+      setCalculation(null);
+      setError('シミュレーションに失敗しました。入力内容を確認してください');
     }
-
-    const totalPayment = monthlyPayment * months;
-    const totalInterest = totalPayment - principal;
-
-    setCalculation({
-      monthlyPayment,
-      totalPayment,
-      totalInterest,
-      schedule
-    });
   };
 
   const formatCurrency = (amount: number) => {
@@ -145,6 +116,7 @@ const LoanCalculator: React.FC = () => {
         <button onClick={calculateLoan} style={styles.calculateButton}>
           シミュレーション実行
         </button>
+        {error && <p style={styles.error}>{error}</p>}
       </div>
 
       {calculation && (
@@ -167,29 +139,31 @@ const LoanCalculator: React.FC = () => {
           </div>
 
           <div style={styles.scheduleSection}>
-            <h4 style={styles.scheduleTitle}>返済スケジュール（最初の12ヶ月）</h4>
-            <table style={styles.table}>
-              <thead>
-                <tr>
-                  <th style={styles.th}>月</th>
-                  <th style={styles.th}>返済額</th>
-                  <th style={styles.th}>元金</th>
-                  <th style={styles.th}>利息</th>
-                  <th style={styles.th}>残高</th>
-                </tr>
-              </thead>
-              <tbody>
-                {calculation.schedule.map((row) => (
-                  <tr key={row.month}>
-                    <td style={styles.td}>{row.month}ヶ月目</td>
-                    <td style={styles.td}>{formatCurrency(row.payment)}</td>
-                    <td style={styles.td}>{formatCurrency(row.principal)}</td>
-                    <td style={styles.td}>{formatCurrency(row.interest)}</td>
-                    <td style={styles.td}>{formatCurrency(row.balance)}</td>
+            <h4 style={styles.scheduleTitle}>返済スケジュール（全{calculation.months}回）</h4>
+            <div style={styles.scheduleScroll}>
+              <table style={styles.table}>
+                <thead>
+                  <tr>
+                    <th style={styles.th}>月</th>
+                    <th style={styles.th}>返済額</th>
+                    <th style={styles.th}>元金</th>
+                    <th style={styles.th}>利息</th>
+                    <th style={styles.th}>残高</th>
                   </tr>
-                ))}
-              </tbody>
-            </table>
+                </thead>
+                <tbody>
+                  {schedule.map((row) => (
+                    <tr key={row.month}>
+                      <td style={styles.td}>{row.month}ヶ月目</td>
+                      <td style={styles.td}>{formatCurrency(row.payment)}</td>
+                      <td style={styles.td}>{formatCurrency(row.principal)}</td>
+                      <td style={styles.td}>{formatCurrency(row.interest)}</td>
+                      <td style={styles.td}>{formatCurrency(row.balance)}</td>
+                    </tr>
+                  ))}
+                </tbody>
+              </table>
+            </div>
           </div>
 
           <div style={styles.applySection}>
@@ -322,6 +296,14 @@ const styles = {
   scheduleSection: {
     marginTop: '30px',
   },
+  scheduleScroll: {
+    maxHeight: '400px',
+    overflowY: 'auto' as const,
+  },
+  error: {
+    color: '#f44336',
+    marginTop: '10px',
+  },
   scheduleTitle: {
     fontSize: '16px',
     fontWeight: 'bold',
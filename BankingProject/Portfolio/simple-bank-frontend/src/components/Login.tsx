@@ -1,4 +1,5 @@
 import React, { useState } from 'react';
+import axios from 'axios';
 import api, { Account } from '../services/api';
 import AccountCreation from './AccountCreation';
 
@@ -24,7 +25,11 @@ const Login: React.FC<LoginProps> = ({ onLogin }) => {
         setError('口座番号またはパスワードが正しくありません');
       }
     } catch (err) {
-      setError('ログインに失敗しました');
+      if (axios.isAxiosError(err) && err.response?.status === 503) {
+        setError('ログインが混み合っています。しばらくしてから再度お試しください');
+      } else {
+        setError('ログインに失敗しました');
+      }
     }
   };
 
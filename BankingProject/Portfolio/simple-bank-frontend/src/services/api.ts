@@ -2,6 +2,36 @@ import axios from 'axios';
 
 const API_BASE_URL = 'http://localhost:8080/api';
 
+// ログインで受け取ったセッショントークン。口座APIにはAuthorizationヘッダーで付ける
+let sessionToken: string | null = null;
+
+const client = axios.create();
+client.interceptors.request.use(config => {
+  if (sessionToken) {
+    config.headers.Authorization = `Bearer ${sessionToken}`;
+  }
+  return config;
+});
+
+// 口座情報・取引履歴の最後の応答（URLごと）。ETagをIf-None-Matchで送り、304なら保存した内容を使う
+const validated = new Map<string, { etag: string; data: unknown }>();
+
+async function getValidated<T>(url: string): Promise<T> {
+  const cached = validated.get(url);
+  const response = await client.get(url, {
+    headers: cached ? { 'If-None-Match': cached.etag } : {},
+    validateStatus: status => (status >= 200 && status < 300) || status === 304
+  });
+  if (response.status === 304 && cached) {
+    return cached.data as T;
+  }
+  const etag = response.headers['etag'];
+  if (typeof etag === 'string') {
+    validated.set(url, { etag, data: response.data });
+  }
+  return response.data;
+}
+
 export interface Account {
   id: number;
   accountNumber: string;
@@ -17,27 +47,94 @@ export interface Transaction {
   createdAt: string;
 }
 
+// SSEで届く口座の更新（取引後の残高と、その取引）
+export interface AccountUpdate {
+  accountNumber: string;
+  balance: number;
+  transaction: Transaction;
+}
+
+export type BalanceResolution = 'HOUR' | 'DAY' | 'MONTH';
+
+export interface BalancePoint {
+  start: string;
+  min: number;
+  max: number;
+  close: number;
+}
+
+export interface BalanceSeries {
+  accountNumber: string;
+  resolution: BalanceResolution;
+  from: string;
+  to: string;
+  points: BalancePoint[];
+}
+
+export interface LoanQuote {
+  principal: number;
+  annualRate: number;
+  months: number;
+  monthlyPayment: number;
+  finalPayment: number;
+  totalPayment: number;
+  totalInterest: number;
+}
+
+export interface LoanScheduleRow {
+  month: number;
+  payment: number;
+  principal: number;
+  interest: number;
+  balance: number;
+}
+
 export interface LoginResponse {
   success: boolean;
   account: Account | null;
+  token: string | null;
 }
 
 class BankingAPI {
   async login(accountNumber: string, password: string): Promise<LoginResponse> {
-    const response = await axios.post(`${API_BASE_URL}/account/login`, {
+    const response = await client.post(`${API_BASE_URL}/account/login`, {
       accountNumber,
       password
     });
+    sessionToken = response.data.token;
     return response.data;
   }
 
+  logout(): void {
+    sessionToken = null;
+    validated.clear();
+  }
+
   async getAccount(accountNumber: string): Promise<Account> {
-    const response = await axios.get(`${API_BASE_URL}/account/${accountNumber}`);
-    return response.data;
+    return getValidated<Account>(`${API_BASE_URL}/account/${accountNumber}`);
+  }
+
+  // 口座の更新通知を購読する。接続が切れるとEventSourceが自動で再接続し、そのたびにonReconnectを呼ぶ
+  // （切断中の取引は届かないため、呼び出し側で取り直す）。戻り値を呼ぶと購読をやめる
+  subscribeAccount(accountNumber: string, onUpdate: (update: AccountUpdate) => void,
+                   onReconnect: () => void): () => void {
+    const params = new URLSearchParams({ token: sessionToken ?? '' });
+    const source = new EventSource(`${API_BASE_URL}/account/${accountNumber}/stream?${params}`);
+    let opened = false;
+    source.addEventListener('open', () => {
+      if (opened) {
+        onReconnect();
+      }
+      opened = true;
+    });
+    source.addEventListener('transaction', event => {
+      onUpdate(JSON.parse((event as MessageEvent).data) as AccountUpdate);
+    });
+    return () => source.close();
   }
 
   async deposit(accountNumber: string, amount: number): Promise<Transaction> {
-    const response = await axios.post(`${API_BASE_URL}/account/deposit`, {
+    const response = await client.post(`${API_BASE_URL}/account/deposit`, {
       accountNumber,
       amount
     });
@@ -45,7 +142,7 @@ class BankingAPI {
   }
 
   async withdraw(accountNumber: string, amount: number): Promise<Transaction> {
-    const response = await axios.post(`${API_BASE_URL}/account/withdraw`, {
+    const response = await client.post(`${API_BASE_URL}/account/withdraw`, {
       accountNumber,
       amount
     });
@@ -53,12 +150,19 @@ class BankingAPI {
   }
 
   async getTransactionHistory(accountNumber: string): Promise<Transaction[]> {
-    const response = await axios.get(`${API_BASE_URL}/account/${accountNumber}/transactions`);
+    return getValidated<Transaction[]>(`${API_BASE_URL}/account/${accountNumber}/transactions`);
+  }
+
+  // 残高推移（サーバー側で区間ごとに集計済み）。from・toはyyyy-MM-dd
+  async getBalanceSeries(accountNumber: string, resolution: BalanceResolution, from?: string, to?: string): Promise<BalanceSeries> {
+    const response = await client.get(`${API_BASE_URL}/account/${accountNumber}/balance-series`, {
+      params: { resolution, from, to }
+    });
     return response.data;
   }
 
   async transfer(fromAccountNumber: string, toAccountNumber: string, amount: number): Promise<Transaction> {
-    const response = await axios.post(`${API_BASE_URL}/account/transfer`, {
+    const response = await client.post(`${API_BASE_URL}/account/transfer`, {
       fromAccountNumber,
       toAccountNumber,
       amount
@@ -66,8 +170,50 @@ class BankingAPI {
     return response.data;
   }
 
+  async quoteLoan(principal: number, annualRate: number, months: number): Promise<LoanQuote> {
+    const response = await client.post(`${API_BASE_URL}/loans/quote`, {
+      principal,
+      annualRate,
+      months
+    });
+    return response.data;
+  }
+
+  // 返済スケジュールをNDJSONで受信し、届いた分ずつonRowsに渡す
+  async streamLoanSchedule(principal: number, annualRate: number, months: number,
+                           onRows: (rows: LoanScheduleRow[]) => void): Promise<void> {
+    const params = new URLSearchParams({
+      principal: principal.toString(),
+      annualRate: annualRate.toString(),
+      months: months.toString()
+    });
+    const response = await fetch(`${API_BASE_URL}/loans/schedule?${params}`);
+    if (!response.ok || !response.body) {
+      throw new Error(`返済スケジュールの取得に失敗しました (${response.status})`);
+    }
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffered = '';
+    while (true) {
+      const { done, value } = await reader.read();
+      if (done) {
+        break;
+      }
+      buffered += decoder.decode(value, { stream: true });
+      const lines = buffered.split('\n');
+      buffered = lines.pop() ?? '';
+      const rows = lines.filter(line => line.length > 0).map(line => JSON.parse(line) as LoanScheduleRow);
+      if (rows.length > 0) {
+        onRows(rows);
+      }
+    }
+    if (buffered.trim().length > 0) {
+      onRows([JSON.parse(buffered) as LoanScheduleRow]);
+    }
+  }
+
   async createAccount(accountNumber: string, ownerName: string, password: string): Promise<Account> {
-    const response = await axios.post(`${API_BASE_URL}/account/create`, {
+    const response = await client.post(`${API_BASE_URL}/account/create`, {
       accountNumber,
       ownerName,
       password